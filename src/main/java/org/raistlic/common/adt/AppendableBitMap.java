@@ -0,0 +1,233 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+import org.raistlic.common.precondition.Param;
+import org.raistlic.common.precondition.Precondition;
+
+import java.util.Arrays;
+
+/**
+ * A growable sequence of bits, that can only be appended to, and that maintains the same rank
+ * directory as {@link BitMap} incrementally, in constant time per appended bit.
+ * <p>
+ * The bit sequence itself is not meant to be queried, instead {@link #snapshot()} publishes an
+ * immutable {@link BitSequence} of the bits appended so far, in constant time and without copying:
+ * the snapshot shares the arrays with this instance, which only ever writes after the end of the
+ * published snapshots.
+ * <p>
+ * An instance of this class is NOT thread safe, it should be appended to by one thread, while the
+ * snapshots are thread safe, and can be safely handed over to other threads.
+ */
+public final class AppendableBitMap {
+
+  private static final int DEFAULT_INITIAL_CAPACITY = 1 << BitMap.SUPER_BLOCK_SHIFT;
+
+  private static final int BLOCK_MASK = (1 << BitMap.BLOCK_SHIFT) - 1;
+
+  private static final int SUPER_BLOCK_MASK = (1 << BitMap.SUPER_BLOCK_SHIFT) - 1;
+
+  private static final int SELECT_SAMPLE_MASK = (1 << BitMap.SELECT_SAMPLE_SHIFT) - 1;
+
+  private int size;
+
+  private int ones;
+
+  private int superBlockStartRank;
+
+  private long[] words;
+
+  private int[] superBlockRanks;
+
+  private char[] blockRanks;
+
+  private int[] selectOneSamples;
+
+  private int[] selectZeroSamples;
+
+  /**
+   * Creates an empty instance with a default initial capacity.
+   */
+  public AppendableBitMap() {
+
+    this(DEFAULT_INITIAL_CAPACITY);
+  }
+
+  /**
+   * Creates an empty instance, with room for {@code initialCapacity} bits before growing.
+   *
+   * @param initialCapacity the initial capacity in bits, cannot be less than {@code 0} .
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code initialCapacity}
+   *                                                                    is less than {@code 0} .
+   */
+  public AppendableBitMap(int initialCapacity) {
+
+    Param.isTrue(initialCapacity >= 0, "initialCapacity cannot be less than 0");
+
+    words = new long[Math.max(1, Bits.wordCount(initialCapacity))];
+    superBlockRanks = new int[(initialCapacity >>> BitMap.SUPER_BLOCK_SHIFT) + 1];
+    blockRanks = new char[(initialCapacity >>> BitMap.BLOCK_SHIFT) + 1];
+    selectOneSamples = new int[1];
+    selectZeroSamples = new int[1];
+  }
+
+  /**
+   * The method returns the number of bits appended so far.
+   *
+   * @return the number of bits.
+   */
+  public int size() {
+
+    return size;
+  }
+
+  /**
+   * The method returns the number of {@code 1} s appended so far.
+   *
+   * @return the number of {@code 1} s.
+   */
+  public int cardinality() {
+
+    return ones;
+  }
+
+  /**
+   * Appends one bit to the end of the sequence.
+   *
+   * @param bit {@code true} to append a {@code 1}, or {@code false} to append a {@code 0} .
+   * @return the instance itself.
+   * @throws org.raistlic.common.precondition.InvalidContextException if the sequence already has
+   *                                                                  {@link Integer#MAX_VALUE}
+   *                                                                  bits.
+   */
+  public AppendableBitMap append(boolean bit) {
+
+    Precondition.assertContext(size < Integer.MAX_VALUE, "the bit map is full");
+
+    int index = size;
+    int word = index >>> Bits.WORD_SHIFT;
+    if (word == words.length) {
+      words = Arrays.copyOf(words, grow(words.length));
+    }
+    if (bit) {
+      words[word] |= 1L << index;
+      if ((ones & SELECT_SAMPLE_MASK) == 0) {
+        selectOneSamples = put(selectOneSamples, ones >>> BitMap.SELECT_SAMPLE_SHIFT, index >>> BitMap.SUPER_BLOCK_SHIFT);
+      }
+      ones++;
+    } else {
+      int zeros = index - ones;
+      if ((zeros & SELECT_SAMPLE_MASK) == 0) {
+        selectZeroSamples = put(selectZeroSamples, zeros >>> BitMap.SELECT_SAMPLE_SHIFT, index >>> BitMap.SUPER_BLOCK_SHIFT);
+      }
+    }
+    size++;
+
+    // a block is completed, open the directory entry of the next one
+    if ((size & BLOCK_MASK) == 0) {
+      if ((size & SUPER_BLOCK_MASK) == 0) {
+        superBlockRanks = put(superBlockRanks, size >>> BitMap.SUPER_BLOCK_SHIFT, ones);
+        superBlockStartRank = ones;
+      }
+      int block = size >>> BitMap.BLOCK_SHIFT;
+      if (block == blockRanks.length) {
+        blockRanks = Arrays.copyOf(blockRanks, grow(blockRanks.length));
+      }
+      blockRanks[block] = (char) (ones - superBlockStartRank);
+    }
+    return this;
+  }
+
+  /**
+   * Publishes an immutable snapshot of the bits appended so far, in constant time.
+   *
+   * @return the snapshot.
+   */
+  public BitSequence snapshot() {
+
+    BitMap.RankDirectory directory = new BitMap.RankDirectory(
+        size, ones, superBlockRanks, blockRanks, selectOneSamples, selectZeroSamples);
+    return new Snapshot(words, directory);
+  }
+
+  private static int[] put(int[] array, int index, int value) {
+
+    if (index == array.length) {
+      array = Arrays.copyOf(array, grow(array.length));
+    }
+    array[index] = value;
+    return array;
+  }
+
+  private static int grow(int length) {
+
+    return (int) Math.min(Integer.MAX_VALUE - 8, Math.max(length + 1L, length * 2L));
+  }
+
+  private static final class Snapshot implements BitSequence {
+
+    private final long[] words;
+
+    private final BitMap.RankDirectory directory;
+
+    private Snapshot(long[] words, BitMap.RankDirectory directory) {
+
+      this.words = words;
+      this.directory = directory;
+    }
+
+    @Override
+    public int size() {
+
+      return directory.size;
+    }
+
+    @Override
+    public boolean isOne(int index) {
+
+      Param.isTrue(index >= 0, "index cannot be less than 0");
+      Param.isTrue(index < directory.size, "index must be less than size");
+
+      return (words[index >>> Bits.WORD_SHIFT] & (1L << index)) != 0L;
+    }
+
+    @Override
+    public int rankOne(int index) {
+
+      Param.isTrue(index >= 0, "index cannot be less than 0");
+      Param.isTrue(index < directory.size, "index must be less than size");
+
+      return directory.rank(words, index + 1);
+    }
+
+    @Override
+    public int selectOne(int i) {
+
+      Param.isTrue(i >= 0, "i cannot be less than 0");
+
+      return i < directory.ones ? directory.select(words, i, true) : -1;
+    }
+
+    @Override
+    public int selectZero(int i) {
+
+      Param.isTrue(i >= 0, "i cannot be less than 0");
+
+      return i < directory.size - directory.ones ? directory.select(words, i, false) : -1;
+    }
+  }
+}
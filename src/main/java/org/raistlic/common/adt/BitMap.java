@@ -19,9 +19,18 @@ package org.raistlic.common.adt;
 import org.raistlic.common.precondition.Param;
 import org.raistlic.common.util.ObjectBuilder;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
 import java.util.function.Predicate;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
 
 /**
  * This class implements the "binary rank and select" algorithm.
@@ -34,11 +43,15 @@ import java.util.function.Predicate;
  * A rank operation is:   count the number of 1s (or 0s) up to index i
  * A select operation is: get the index of the i-th 1 (or 0)
  * <p>
- * The theoretical efficiency of the original algorithm is constant time
- * operations, using multiple levels of cached maps, while this implementation
- * caches only one level map of every 8 bits.
+ * The bits are stored in {@code long} words, with a two level rank directory: the absolute
+ * rank at the start of every 2048 bits super block, and the rank relative to the super block
+ * at the start of every 512 bits block, which adds up to less than 5% space overhead. A rank
+ * operation is therefore constant time, with at most 8 word level {@link Long#bitCount(long)}
+ * calls. A select operation additionally samples the super block of every 8192-th {@code 1}
+ * (and {@code 0}), binary searches the super blocks between two samples, and then scans the
+ * blocks and words within the found super block.
  */
-public final class BitMap {
+public final class BitMap implements BitSequence {
 
   /**
    * A static factory method, which is a shortcut comparing with constructing
@@ -69,6 +82,37 @@ public final class BitMap {
     return builder.get();
   }
 
+  /**
+   * The parallel version of {@link #newInstance(List, Predicate)}, which splits the
+   * {@code list} into word aligned chunks, and tests the {@code condition} against the chunks
+   * in the given fork/join {@code pool}, for example {@link ForkJoinPool#commonPool()} .
+   * <p>
+   * The result is identical to the sequential version, while the {@code condition} must be safe
+   * to be tested from multiple threads. A {@code list} that does not implement
+   * {@link RandomAccess} is copied before being split.
+   *
+   * @param <E>       the element type of the list.
+   * @param list      the list of elements based on which to create the bit map.
+   * @param condition the condition to check the {@code list}, cannot be {@code null} .
+   * @param pool      the pool to run the tests in, cannot be {@code null} .
+   * @return the created bit map.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if any of the parameters is
+   *                                                                    {@code null} .
+   */
+  public static <E> BitMap newInstance(List<E> list, Predicate<? super E> condition, ForkJoinPool pool) {
+
+    Param.notNull(list, "list cannot be null");
+    Param.notNull(condition, "condition cannot be null");
+    Param.notNull(pool, "pool cannot be null");
+
+    if (!(list instanceof RandomAccess)) {
+      list = new ArrayList<>(list);
+    }
+    long[] words = new long[Bits.wordCount(list.size())];
+    pool.invoke(new BuildTask<>(list, condition, words, 0, words.length));
+    return new BitMap(list.size(), words);
+  }
+
   /**
    * The static factory method exports a {@code Builder} instance, which provides
    * a more flexible way of creating a {@code BitMap} instance.
@@ -88,31 +132,95 @@ public final class BitMap {
     return new Builder(size);
   }
 
-  private final int size;
+  /**
+   * Number of bits covered by a super block, the absolute rank at the start of every super block
+   * is cached as an {@code int} .
+   */
+  static final int SUPER_BLOCK_SHIFT = 11;
+
+  /**
+   * Number of bits covered by a block (8 words, i.e. one typical cache line), the rank at the start
+   * of every block relative to its super block is cached as a {@code char} .
+   */
+  static final int BLOCK_SHIFT = 9;
+
+  static final int WORDS_PER_BLOCK_SHIFT = BLOCK_SHIFT - Bits.WORD_SHIFT;
+
+  static final int BLOCKS_PER_SUPER_BLOCK_SHIFT = SUPER_BLOCK_SHIFT - BLOCK_SHIFT;
+
+  /**
+   * Every {@code 2^SELECT_SAMPLE_SHIFT}-th {@code 1} (or {@code 0}) has its super block sampled, to
+   * narrow down the search range of select operations.
+   */
+  static final int SELECT_SAMPLE_SHIFT = 13;
+
+  /**
+   * Returns the number of select samples for {@code total} {@code 1} s (or {@code 0} s), i.e. the
+   * number of indices {@code j} that {@code j * 2^SELECT_SAMPLE_SHIFT < total} .
+   */
+  static int sampleCount(int total) {
+
+    return (int) ((total + (1L << SELECT_SAMPLE_SHIFT) - 1) >>> SELECT_SAMPLE_SHIFT);
+  }
+
+  /**
+   * Package private factory for the data structures in this package, that creates a
+   * {@code BitMap} directly on top of the given {@code words}, without copying.
+   * <p>
+   * The caller hands over the ownership of {@code words}, and must not modify it afterwards.
+   */
+  static BitMap wrap(int size, long[] words) {
+
+    return new BitMap(size, words);
+  }
 
-  private final byte[] map;
+  private final int size;
 
-  private final int[] rankOne;
+  private final long[] words;
 
-  private final int[] rankZero;
+  /**
+   * The rank directory is built on demand, so that intermediate results of the bulk operations
+   * (see {@link #and(BitMap)} etc.) do not pay for it. The directory is immutable, and safe to be
+   * built more than once by racing threads.
+   */
+  private RankDirectory directory;
 
-  private BitMap(int size, byte[] map) {
+  private BitMap(int size, long[] words) {
 
     Param.isTrue(size >= 0, "size cannot be less than 0");
-    Param.notNull(map, "map cannot be null");
+    Param.notNull(words, "words cannot be null");
+    Param.isTrue(words.length == Bits.wordCount(size), "words length does not match size");
 
-    int len = map.length;
-    this.map = Arrays.copyOf(map, len);
     this.size = size;
+    this.words = words;
+    Bits.trimTail(words, size);
+  }
+
+  /**
+   * Package private access to the words, the caller must not modify the returned array.
+   */
+  long[] words() {
+
+    return words;
+  }
+
+  /**
+   * Package private rank without parameter checks, counts the {@code 1} s in the range
+   * {@code [0, end)}, {@code end} must be within {@code [0, size]} .
+   */
+  int rank(int end) {
+
+    return directory().rank(words, end);
+  }
+
+  RankDirectory directory() {
 
-    rankOne = new int[len];
-    rankZero = new int[len];
-    for (int i = 0; i < len; i++) {
-      rankOne[i] = MAP_RANK[0xFF & map[i]][7];
-      if (i > 0)
-        rankOne[i] += rankOne[i - 1];
-      rankZero[i] = (i + 1) * 8 - rankOne[i];
+    RankDirectory result = directory;
+    if (result == null) {
+      result = new RankDirectory(size, words);
+      directory = result;
     }
+    return result;
   }
 
   /**
@@ -120,6 +228,7 @@ public final class BitMap {
    *
    * @return the size of the {@link BitMap} .
    */
+  @Override
   public int size() {
 
     return size;
@@ -134,14 +243,13 @@ public final class BitMap {
    * @throws org.raistlic.common.precondition.InvalidParameterException if {@code index} is out of
    *                                                                    range.
    */
+  @Override
   public int rankOne(int index) {
 
     Param.isTrue(index >= 0, "index cannot be less than 0");
     Param.isTrue(index < size, "index must be less than size");
 
-    int offset = index % 8;
-    index /= 8;
-    return (index > 0 ? rankOne[index - 1] : 0) + MAP_RANK[0xFF & map[index]][offset];
+    return directory().rank(words, index + 1);
   }
 
   /**
@@ -153,12 +261,13 @@ public final class BitMap {
    * @throws org.raistlic.common.precondition.InvalidParameterException if {@code index} is out of
    *                                                                    range.
    */
+  @Override
   public int rankZero(int index) {
 
     Param.isTrue(index >= 0, "index cannot be less than 0");
     Param.isTrue(index < size, "index must be less than size");
 
-    return index - rankOne(index) + 1;
+    return index + 1 - directory().rank(words, index + 1);
   }
 
   /**
@@ -170,16 +279,16 @@ public final class BitMap {
    * @throws org.raistlic.common.precondition.InvalidParameterException if {@code i} is less than
    *                                                                    {@code 0}.
    */
+  @Override
   public int selectOne(int i) {
 
     Param.isTrue(i >= 0, "i cannot be less than 0");
 
-    if (i >= rankOne(size - 1)) {
+    RankDirectory directory = directory();
+    if (i >= directory.ones) {
       return -1;
     }
-    int units = binaryRankSearch(i, rankOne, 0, rankOne.length - 1);
-    int counted = units > 0 ? rankOne[units - 1] : 0;
-    return units * 8 + MAP_SELECT_ONE[0xFF & map[units]][i - counted];
+    return directory.select(words, i, true);
   }
 
   /**
@@ -191,16 +300,16 @@ public final class BitMap {
    * @throws org.raistlic.common.precondition.InvalidParameterException if {@code i} is less than
    *                                                                    {@code 0}.
    */
+  @Override
   public int selectZero(int i) {
 
     Param.isTrue(i >= 0, "i cannot be less than 0");
 
-    if (i >= rankZero(size - 1)) {
+    RankDirectory directory = directory();
+    if (i >= size - directory.ones) {
       return -1;
     }
-    int units = binaryRankSearch(i, rankZero, 0, rankZero.length - 1);
-    int counted = units > 0 ? units * 8 - rankOne[units - 1] : 0;
-    return units * 8 + MAP_SELECT_ZERO[0xFF & map[units]][i - counted];
+    return directory.select(words, i, false);
   }
 
   /**
@@ -211,47 +320,257 @@ public final class BitMap {
    * @throws org.raistlic.common.precondition.InvalidParameterException if {@code index} is out of
    *                                                                    range.
    */
+  @Override
   public boolean isOne(int index) {
 
     Param.isTrue(index >= 0, "index cannot be less than 0");
     Param.isTrue(index < size, "index must be less than size");
 
-    return (map[index / 8] & (1 << (index % 8))) != 0;
+    return (words[index >>> Bits.WORD_SHIFT] & (1L << index)) != 0L;
   }
 
-  private int binaryRankSearch(int count, int[] rank, int left, int right) {
+  /**
+   * The method returns the index of the first {@code 1} at or after {@code from} .
+   *
+   * @param from the index to start searching from, must be within the range {@code [0, size()]} .
+   * @return the index of the found {@code 1}, or {@code -1} if there is none.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code from} is out of
+   *                                                                    range.
+   */
+  @Override
+  public int nextOne(int from) {
+
+    Param.isTrue(from >= 0, "from cannot be less than 0");
+    Param.isTrue(from <= size, "from cannot be greater than size");
 
-    if (left == right) {
-      return left;
+    return Bits.nextOne(words, from);
+  }
+
+  /**
+   * The method returns the index of the last {@code 1} at or before {@code from} .
+   *
+   * @param from the index to start searching backwards from, must be within the range
+   *             {@code [-1, size())} .
+   * @return the index of the found {@code 1}, or {@code -1} if there is none.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code from} is out of
+   *                                                                    range.
+   */
+  public int previousOne(int from) {
+
+    Param.isTrue(from >= -1, "from cannot be less than -1");
+    Param.isTrue(from < size, "from must be less than size");
+
+    return Bits.previousOne(words, from);
+  }
+
+  /**
+   * The method returns the number of {@code 1} s within the range {@code [from, to)} .
+   *
+   * @param from the start index of the range (inclusive), cannot be less than {@code 0} .
+   * @param to   the end index of the range (exclusive), must be within the range
+   *             {@code [from, size()]} .
+   * @return the number of {@code 1} s in the range.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if the range is invalid.
+   */
+  public int countOnes(int from, int to) {
+
+    Param.isTrue(from >= 0, "from cannot be less than 0");
+    Param.isTrue(from <= to, "from cannot be greater than to");
+    Param.isTrue(to <= size, "to cannot be greater than size");
+
+    RankDirectory directory = directory();
+    return directory.rank(words, to) - directory.rank(words, from);
+  }
+
+  /**
+   * The method calls the {@code action} with the index of every {@code 1}, in ascending order,
+   * scanning the words directly.
+   *
+   * @param action the action to perform, cannot be {@code null} .
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code action} is
+   *                                                                    {@code null} .
+   */
+  public void forEachOne(IntConsumer action) {
+
+    Param.notNull(action, "action cannot be null");
+
+    for (int w = 0, length = words.length; w < length; w++) {
+      long word = words[w];
+      while (word != 0L) {
+        action.accept((w << Bits.WORD_SHIFT) + Long.numberOfTrailingZeros(word));
+        word &= word - 1L;
+      }
     }
-    if (left + 1 == right) {
-      return rank[left] > count ? left : right;
+  }
+
+  /**
+   * The method returns a sequential stream of the indices of the {@code 1} s, in ascending order;
+   * the stream can be turned into a parallel one, which splits the bit map at word boundaries.
+   *
+   * @return the stream of indices.
+   */
+  public IntStream onesStream() {
+
+    return StreamSupport.intStream(onesSpliterator(), false);
+  }
+
+  /**
+   * The method returns a spliterator of the indices of the {@code 1} s, in ascending order, which
+   * reports the exact number of remaining indices, and splits at word boundaries.
+   *
+   * @return the spliterator of indices.
+   */
+  public Spliterator.OfInt onesSpliterator() {
+
+    return new OnesSpliterator(0, size);
+  }
+
+  /**
+   * The method returns the total number of {@code 1} s in the bit map.
+   *
+   * @return the number of {@code 1} s.
+   */
+  public int cardinality() {
+
+    RankDirectory directory = this.directory;
+    if (directory != null) {
+      return directory.ones;
     }
-    int mid = (left + right) / 2;
-    if (rank[mid] > count) {
-      right = mid;
-    } else {
-      left = mid;
+    int result = 0;
+    for (long word : words) {
+      result += Long.bitCount(word);
     }
-    return binaryRankSearch(count, rank, left, right);
+    return result;
   }
 
-  @Override
-  public int hashCode() {
+  /**
+   * The method returns the number of indices where both {@code this} and {@code other} have
+   * {@code 1} s, without creating the intersection.
+   *
+   * @param other the other bit map, cannot be {@code null}, and must have the same size.
+   * @return the number of {@code 1} s in the intersection.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code other} is
+   *                                                                    {@code null} or of a
+   *                                                                    different size.
+   */
+  public int intersectionCount(BitMap other) {
 
-    int result = size();
-    int[] tokens = new int[result / 16 + 1];
-    for (int i = 0; i < result; i++) {
-      if (isOne(i)) {
-        tokens[i / 16] |= 1 << (i % 16);
-      }
-    }
-    for (int token : tokens) {
-      result = (result << 5) + token - result;
+    checkOperand(other);
+
+    int result = 0;
+    for (int i = 0, length = words.length; i < length; i++) {
+      result += Long.bitCount(words[i] & other.words[i]);
     }
     return result;
   }
 
+  /**
+   * The method returns a new bit map of the bitwise "and" of {@code this} and {@code other} .
+   *
+   * @param other the other bit map, cannot be {@code null}, and must have the same size.
+   * @return the result bit map.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code other} is
+   *                                                                    {@code null} or of a
+   *                                                                    different size.
+   */
+  public BitMap and(BitMap other) {
+
+    checkOperand(other);
+
+    long[] result = new long[words.length];
+    for (int i = 0, length = words.length; i < length; i++) {
+      result[i] = words[i] & other.words[i];
+    }
+    return new BitMap(size, result);
+  }
+
+  /**
+   * The method returns a new bit map of the bitwise "or" of {@code this} and {@code other} .
+   *
+   * @param other the other bit map, cannot be {@code null}, and must have the same size.
+   * @return the result bit map.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code other} is
+   *                                                                    {@code null} or of a
+   *                                                                    different size.
+   */
+  public BitMap or(BitMap other) {
+
+    checkOperand(other);
+
+    long[] result = new long[words.length];
+    for (int i = 0, length = words.length; i < length; i++) {
+      result[i] = words[i] | other.words[i];
+    }
+    return new BitMap(size, result);
+  }
+
+  /**
+   * The method returns a new bit map of the bitwise "xor" of {@code this} and {@code other} .
+   *
+   * @param other the other bit map, cannot be {@code null}, and must have the same size.
+   * @return the result bit map.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code other} is
+   *                                                                    {@code null} or of a
+   *                                                                    different size.
+   */
+  public BitMap xor(BitMap other) {
+
+    checkOperand(other);
+
+    long[] result = new long[words.length];
+    for (int i = 0, length = words.length; i < length; i++) {
+      result[i] = words[i] ^ other.words[i];
+    }
+    return new BitMap(size, result);
+  }
+
+  /**
+   * The method returns a new bit map that has {@code 1} s where {@code this} has {@code 1} s and
+   * {@code other} has {@code 0} s.
+   *
+   * @param other the other bit map, cannot be {@code null}, and must have the same size.
+   * @return the result bit map.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code other} is
+   *                                                                    {@code null} or of a
+   *                                                                    different size.
+   */
+  public BitMap andNot(BitMap other) {
+
+    checkOperand(other);
+
+    long[] result = new long[words.length];
+    for (int i = 0, length = words.length; i < length; i++) {
+      result[i] = words[i] & ~other.words[i];
+    }
+    return new BitMap(size, result);
+  }
+
+  /**
+   * The method returns a new bit map with all the bits of {@code this} flipped.
+   *
+   * @return the result bit map.
+   */
+  public BitMap not() {
+
+    long[] result = new long[words.length];
+    for (int i = 0, length = words.length; i < length; i++) {
+      result[i] = ~words[i];
+    }
+    return new BitMap(size, result);
+  }
+
+  private void checkOperand(BitMap other) {
+
+    Param.notNull(other, "other cannot be null");
+    Param.isTrue(other.size == size, "other must have the same size");
+  }
+
+  @Override
+  public int hashCode() {
+
+    return 31 * size + Arrays.hashCode(words);
+  }
+
   @Override
   public boolean equals(Object o) {
 
@@ -259,80 +578,300 @@ public final class BitMap {
       return true;
     } else if (o instanceof BitMap) {
       BitMap m = (BitMap) o;
-      if (m.size() != size()) {
-        return false;
-      }
-      for (int i = 0; i < size; i++) {
-        if (m.isOne(i) != isOne(i)) {
-          return false;
-        }
-      }
-      return true;
+      return m.size == size && Arrays.equals(m.words, words);
     } else {
       return false;
     }
   }
 
-  private static final int[][] MAP_RANK;
+  /**
+   * The two level rank directory, plus the select samples, of the words of a {@code BitMap} .
+   */
+  static final class RankDirectory {
+
+    final int size;
+
+    final int ones;
 
-  private static final int[][] MAP_SELECT_ONE;
+    final int[] superBlockRanks;
 
-  private static final int[][] MAP_SELECT_ZERO;
+    final char[] blockRanks;
 
-  static {
+    final int[] selectOneSamples;
 
-    MAP_RANK = new int[256][8]; // 256 x 8 x 4 =~ 8KB
-    for (int i = 0; i < 256; i++) {
+    final int[] selectZeroSamples;
 
-      for (int j = 0; j < 8; j++)
-        MAP_RANK[i][j] = countOne(i, j + 1);
+    /**
+     * Creates a directory on top of existing arrays, which can be longer than needed, as long as
+     * the entries for {@code size} bits with {@code ones} {@code 1} s are filled.
+     */
+    RankDirectory(int size, int ones, int[] superBlockRanks, char[] blockRanks,
+                  int[] selectOneSamples, int[] selectZeroSamples) {
+
+      this.size = size;
+      this.ones = ones;
+      this.superBlockRanks = superBlockRanks;
+      this.blockRanks = blockRanks;
+      this.selectOneSamples = selectOneSamples;
+      this.selectZeroSamples = selectZeroSamples;
     }
 
-    MAP_SELECT_ONE = new int[256][8]; // 256 x 8 x 4 =~ 8KB
-    for (int i = 0; i < 256; i++) {
+    private RankDirectory(int size, long[] words) {
 
-      for (int j = 1, offset = 0; j < 8; j++) {
+      this.size = size;
+      superBlockRanks = new int[(size >>> SUPER_BLOCK_SHIFT) + 1];
+      blockRanks = new char[(size >>> BLOCK_SHIFT) + 1];
+      int count = 0;
+      int superBlockStart = 0;
+      for (int block = 0, length = blockRanks.length; block < length; block++) {
+        if ((block & ((1 << BLOCKS_PER_SUPER_BLOCK_SHIFT) - 1)) == 0) {
+          superBlockRanks[block >>> BLOCKS_PER_SUPER_BLOCK_SHIFT] = count;
+          superBlockStart = count;
+        }
+        blockRanks[block] = (char) (count - superBlockStart);
+        int from = block << WORDS_PER_BLOCK_SHIFT;
+        int to = Math.min(from + (1 << WORDS_PER_BLOCK_SHIFT), words.length);
+        for (int w = from; w < to; w++) {
+          count += Long.bitCount(words[w]);
+        }
+      }
+      ones = count;
+      selectOneSamples = sampleSuperBlocks(true);
+      selectZeroSamples = sampleSuperBlocks(false);
+    }
 
-        while (offset < 8 && MAP_RANK[i][offset] < j)
-          offset++;
+    private int[] sampleSuperBlocks(boolean one) {
 
-        MAP_SELECT_ONE[i][j - 1] = offset >= 8 ? -1 : offset;
+      int total = one ? ones : size - ones;
+      int[] samples = new int[sampleCount(total)];
+      for (int s = 0, j = 0, length = superBlockRanks.length; s < length; s++) {
+        int next = s + 1 < length ? superBlockCount(s + 1, one) : total;
+        while (j < samples.length && ((long) j << SELECT_SAMPLE_SHIFT) < next) {
+          samples[j] = s;
+          j++;
+        }
       }
+      return samples;
     }
 
-    MAP_SELECT_ZERO = new int[256][8]; // 256 x 8 x 4 =~ 8KB
-    for (int i = 0; i < 256; i++) {
+    /**
+     * Counts the {@code 1} s in the range {@code [0, end)}, {@code end} within {@code [0, size]} .
+     */
+    int rank(long[] words, int end) {
 
-      for (int j = 1, offset = 0; j < 8; j++) {
+      int block = end >>> BLOCK_SHIFT;
+      int word = end >>> Bits.WORD_SHIFT;
+      int result = superBlockRanks[end >>> SUPER_BLOCK_SHIFT] + blockRanks[block];
+      for (int w = block << WORDS_PER_BLOCK_SHIFT; w < word; w++) {
+        result += Long.bitCount(words[w]);
+      }
+      int offset = end & Bits.WORD_MASK;
+      if (offset != 0) {
+        result += Long.bitCount(words[word] & Bits.lowMask(offset));
+      }
+      return result;
+    }
+
+    /**
+     * Finds the index of the {@code i}-th {@code 1} (or {@code 0}), the caller needs to make sure
+     * that {@code i} is within range.
+     */
+    int select(long[] words, int i, boolean one) {
+
+      int[] samples = one ? selectOneSamples : selectZeroSamples;
+      int sample = i >>> SELECT_SAMPLE_SHIFT;
+      int left = samples[sample];
+      int right = sample + 1 < sampleCount(one ? ones : size - ones)
+          ? samples[sample + 1]
+          : size >>> SUPER_BLOCK_SHIFT;
+      while (left < right) {
+        int mid = (left + right + 1) >>> 1;
+        if (superBlockCount(mid, one) > i) {
+          right = mid - 1;
+        } else {
+          left = mid;
+        }
+      }
 
-        while (offset < 8 && countZero(i, offset + 1) < j)
-          offset++;
+      int superBlock = left;
+      i -= superBlockCount(superBlock, one);
+      int block = superBlock << BLOCKS_PER_SUPER_BLOCK_SHIFT;
+      int lastBlock = Math.min(block + (1 << BLOCKS_PER_SUPER_BLOCK_SHIFT), (size >>> BLOCK_SHIFT) + 1) - 1;
+      while (block < lastBlock && blockCount(block + 1, one) <= i) {
+        block++;
+      }
 
-        MAP_SELECT_ZERO[i][j - 1] = offset >= 8 ? -1 : offset;
+      i -= blockCount(block, one);
+      int word = block << WORDS_PER_BLOCK_SHIFT;
+      while (true) {
+        long bits = one ? words[word] : ~words[word];
+        int count = Long.bitCount(bits);
+        if (i < count) {
+          return (word << Bits.WORD_SHIFT) + Bits.selectInWord(bits, i);
+        }
+        i -= count;
+        word++;
       }
     }
+
+    private int superBlockCount(int superBlock, boolean one) {
+
+      int rank = superBlockRanks[superBlock];
+      return one ? rank : (superBlock << SUPER_BLOCK_SHIFT) - rank;
+    }
+
+    private int blockCount(int block, boolean one) {
+
+      int rank = blockRanks[block];
+      return one ? rank : ((block & ((1 << BLOCKS_PER_SUPER_BLOCK_SHIFT) - 1)) << BLOCK_SHIFT) - rank;
+    }
   }
 
-  private static int countOne(int pattern, int bits) {
+  /**
+   * Iterates the {@code 1} s within a range of bits, the range is split in halves at word
+   * boundaries, and the remaining count is answered by the rank directory.
+   */
+  private final class OnesSpliterator implements Spliterator.OfInt {
+
+    private int position;
+
+    private final int end;
+
+    private OnesSpliterator(int position, int end) {
+
+      this.position = position;
+      this.end = end;
+    }
+
+    @Override
+    public boolean tryAdvance(IntConsumer action) {
+
+      Param.notNull(action, "action cannot be null");
+
+      int next = position < end ? Bits.nextOne(words, position) : -1;
+      if (next < 0 || next >= end) {
+        position = end;
+        return false;
+      }
+      position = next + 1;
+      action.accept(next);
+      return true;
+    }
+
+    @Override
+    public void forEachRemaining(IntConsumer action) {
+
+      Param.notNull(action, "action cannot be null");
 
-    int count = 0;
-    for (int i = 0; i < bits; i++) {
-      if (((1 << i) & pattern) != 0) {
-        count++;
+      if (position >= end) {
+        return;
+      }
+      int w = position >>> Bits.WORD_SHIFT;
+      int lastWord = (end - 1) >>> Bits.WORD_SHIFT;
+      long word = words[w] & (-1L << position);
+      position = end;
+      while (true) {
+        if (w == lastWord) {
+          word &= Bits.lowMask(((end - 1) & Bits.WORD_MASK) + 1);
+        }
+        while (word != 0L) {
+          action.accept((w << Bits.WORD_SHIFT) + Long.numberOfTrailingZeros(word));
+          word &= word - 1L;
+        }
+        if (w == lastWord) {
+          return;
+        }
+        w++;
+        word = words[w];
       }
     }
-    return count;
+
+    @Override
+    public Spliterator.OfInt trySplit() {
+
+      int mid = ((position + end) >>> 1) & ~Bits.WORD_MASK;
+      if (mid <= position || mid >= end) {
+        return null;
+      }
+      Spliterator.OfInt prefix = new OnesSpliterator(position, mid);
+      position = mid;
+      return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+
+      if (position >= end) {
+        return 0L;
+      }
+      RankDirectory directory = directory();
+      return directory.rank(words, end) - directory.rank(words, position);
+    }
+
+    @Override
+    public int characteristics() {
+
+      return ORDERED | DISTINCT | SORTED | NONNULL | IMMUTABLE | SIZED | SUBSIZED;
+    }
+
+    @Override
+    public Comparator<? super Integer> getComparator() {
+
+      return null;
+    }
   }
 
-  private static int countZero(int pattern, int bits) {
+  /**
+   * Tests the elements of a list for a range of words, splitting the range in halves until it is
+   * small enough; different tasks never write into the same word.
+   */
+  private static final class BuildTask<E> extends RecursiveAction {
+
+    private static final int THRESHOLD_WORDS = 64;
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<E> list;
+
+    private final Predicate<? super E> condition;
+
+    private final long[] words;
 
-    int count = 0;
-    for (int i = 0; i < bits; i++) {
-      if (((1 << i) & pattern) == 0) {
-        count++;
+    private final int fromWord;
+
+    private final int toWord;
+
+    private BuildTask(List<E> list, Predicate<? super E> condition, long[] words, int fromWord, int toWord) {
+
+      this.list = list;
+      this.condition = condition;
+      this.words = words;
+      this.fromWord = fromWord;
+      this.toWord = toWord;
+    }
+
+    @Override
+    protected void compute() {
+
+      if (toWord - fromWord <= THRESHOLD_WORDS) {
+        int size = list.size();
+        for (int w = fromWord; w < toWord; w++) {
+          long word = 0L;
+          for (int i = w << Bits.WORD_SHIFT, end = Math.min(i + Bits.WORD_BITS, size); i < end; i++) {
+            if (condition.test(list.get(i))) {
+              word |= 1L << i;
+            }
+          }
+          words[w] = word;
+        }
+      } else {
+        int mid = (fromWord + toWord) >>> 1;
+        invokeAll(
+            new BuildTask<>(list, condition, words, fromWord, mid),
+            new BuildTask<>(list, condition, words, mid, toWord)
+        );
       }
     }
-    return count;
   }
 
   /**
@@ -342,14 +881,14 @@ public final class BitMap {
 
     private final int size;
 
-    private final byte[] map;
+    private final long[] words;
 
     private Builder(int size) {
 
       Param.isTrue(size >= 0, "size cannot be less than 0");
 
       this.size = size;
-      this.map = new byte[size / 8 + 1];
+      this.words = new long[Bits.wordCount(size)];
     }
 
     /**
@@ -358,7 +897,7 @@ public final class BitMap {
      * @return the {@link org.raistlic.common.adt.BitMap.Builder} instance itself.
      */
     public Builder clear() {
-      Arrays.fill(map, (byte) 0);
+      Arrays.fill(words, 0L);
       return this;
     }
 
@@ -375,7 +914,7 @@ public final class BitMap {
       Param.isTrue(index >= 0, "index cannot be less than 0");
       Param.isTrue(index < size, "index must be less than size");
 
-      map[index / 8] |= (1 << (index % 8));
+      words[index >>> Bits.WORD_SHIFT] |= 1L << index;
       return this;
     }
 
@@ -392,7 +931,7 @@ public final class BitMap {
       Param.isTrue(index >= 0, "index cannot be less than 0");
       Param.isTrue(index < size, "index must be less than size");
 
-      map[index / 8] &= ~(1 << (index % 8));
+      words[index >>> Bits.WORD_SHIFT] &= ~(1L << index);
       return this;
     }
 
@@ -404,7 +943,7 @@ public final class BitMap {
      */
     @Override
     public BitMap build() {
-      return new BitMap(this.size, this.map);
+      return new BitMap(this.size, Arrays.copyOf(this.words, this.words.length));
     }
   }
 }
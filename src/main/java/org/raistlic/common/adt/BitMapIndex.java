@@ -0,0 +1,327 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+import org.raistlic.common.precondition.Param;
+import org.raistlic.common.util.ObjectBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * A bitmap index over a list of elements: one {@link BitMap} is precomputed for each named
+ * predicate, after which boolean combinations of the predicates are answered with word level
+ * bitmap operations, without testing any element again.
+ * <p>
+ * Typical usage:
+ * <pre>{@code
+ * BitMapIndex<Order> index = BitMapIndex.builder(orders)
+ *     .add("open", Order::isOpen)
+ *     .add("urgent", Order::isUrgent)
+ *     .add("paid", Order::isPaid)
+ *     .build();
+ * List<Order> result = index.query("open").and("urgent").andNot("paid").list();
+ * }</pre>
+ * The index is a snapshot of the list at the time it is built (the elements are copied, later
+ * changes to the list are not reflected), it is immutable and thread safe.
+ *
+ * @param <E> the element type.
+ */
+public final class BitMapIndex<E> {
+
+  /**
+   * Exports a builder to register the named predicates of an index over the {@code elements} .
+   *
+   * @param elements the elements to index, cannot be {@code null} .
+   * @param <E>      the element type.
+   * @return the builder.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code elements} is
+   *                                                                    {@code null} .
+   */
+  public static <E> Builder<E> builder(List<E> elements) {
+
+    Param.notNull(elements, "elements cannot be null");
+
+    return new Builder<>(elements);
+  }
+
+  private final List<E> elements;
+
+  private final Map<String, BitMap> bitMaps;
+
+  private BitMapIndex(List<E> elements, Map<String, BitMap> bitMaps) {
+
+    this.elements = elements;
+    this.bitMaps = bitMaps;
+  }
+
+  /**
+   * The method returns the names of the indexed predicates, in the order they were added.
+   *
+   * @return the names.
+   */
+  public Set<String> names() {
+
+    return Collections.unmodifiableSet(bitMaps.keySet());
+  }
+
+  /**
+   * The method returns the precomputed bit map of the predicate {@code name} .
+   *
+   * @param name the name of the predicate, cannot be {@code null} .
+   * @return the bit map, in which the {@code 1} s mark the matching elements.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if there is no predicate
+   *                                                                    named {@code name} .
+   */
+  public BitMap bitMap(String name) {
+
+    Param.notNull(name, "name cannot be null");
+    BitMap result = bitMaps.get(name);
+    Param.isTrue(result != null, "no predicate named " + name);
+
+    return result;
+  }
+
+  /**
+   * Starts a query with the elements that match the predicate {@code name} .
+   *
+   * @param name the name of the predicate, cannot be {@code null} .
+   * @return the query.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if there is no predicate
+   *                                                                    named {@code name} .
+   */
+  public Query query(String name) {
+
+    return new Query(bitMap(name));
+  }
+
+  /**
+   * Starts a query with all the elements.
+   *
+   * @return the query.
+   */
+  public Query all() {
+
+    return new Query(BitMap.builder(elements.size()).build().not());
+  }
+
+  /**
+   * An immutable boolean combination of the indexed predicates, every operation creates a new
+   * query, and costs one bitmap operation.
+   */
+  public final class Query {
+
+    private final BitMap bits;
+
+    private Query(BitMap bits) {
+
+      this.bits = bits;
+    }
+
+    /**
+     * Narrows the query to the elements that also match the predicate {@code name} .
+     *
+     * @param name the name of the predicate, cannot be {@code null} .
+     * @return the new query.
+     */
+    public Query and(String name) {
+
+      return new Query(bits.and(BitMapIndex.this.bitMap(name)));
+    }
+
+    /**
+     * Extends the query with the elements that match the predicate {@code name} .
+     *
+     * @param name the name of the predicate, cannot be {@code null} .
+     * @return the new query.
+     */
+    public Query or(String name) {
+
+      return new Query(bits.or(BitMapIndex.this.bitMap(name)));
+    }
+
+    /**
+     * Narrows the query to the elements that do NOT match the predicate {@code name} .
+     *
+     * @param name the name of the predicate, cannot be {@code null} .
+     * @return the new query.
+     */
+    public Query andNot(String name) {
+
+      return new Query(bits.andNot(BitMapIndex.this.bitMap(name)));
+    }
+
+    /**
+     * Narrows the query to the elements that also match the {@code other} query.
+     *
+     * @param other the other query of the same index, cannot be {@code null} .
+     * @return the new query.
+     * @throws org.raistlic.common.precondition.InvalidParameterException if {@code other} is
+     *                                                                    {@code null}, or a query
+     *                                                                    of another index.
+     */
+    public Query and(Query other) {
+
+      checkSameIndex(other);
+
+      return new Query(bits.and(other.bits));
+    }
+
+    /**
+     * Extends the query with the elements that match the {@code other} query.
+     *
+     * @param other the other query of the same index, cannot be {@code null} .
+     * @return the new query.
+     * @throws org.raistlic.common.precondition.InvalidParameterException if {@code other} is
+     *                                                                    {@code null}, or a query
+     *                                                                    of another index.
+     */
+    public Query or(Query other) {
+
+      checkSameIndex(other);
+
+      return new Query(bits.or(other.bits));
+    }
+
+    /**
+     * Negates the query.
+     *
+     * @return the new query, that matches exactly the elements that this query does not match.
+     */
+    public Query not() {
+
+      return new Query(bits.not());
+    }
+
+    /**
+     * The method returns the number of elements that match the query.
+     *
+     * @return the number of matching elements.
+     */
+    public int count() {
+
+      return bits.cardinality();
+    }
+
+    /**
+     * The method returns the bit map of the query, in which the {@code 1} s mark the matching
+     * elements.
+     *
+     * @return the bit map.
+     */
+    public BitMap bitMap() {
+
+      return bits;
+    }
+
+    /**
+     * The method returns a read-only, random access view of the matching elements, in the order of
+     * the indexed list.
+     *
+     * @return the view.
+     */
+    @SuppressWarnings("deprecation")
+    public List<E> list() {
+
+      return FilteredList.of(elements, bits);
+    }
+
+    private void checkSameIndex(Query other) {
+
+      Param.notNull(other, "other cannot be null");
+      Param.isTrue(other.index() == BitMapIndex.this, "other must be a query of the same index");
+    }
+
+    private BitMapIndex<E> index() {
+
+      return BitMapIndex.this;
+    }
+  }
+
+  /**
+   * The builder of {@link BitMapIndex}, all the predicates are evaluated in a single pass over the
+   * elements when the index is built.
+   *
+   * @param <E> the element type.
+   */
+  public static final class Builder<E> implements ObjectBuilder<BitMapIndex<E>> {
+
+    private final List<E> elements;
+
+    private final Map<String, Predicate<? super E>> predicates;
+
+    private Builder(List<E> elements) {
+
+      this.elements = elements;
+      this.predicates = new LinkedHashMap<>();
+    }
+
+    /**
+     * Registers the {@code predicate} with the {@code name} .
+     *
+     * @param name      the name of the predicate, cannot be {@code null}, or already registered.
+     * @param predicate the predicate, cannot be {@code null} .
+     * @return the builder itself.
+     * @throws org.raistlic.common.precondition.InvalidParameterException if any of the parameters
+     *                                                                    is {@code null}, or the
+     *                                                                    {@code name} is already
+     *                                                                    registered.
+     */
+    public Builder<E> add(String name, Predicate<? super E> predicate) {
+
+      Param.notNull(name, "name cannot be null");
+      Param.notNull(predicate, "predicate cannot be null");
+      Param.isTrue(!predicates.containsKey(name), "duplicated predicate name: " + name);
+
+      predicates.put(name, predicate);
+      return this;
+    }
+
+    @Override
+    public BitMapIndex<E> build() {
+
+      List<E> snapshot = Collections.unmodifiableList(new ArrayList<>(elements));
+      int size = snapshot.size();
+      List<Predicate<? super E>> tests = new ArrayList<>(predicates.values());
+      BitMap.Builder[] builders = new BitMap.Builder[tests.size()];
+      for (int p = 0; p < builders.length; p++) {
+        builders[p] = BitMap.builder(size);
+      }
+      int i = 0;
+      for (E element : snapshot) {
+        for (int p = 0; p < builders.length; p++) {
+          if (tests.get(p).test(element)) {
+            builders[p].set(i);
+          }
+        }
+        i++;
+      }
+
+      Map<String, BitMap> bitMaps = new LinkedHashMap<>();
+      int p = 0;
+      for (String name : predicates.keySet()) {
+        bitMaps.put(name, builders[p++].build());
+      }
+      return new BitMapIndex<>(snapshot, bitMaps);
+    }
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+import org.raistlic.common.precondition.Param;
+
+/**
+ * A read-only sequence of binary values (1/0) that supports "rank" and "select" operations, see
+ * {@link BitMap} for the details of the operations.
+ * <p>
+ * Implementations differ in how the bits are stored, for example {@link BitMap} is a dense
+ * representation, while {@link CompressedBitMap} is optimized for sparse or run-heavy sequences.
+ */
+public interface BitSequence {
+
+  /**
+   * The method returns the number of bits in the sequence.
+   *
+   * @return the size of the sequence.
+   */
+  int size();
+
+  /**
+   * The method returns whether the specified bit at {@code index} is {@code 1} or not.
+   *
+   * @param index the index to query, must be within the range {@code [0, size())} .
+   * @return {@code true} if the bit at {@code index} is {@code 1} .
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code index} is out of
+   *                                                                    range.
+   */
+  boolean isOne(int index);
+
+  /**
+   * The method returns the number of {@code 1} s up to {@code index} (inclusively).
+   *
+   * @param index the index up to which to query the number of {@code 1} s, must be within the
+   *              range {@code [0, size())} .
+   * @return the number of {@code 1} s.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code index} is out of
+   *                                                                    range.
+   */
+  int rankOne(int index);
+
+  /**
+   * The method returns the number of {@code 0} s up to the {@code index} (inclusively).
+   *
+   * @param index the index up to which to query the number of {@code 0} s, must be within the
+   *              range {@code [0, size())} .
+   * @return the number of {@code 0} s.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code index} is out of
+   *                                                                    range.
+   */
+  default int rankZero(int index) {
+
+    return index + 1 - rankOne(index);
+  }
+
+  /**
+   * The method returns the index of the {@code i}-th {@code 1} .
+   *
+   * @param i specifies which {@code 1} 's index to query, cannot be less than {@code 0} .
+   * @return the index of the {@code i}-th {@code 1}, or {@code -1} if there are insufficient
+   * {@code 1} s in the sequence.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code i} is less than
+   *                                                                    {@code 0}.
+   */
+  int selectOne(int i);
+
+  /**
+   * The method returns the index of the {@code i}-th {@code 0} .
+   *
+   * @param i specifies which {@code 0} 's index to query, cannot be less than {@code 0} .
+   * @return the index of the {@code i}-th {@code 0}, or {@code -1} if there are insufficient
+   * {@code 0} s in the sequence.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code i} is less than
+   *                                                                    {@code 0}.
+   */
+  int selectZero(int i);
+
+  /**
+   * The method returns the index of the first {@code 1} at or after {@code from} .
+   * <p>
+   * The default implementation is a rank followed by a select, implementations that can scan
+   * their bits directly should override it.
+   *
+   * @param from the index to start searching from, must be within the range {@code [0, size()]} .
+   * @return the index of the found {@code 1}, or {@code -1} if there is none.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code from} is out of
+   *                                                                    range.
+   */
+  default int nextOne(int from) {
+
+    Param.isTrue(from >= 0, "from cannot be less than 0");
+    Param.isTrue(from <= size(), "from cannot be greater than size");
+
+    return selectOne(from == 0 ? 0 : rankOne(from - 1));
+  }
+}
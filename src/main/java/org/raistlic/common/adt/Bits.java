@@ -0,0 +1,229 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+/**
+ * Package private helpers for the word ({@code long}) level bit storage shared by the bit
+ * based data structures in this package.
+ * <p>
+ * Bit {@code i} of a sequence lives in word {@code i >>> 6}, at bit position {@code i & 63}
+ * (least significant bit first).
+ */
+final class Bits {
+
+  static final int WORD_SHIFT = 6;
+
+  static final int WORD_BITS = 1 << WORD_SHIFT;
+
+  static final int WORD_MASK = WORD_BITS - 1;
+
+  /**
+   * Returns the number of {@code long} words needed to hold {@code bits} bits.
+   */
+  static int wordCount(int bits) {
+
+    assert bits >= 0;
+
+    return (int) ((bits + (long) WORD_MASK) >>> WORD_SHIFT);
+  }
+
+  /**
+   * Returns the number of {@code long} words needed to hold {@code bits} bits.
+   */
+  static long wordCount(long bits) {
+
+    assert bits >= 0;
+
+    return (bits >>> WORD_SHIFT) + ((bits & WORD_MASK) == 0 ? 0 : 1);
+  }
+
+  /**
+   * Returns a mask of the lowest {@code bits} bits, {@code bits} within {@code [0, 64]}.
+   */
+  static long lowMask(int bits) {
+
+    assert bits >= 0 && bits <= WORD_BITS;
+
+    return bits == WORD_BITS ? -1L : (1L << bits) - 1L;
+  }
+
+  /**
+   * Returns the bit position (within {@code [0, 64)}) of the {@code rank}-th (0 based) {@code 1}
+   * in the {@code word}, the caller needs to make sure {@code rank < Long.bitCount(word)} .
+   */
+  static int selectInWord(long word, int rank) {
+
+    assert rank >= 0 && rank < Long.bitCount(word);
+
+    int offset = 0;
+    int count = Long.bitCount(word & 0xFFFFFFFFL);
+    if (rank >= count) {
+      rank -= count;
+      offset += 32;
+    }
+    count = Long.bitCount((word >>> offset) & 0xFFFFL);
+    if (rank >= count) {
+      rank -= count;
+      offset += 16;
+    }
+    count = Long.bitCount((word >>> offset) & 0xFFL);
+    if (rank >= count) {
+      rank -= count;
+      offset += 8;
+    }
+    return offset + SELECT_IN_BYTE[((int) (word >>> offset) & 0xFF) << 3 | rank];
+  }
+
+  /**
+   * Returns the index of the first {@code 1} at or after {@code from} in {@code words}, or
+   * {@code -1} if there is none.
+   */
+  static int nextOne(long[] words, int from) {
+
+    assert from >= 0;
+
+    int w = from >>> WORD_SHIFT;
+    if (w >= words.length) {
+      return -1;
+    }
+    long word = words[w] & (-1L << from);
+    while (word == 0L) {
+      w++;
+      if (w == words.length) {
+        return -1;
+      }
+      word = words[w];
+    }
+    return (w << WORD_SHIFT) + Long.numberOfTrailingZeros(word);
+  }
+
+  /**
+   * Returns the index of the first {@code 0} at or after {@code from} in {@code words}, or
+   * {@code -1} if there is none.
+   */
+  static int nextZero(long[] words, int from) {
+
+    assert from >= 0;
+
+    int w = from >>> WORD_SHIFT;
+    if (w >= words.length) {
+      return -1;
+    }
+    long word = ~words[w] & (-1L << from);
+    while (word == 0L) {
+      w++;
+      if (w == words.length) {
+        return -1;
+      }
+      word = ~words[w];
+    }
+    return (w << WORD_SHIFT) + Long.numberOfTrailingZeros(word);
+  }
+
+  /**
+   * Returns the index of the last {@code 1} at or before {@code from} in {@code words}, or
+   * {@code -1} if there is none, {@code from} must be less than {@code words.length * 64} .
+   */
+  static int previousOne(long[] words, int from) {
+
+    if (from < 0) {
+      return -1;
+    }
+    int w = from >>> WORD_SHIFT;
+    long word = words[w] & (-1L >>> (WORD_MASK - (from & WORD_MASK)));
+    while (word == 0L) {
+      if (w == 0) {
+        return -1;
+      }
+      w--;
+      word = words[w];
+    }
+    return (w << WORD_SHIFT) + WORD_MASK - Long.numberOfLeadingZeros(word);
+  }
+
+  /**
+   * Reads the {@code width} (within {@code [0, 64]}) bits value starting at bit {@code offset}
+   * from {@code words} .
+   */
+  static long read(long[] words, long offset, int width) {
+
+    assert width >= 0 && width <= WORD_BITS;
+
+    if (width == 0) {
+      return 0L;
+    }
+    int w = (int) (offset >>> WORD_SHIFT);
+    int shift = (int) (offset & WORD_MASK);
+    long result = words[w] >>> shift;
+    if (shift + width > WORD_BITS) {
+      result |= words[w + 1] << (WORD_BITS - shift);
+    }
+    return result & lowMask(width);
+  }
+
+  /**
+   * Writes the lowest {@code width} (within {@code [0, 64]}) bits of {@code value} to
+   * {@code words}, starting at bit {@code offset} .
+   */
+  static void write(long[] words, long offset, int width, long value) {
+
+    assert width >= 0 && width <= WORD_BITS;
+
+    if (width == 0) {
+      return;
+    }
+    long mask = lowMask(width);
+    value &= mask;
+    int w = (int) (offset >>> WORD_SHIFT);
+    int shift = (int) (offset & WORD_MASK);
+    words[w] = (words[w] & ~(mask << shift)) | (value << shift);
+    if (shift + width > WORD_BITS) {
+      int rest = WORD_BITS - shift;
+      words[w + 1] = (words[w + 1] & ~(mask >>> rest)) | (value >>> rest);
+    }
+  }
+
+  /**
+   * Clears the bits after {@code size} in the last word of {@code words}, so that the words
+   * array can be compared and hashed as a whole.
+   */
+  static void trimTail(long[] words, int size) {
+
+    int tail = size & WORD_MASK;
+    if (tail != 0 && words.length > 0) {
+      words[words.length - 1] &= lowMask(tail);
+    }
+  }
+
+  // for each byte value b and rank r, SELECT_IN_BYTE[b << 3 | r] is the position of the r-th 1 in b
+  private static final byte[] SELECT_IN_BYTE = new byte[256 * 8];
+
+  static {
+
+    for (int b = 0; b < 256; b++) {
+      for (int i = 0, r = 0; i < 8; i++) {
+        if ((b & (1 << i)) != 0) {
+          SELECT_IN_BYTE[b << 3 | r] = (byte) i;
+          r++;
+        }
+      }
+    }
+  }
+
+  private Bits() {
+  }
+}
@@ -0,0 +1,455 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+import org.raistlic.common.precondition.Param;
+import org.raistlic.common.util.ObjectBuilder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.ToLongFunction;
+
+/**
+ * A Bloom filter: a set of bits, in which each added element sets the bits at {@code k} hashed
+ * positions, so that {@link #mightContain(Object)} answers "no" for sure, or "probably yes", with
+ * a false positive rate chosen at construction, using a few bits per element.
+ * <p>
+ * The bits are stored in {@code long} words like the ones of {@link BitMap}, the {@code k}
+ * positions are derived by double hashing from a single 64 bits hash of the element, computed by
+ * a configurable hash function (by default, a mix of {@link Object#hashCode()} ).
+ * <p>
+ * A filter built with {@link Builder#concurrent()} can be added to by many threads without
+ * locking (each bit is set by a compare-and-set loop on its word), otherwise the class is NOT
+ * thread safe for writes. A filter can be merged with a compatible one, see
+ * {@link #merge(BloomFilter)}, and written to / read from a channel, see
+ * {@link #writeTo(WritableByteChannel)} .
+ *
+ * @param <E> the element type.
+ */
+public final class BloomFilter<E> {
+
+  /**
+   * Exports a builder of a filter sized for the {@code expectedInsertions}, with a default false
+   * positive rate of {@code 1%} .
+   *
+   * @param expectedInsertions the expected number of added elements, must be greater than
+   *                           {@code 0} .
+   * @param <E>                the element type.
+   * @return the builder.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if
+   *                                                                    {@code expectedInsertions}
+   *                                                                    is less than {@code 1} .
+   */
+  public static <E> Builder<E> builder(long expectedInsertions) {
+
+    return new Builder<>(expectedInsertions);
+  }
+
+  /**
+   * Reads a filter written by {@link #writeTo(WritableByteChannel)} from the {@code channel} .
+   *
+   * @param channel    the channel to read from, cannot be {@code null} .
+   * @param hasher     the hash function, must be the same as the one of the written filter,
+   *                   cannot be {@code null} .
+   * @param concurrent whether the filter read supports concurrent adds.
+   * @param <E>        the element type.
+   * @return the filter read.
+   * @throws IOException when reading fails, or the data is not a valid filter.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if any of the parameters is
+   *                                                                    {@code null} .
+   */
+  public static <E> BloomFilter<E> readFrom(ReadableByteChannel channel,
+                                            ToLongFunction<? super E> hasher,
+                                            boolean concurrent) throws IOException {
+
+    Param.notNull(channel, "channel cannot be null");
+    Param.notNull(hasher, "hasher cannot be null");
+
+    ByteBuffer header = readFully(channel, HEADER_BYTES);
+    if (header.getInt() != MAGIC) {
+      throw new IOException("not a bloom filter, magic number mismatch");
+    }
+    int version = header.getInt();
+    if (version != VERSION) {
+      throw new IOException("unsupported bloom filter version: " + version);
+    }
+    int hashCount = header.getInt();
+    header.getInt();
+    long bitSize = header.getLong();
+    if (hashCount < 1 || bitSize < 1L || bitSize > MAXIMUM_BIT_SIZE) {
+      throw new IOException("corrupted bloom filter header");
+    }
+
+    BloomFilter<E> result = new BloomFilter<>(bitSize, hashCount, hasher, concurrent);
+    for (int i = 0; i < result.wordCount(); ) {
+      int count = Math.min(result.wordCount() - i, BUFFER_BYTES / Long.BYTES);
+      ByteBuffer body = readFully(channel, count * Long.BYTES);
+      for (int end = i + count; i < end; i++) {
+        result.orWord(i, body.getLong());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the number of bits for {@code n} elements at the false positive rate {@code p} .
+   */
+  static long optimalBitSize(long n, double p) {
+
+    return Math.max(Long.SIZE, (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2))));
+  }
+
+  /**
+   * Returns the number of hash functions that minimizes the false positive rate, for {@code n}
+   * elements in {@code m} bits.
+   */
+  static int optimalHashCount(long n, long m) {
+
+    return Math.max(1, (int) Math.round((double) m / n * Math.log(2)));
+  }
+
+  /**
+   * The default hash function, which spreads the bits of the {@link Object#hashCode()} over 64
+   * bits.
+   */
+  static long defaultHash(Object element) {
+
+    long h = element.hashCode() * 0x9E3779B97F4A7C15L;
+    h ^= h >>> 32;
+    h *= 0xD6E8FEB86659FD93L;
+    return h ^ (h >>> 32);
+  }
+
+  /**
+   * Returns the second hash of the double hashing, which is odd, so it never degenerates to
+   * {@code 0} .
+   */
+  static long step(long hash) {
+
+    return Long.rotateLeft(hash, 32) | 1L;
+  }
+
+  static long position(long combinedHash, long size) {
+
+    return (combinedHash & Long.MAX_VALUE) % size;
+  }
+
+  static ByteBuffer readFully(ReadableByteChannel channel, int bytes) throws IOException {
+
+    ByteBuffer buffer = ByteBuffer.allocate(bytes).order(BYTE_ORDER);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) < 0) {
+        throw new IOException("unexpected end of stream");
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  static void writeFully(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+  static final int HEADER_BYTES = 24;
+
+  static final int BUFFER_BYTES = 1 << 16;
+
+  private static final int MAGIC = 0x52424C46;
+
+  private static final int VERSION = 1;
+
+  private static final long MAXIMUM_BIT_SIZE = (long) (Integer.MAX_VALUE - 8) << Bits.WORD_SHIFT;
+
+  private final long bitSize;
+
+  private final int hashCount;
+
+  private final ToLongFunction<? super E> hasher;
+
+  /**
+   * The words, when the filter is not concurrent.
+   */
+  private final long[] words;
+
+  /**
+   * The words, when the filter is concurrent.
+   */
+  private final AtomicLongArray atomicWords;
+
+  private BloomFilter(long bitSize, int hashCount, ToLongFunction<? super E> hasher, boolean concurrent) {
+
+    int wordCount = (int) Bits.wordCount(bitSize);
+    this.bitSize = bitSize;
+    this.hashCount = hashCount;
+    this.hasher = hasher;
+    this.words = concurrent ? null : new long[wordCount];
+    this.atomicWords = concurrent ? new AtomicLongArray(wordCount) : null;
+  }
+
+  /**
+   * Adds the {@code element} to the filter.
+   *
+   * @param element the element to add, cannot be {@code null} .
+   * @return {@code true} if the filter changed, i.e. the {@code element} was definitely not
+   * added before.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code element} is
+   *                                                                    {@code null} .
+   */
+  public boolean add(E element) {
+
+    Param.notNull(element, "element cannot be null");
+
+    long hash = hasher.applyAsLong(element);
+    long step = step(hash);
+    boolean changed = false;
+    for (int i = 0; i < hashCount; i++, hash += step) {
+      long index = position(hash, bitSize);
+      changed |= (orWord((int) (index >>> Bits.WORD_SHIFT), 1L << index) & (1L << index)) == 0L;
+    }
+    return changed;
+  }
+
+  /**
+   * The method tells whether the {@code element} might have been added to the filter.
+   *
+   * @param element the element to query, cannot be {@code null} .
+   * @return {@code false} if the {@code element} has definitely not been added, {@code true} if it
+   * probably has.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code element} is
+   *                                                                    {@code null} .
+   */
+  public boolean mightContain(E element) {
+
+    Param.notNull(element, "element cannot be null");
+
+    long hash = hasher.applyAsLong(element);
+    long step = step(hash);
+    for (int i = 0; i < hashCount; i++, hash += step) {
+      long index = position(hash, bitSize);
+      if ((word((int) (index >>> Bits.WORD_SHIFT)) & (1L << index)) == 0L) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Adds all the elements of the {@code other} filter to this filter, i.e. makes this filter the
+   * union of both. The filters must have the same number of bits and of hash functions, and
+   * (which cannot be checked) the same hash function.
+   *
+   * @param other the filter to merge, cannot be {@code null} .
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code other} is
+   *                                                                    {@code null}, or not
+   *                                                                    compatible.
+   */
+  public void merge(BloomFilter<E> other) {
+
+    Param.notNull(other, "other cannot be null");
+    Param.isTrue(other.bitSize == bitSize && other.hashCount == hashCount,
+        "other must have the same bit size and hash count");
+
+    for (int i = 0; i < wordCount(); i++) {
+      orWord(i, other.word(i));
+    }
+  }
+
+  /**
+   * The method returns the number of bits of the filter.
+   *
+   * @return the number of bits.
+   */
+  public long bitSize() {
+
+    return bitSize;
+  }
+
+  /**
+   * The method returns the number of hashed positions of each element.
+   *
+   * @return the number of hash functions.
+   */
+  public int hashCount() {
+
+    return hashCount;
+  }
+
+  /**
+   * The method returns the false positive rate expected from the current number of {@code 1}
+   * bits, which grows as elements are added.
+   *
+   * @return the expected false positive rate.
+   */
+  public double expectedFalsePositiveRate() {
+
+    long ones = 0L;
+    for (int i = 0; i < wordCount(); i++) {
+      ones += Long.bitCount(word(i));
+    }
+    return Math.pow((double) ones / bitSize, hashCount);
+  }
+
+  /**
+   * Writes the filter to the {@code channel}, at its current position. The format (version
+   * {@code 1}) is little endian: a 24 bytes header with the magic number {@code "RBLF"}, the
+   * format version and the number of hash functions as {@code int} s, 4 reserved bytes, and the
+   * number of bits as a {@code long}; followed by the {@code long} words of the bits.
+   *
+   * @param channel the channel to write to, cannot be {@code null} .
+   * @throws IOException when writing fails.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code channel} is
+   *                                                                    {@code null} .
+   */
+  public void writeTo(WritableByteChannel channel) throws IOException {
+
+    Param.notNull(channel, "channel cannot be null");
+
+    ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES).order(BYTE_ORDER);
+    buffer.putInt(MAGIC)
+        .putInt(VERSION)
+        .putInt(hashCount)
+        .putInt(0)
+        .putLong(bitSize);
+    for (int i = 0; i < wordCount(); i++) {
+      if (buffer.remaining() < Long.BYTES) {
+        writeFully(buffer, channel);
+      }
+      buffer.putLong(word(i));
+    }
+    writeFully(buffer, channel);
+  }
+
+  private int wordCount() {
+
+    return words == null ? atomicWords.length() : words.length;
+  }
+
+  private long word(int index) {
+
+    return words == null ? atomicWords.get(index) : words[index];
+  }
+
+  /**
+   * Sets the bits of the {@code mask} in the word at {@code index}, and returns the previous word.
+   */
+  private long orWord(int index, long mask) {
+
+    if (words != null) {
+      long previous = words[index];
+      words[index] = previous | mask;
+      return previous;
+    }
+    long previous = atomicWords.get(index);
+    while ((previous & mask) != mask && !atomicWords.compareAndSet(index, previous, previous | mask)) {
+      previous = atomicWords.get(index);
+    }
+    return previous;
+  }
+
+  /**
+   * The builder of {@link BloomFilter} .
+   *
+   * @param <E> the element type.
+   */
+  public static final class Builder<E> implements ObjectBuilder<BloomFilter<E>> {
+
+    private final long expectedInsertions;
+
+    private double falsePositiveRate = 0.01;
+
+    private ToLongFunction<? super E> hasher = BloomFilter::defaultHash;
+
+    private boolean concurrent;
+
+    private Builder(long expectedInsertions) {
+
+      Param.isTrue(expectedInsertions > 0L, "expectedInsertions must be greater than 0");
+
+      this.expectedInsertions = expectedInsertions;
+    }
+
+    /**
+     * Sets the false positive rate expected once the expected number of elements are added.
+     *
+     * @param falsePositiveRate the rate, must be within the range {@code (0, 1)} .
+     * @return the builder itself.
+     * @throws org.raistlic.common.precondition.InvalidParameterException if
+     *                                                                    {@code falsePositiveRate}
+     *                                                                    is out of range.
+     */
+    public Builder<E> falsePositiveRate(double falsePositiveRate) {
+
+      Param.isTrue(falsePositiveRate > 0.0 && falsePositiveRate < 1.0, "falsePositiveRate must be within (0, 1)");
+
+      this.falsePositiveRate = falsePositiveRate;
+      return this;
+    }
+
+    /**
+     * Sets the function that computes the 64 bits hash of an element, a function that hashes the
+     * content of the elements to 64 bits (e.g. of long strings) gives a lower false positive
+     * rate than the default one, which is limited by the 32 bits {@link Object#hashCode()} .
+     *
+     * @param hasher the hash function, cannot be {@code null} .
+     * @return the builder itself.
+     * @throws org.raistlic.common.precondition.InvalidParameterException if {@code hasher} is
+     *                                                                    {@code null} .
+     */
+    public Builder<E> hasher(ToLongFunction<? super E> hasher) {
+
+      Param.notNull(hasher, "hasher cannot be null");
+
+      this.hasher = hasher;
+      return this;
+    }
+
+    /**
+     * Makes the filter support concurrent adds.
+     *
+     * @return the builder itself.
+     */
+    public Builder<E> concurrent() {
+
+      this.concurrent = true;
+      return this;
+    }
+
+    /**
+     * @throws org.raistlic.common.precondition.InvalidParameterException if the filter would be
+     *                                                                    too large.
+     */
+    @Override
+    public BloomFilter<E> build() {
+
+      long bitSize = optimalBitSize(expectedInsertions, falsePositiveRate);
+      Param.isTrue(bitSize <= MAXIMUM_BIT_SIZE, "the filter would be too large");
+
+      return new BloomFilter<>(bitSize, optimalHashCount(expectedInsertions, bitSize), hasher, concurrent);
+    }
+  }
+}
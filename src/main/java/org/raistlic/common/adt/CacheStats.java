@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+/**
+ * An immutable snapshot of the counters of a cache, see {@link ReferenceCache#stats()} and
+ * {@link TinyLfuCache#stats()} .
+ */
+public final class CacheStats {
+
+  private final long hitCount;
+
+  private final long missCount;
+
+  private final long evictionCount;
+
+  CacheStats(long hitCount, long missCount, long evictionCount) {
+
+    this.hitCount = hitCount;
+    this.missCount = missCount;
+    this.evictionCount = evictionCount;
+  }
+
+  public long hitCount() {
+
+    return hitCount;
+  }
+
+  public long missCount() {
+
+    return missCount;
+  }
+
+  public long evictionCount() {
+
+    return evictionCount;
+  }
+
+  /**
+   * The method returns the ratio of hits among all the requests, or {@code 1.0} if there has
+   * been no request.
+   *
+   * @return the hit rate.
+   */
+  public double hitRate() {
+
+    long requests = hitCount + missCount;
+    return requests == 0L ? 1.0 : (double) hitCount / requests;
+  }
+
+  @Override
+  public String toString() {
+
+    return "CacheStats{hitCount=" + hitCount + ", missCount=" + missCount + ", evictionCount=" + evictionCount + "}";
+  }
+}
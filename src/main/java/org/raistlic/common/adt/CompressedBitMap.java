@@ -0,0 +1,500 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+import org.raistlic.common.precondition.Param;
+import org.raistlic.common.util.ObjectBuilder;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * A compressed, immutable {@link BitSequence}, in the spirit of "Roaring" bitmaps.
+ * <p>
+ * The bits are split into chunks of {@code 65536} bits, chunks with no {@code 1} s are not
+ * stored at all, and each of the other chunks is stored in whichever of the following containers
+ * takes the least space:
+ * <ul>
+ * <li>a sorted array of the (16 bits) offsets of the {@code 1} s, for sparse chunks;</li>
+ * <li>a dense {@link BitMap} of the chunk;</li>
+ * <li>a sorted array of the runs of {@code 1} s, for chunks where the {@code 1} s come in long
+ * runs.</li>
+ * </ul>
+ * The {@link #rankOne(int)}, {@link #selectOne(int)} and {@link #isOne(int)} operations first
+ * binary search the chunk, and then query the container, while {@link #selectZero(int)} binary
+ * searches {@link #rankZero(int)}, and is therefore considerably slower than the others.
+ */
+public final class CompressedBitMap implements BitSequence {
+
+  /**
+   * A static factory method, which iterates through the given {@code list}, and sets 1s at where
+   * ever the element on the corresponding index matches the {@code condition} .
+   *
+   * @param <E>       the element type of the list.
+   * @param list      the list of elements based on which to create the bit map.
+   * @param condition the condition to check the {@code list}
+   * @return the created bit map.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code list} or
+   *                                                                    {@code condition} is
+   *                                                                    {@code null} .
+   */
+  public static <E> CompressedBitMap newInstance(List<E> list, Predicate<? super E> condition) {
+
+    Param.notNull(list, "list cannot be null");
+    Param.notNull(condition, "condition cannot be null");
+
+    Builder builder = builder(list.size());
+    for (int i = 0, size = list.size(); i < size; i++) {
+      if (condition.test(list.get(i))) {
+        builder.set(i);
+      }
+    }
+    return builder.get();
+  }
+
+  /**
+   * The static factory method exports a {@code Builder} instance, to create a
+   * {@code CompressedBitMap} by setting the {@code 1} s in ascending order.
+   * <p>
+   * A {@code Builder} instance is NOT thread safe.
+   *
+   * @param size the size of the bit map to build, cannot be less than {@code 0} .
+   * @return the new {@link CompressedBitMap.Builder} instance.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code size} is less than
+   *                                                                    {@code 0}.
+   */
+  public static Builder builder(int size) {
+
+    return new Builder(size);
+  }
+
+  private static final int CHUNK_SHIFT = 16;
+
+  private static final int CHUNK_BITS = 1 << CHUNK_SHIFT;
+
+  private static final int CHUNK_MASK = CHUNK_BITS - 1;
+
+  private static final int CHUNK_WORDS = CHUNK_BITS >>> Bits.WORD_SHIFT;
+
+  private final int size;
+
+  private final char[] keys;
+
+  private final Container[] containers;
+
+  /**
+   * {@code ranks[i]} is the number of {@code 1} s before the chunk of {@code containers[i]}, the
+   * last element is the total number of {@code 1} s.
+   */
+  private final int[] ranks;
+
+  private CompressedBitMap(int size, char[] keys, Container[] containers) {
+
+    this.size = size;
+    this.keys = keys;
+    this.containers = containers;
+    this.ranks = new int[containers.length + 1];
+    for (int i = 0; i < containers.length; i++) {
+      ranks[i + 1] = ranks[i] + containers[i].cardinality();
+    }
+  }
+
+  @Override
+  public int size() {
+
+    return size;
+  }
+
+  @Override
+  public boolean isOne(int index) {
+
+    Param.isTrue(index >= 0, "index cannot be less than 0");
+    Param.isTrue(index < size, "index must be less than size");
+
+    int position = Arrays.binarySearch(keys, (char) (index >>> CHUNK_SHIFT));
+    return position >= 0 && containers[position].contains(index & CHUNK_MASK);
+  }
+
+  @Override
+  public int rankOne(int index) {
+
+    Param.isTrue(index >= 0, "index cannot be less than 0");
+    Param.isTrue(index < size, "index must be less than size");
+
+    int position = Arrays.binarySearch(keys, (char) (index >>> CHUNK_SHIFT));
+    if (position >= 0) {
+      return ranks[position] + containers[position].rank(index & CHUNK_MASK);
+    } else {
+      return ranks[-(position + 1)];
+    }
+  }
+
+  @Override
+  public int selectOne(int i) {
+
+    Param.isTrue(i >= 0, "i cannot be less than 0");
+
+    if (i >= ranks[containers.length]) {
+      return -1;
+    }
+    int left = 0;
+    int right = containers.length - 1;
+    while (left < right) {
+      int mid = (left + right + 1) >>> 1;
+      if (ranks[mid] > i) {
+        right = mid - 1;
+      } else {
+        left = mid;
+      }
+    }
+    return (keys[left] << CHUNK_SHIFT) | containers[left].select(i - ranks[left]);
+  }
+
+  @Override
+  public int selectZero(int i) {
+
+    Param.isTrue(i >= 0, "i cannot be less than 0");
+
+    if (i >= size - ranks[containers.length]) {
+      return -1;
+    }
+    int left = i;
+    int right = size - 1;
+    while (left < right) {
+      int mid = (left + right) >>> 1;
+      if (rankZero(mid) > i) {
+        right = mid;
+      } else {
+        left = mid + 1;
+      }
+    }
+    return left;
+  }
+
+  /**
+   * The method returns the total number of {@code 1} s in the bit map.
+   *
+   * @return the number of {@code 1} s.
+   */
+  public int cardinality() {
+
+    return ranks[containers.length];
+  }
+
+  private static abstract class Container {
+
+    abstract int cardinality();
+
+    abstract boolean contains(int offset);
+
+    /**
+     * Counts the {@code 1} s up to {@code offset} (inclusively).
+     */
+    abstract int rank(int offset);
+
+    /**
+     * Returns the offset of the {@code i}-th {@code 1}, {@code i} must be within range.
+     */
+    abstract int select(int i);
+  }
+
+  private static final class ArrayContainer extends Container {
+
+    private final char[] offsets;
+
+    private ArrayContainer(char[] offsets) {
+
+      this.offsets = offsets;
+    }
+
+    @Override
+    int cardinality() {
+
+      return offsets.length;
+    }
+
+    @Override
+    boolean contains(int offset) {
+
+      return Arrays.binarySearch(offsets, (char) offset) >= 0;
+    }
+
+    @Override
+    int rank(int offset) {
+
+      int position = Arrays.binarySearch(offsets, (char) offset);
+      return position >= 0 ? position + 1 : -(position + 1);
+    }
+
+    @Override
+    int select(int i) {
+
+      return offsets[i];
+    }
+  }
+
+  private static final class BitMapContainer extends Container {
+
+    private final BitMap bitMap;
+
+    private final int cardinality;
+
+    private BitMapContainer(BitMap bitMap, int cardinality) {
+
+      this.bitMap = bitMap;
+      this.cardinality = cardinality;
+    }
+
+    @Override
+    int cardinality() {
+
+      return cardinality;
+    }
+
+    @Override
+    boolean contains(int offset) {
+
+      return bitMap.isOne(offset);
+    }
+
+    @Override
+    int rank(int offset) {
+
+      return bitMap.rankOne(offset);
+    }
+
+    @Override
+    int select(int i) {
+
+      return bitMap.selectOne(i);
+    }
+  }
+
+  private static final class RunContainer extends Container {
+
+    private final char[] starts;
+
+    /**
+     * Run lengths minus {@code 1}, so that a full chunk fits.
+     */
+    private final char[] lengths;
+
+    /**
+     * {@code ranks[i]} is the number of {@code 1} s before the {@code i}-th run.
+     */
+    private final int[] ranks;
+
+    private RunContainer(char[] starts, char[] lengths) {
+
+      this.starts = starts;
+      this.lengths = lengths;
+      this.ranks = new int[starts.length + 1];
+      for (int i = 0; i < starts.length; i++) {
+        ranks[i + 1] = ranks[i] + lengths[i] + 1;
+      }
+    }
+
+    @Override
+    int cardinality() {
+
+      return ranks[starts.length];
+    }
+
+    @Override
+    boolean contains(int offset) {
+
+      int run = runAtOrBefore(offset);
+      return run >= 0 && offset - starts[run] <= lengths[run];
+    }
+
+    @Override
+    int rank(int offset) {
+
+      int run = runAtOrBefore(offset);
+      if (run < 0) {
+        return 0;
+      }
+      return ranks[run] + Math.min(offset - starts[run], lengths[run]) + 1;
+    }
+
+    @Override
+    int select(int i) {
+
+      int left = 0;
+      int right = starts.length - 1;
+      while (left < right) {
+        int mid = (left + right + 1) >>> 1;
+        if (ranks[mid] > i) {
+          right = mid - 1;
+        } else {
+          left = mid;
+        }
+      }
+      return starts[left] + i - ranks[left];
+    }
+
+    private int runAtOrBefore(int offset) {
+
+      int position = Arrays.binarySearch(starts, (char) offset);
+      return position >= 0 ? position : -(position + 1) - 1;
+    }
+  }
+
+  /**
+   * Picks the smallest container for the chunk held in {@code words}, which has
+   * {@code cardinality} (greater than {@code 0}) {@code 1} s.
+   */
+  private static Container createContainer(long[] words, int cardinality) {
+
+    assert cardinality > 0;
+
+    int runs = 0;
+    long carry = 0L;
+    for (long word : words) {
+      runs += Long.bitCount(word & ~((word << 1) | carry));
+      carry = word >>> (Bits.WORD_BITS - 1);
+    }
+
+    long arrayBytes = cardinality <= CHUNK_BITS / 16 ? 2L * cardinality : Long.MAX_VALUE;
+    long bitMapBytes = CHUNK_BITS / 8;
+    long runBytes = 4L * runs;
+
+    if (runBytes < arrayBytes && runBytes < bitMapBytes) {
+      char[] starts = new char[runs];
+      char[] lengths = new char[runs];
+      for (int run = 0, from = Bits.nextOne(words, 0); from >= 0; run++) {
+        int to = Bits.nextZero(words, from);
+        if (to < 0) {
+          to = CHUNK_BITS;
+        }
+        starts[run] = (char) from;
+        lengths[run] = (char) (to - from - 1);
+        from = Bits.nextOne(words, to);
+      }
+      return new RunContainer(starts, lengths);
+    } else if (arrayBytes <= bitMapBytes) {
+      char[] offsets = new char[cardinality];
+      for (int i = 0, from = Bits.nextOne(words, 0); from >= 0; i++) {
+        offsets[i] = (char) from;
+        from = Bits.nextOne(words, from + 1);
+      }
+      return new ArrayContainer(offsets);
+    } else {
+      return new BitMapContainer(BitMap.wrap(CHUNK_BITS, Arrays.copyOf(words, words.length)), cardinality);
+    }
+  }
+
+  /**
+   * The builder to create new compressed bit map instances, the {@code 1} s must be set in
+   * ascending order, so that the builder only needs to hold one uncompressed chunk at a time.
+   */
+  public static final class Builder implements ObjectBuilder<CompressedBitMap> {
+
+    private final int size;
+
+    private final long[] chunk;
+
+    private int chunkKey;
+
+    private int chunkCardinality;
+
+    private int last;
+
+    private char[] keys;
+
+    private Container[] containers;
+
+    private int count;
+
+    private Builder(int size) {
+
+      Param.isTrue(size >= 0, "size cannot be less than 0");
+
+      this.size = size;
+      this.chunk = new long[CHUNK_WORDS];
+      this.chunkKey = -1;
+      this.last = -1;
+      this.keys = new char[4];
+      this.containers = new Container[4];
+    }
+
+    /**
+     * The method sets the bit at {@code index} to be {@code 1} .
+     *
+     * @param index the index of the bit to set, must be within range {@code [0, size)}, and cannot
+     *              be less than any previously set index.
+     * @return the {@link CompressedBitMap.Builder} instance itself.
+     * @throws org.raistlic.common.precondition.InvalidParameterException if {@code index} is out of
+     *                                                                    range, or less than a
+     *                                                                    previously set index.
+     */
+    public Builder set(int index) {
+
+      Param.isTrue(index >= 0, "index cannot be less than 0");
+      Param.isTrue(index < size, "index must be less than size");
+      Param.isTrue(index >= last, "index cannot be less than a previously set index");
+
+      if (index == last) {
+        return this;
+      }
+      int key = index >>> CHUNK_SHIFT;
+      if (key != chunkKey) {
+        flush();
+        chunkKey = key;
+      }
+      chunk[(index & CHUNK_MASK) >>> Bits.WORD_SHIFT] |= 1L << index;
+      chunkCardinality++;
+      last = index;
+      return this;
+    }
+
+    /**
+     * Create and return a new {@link CompressedBitMap} instance based on the current state of the
+     * {@code builder} .
+     *
+     * @return the created {@link CompressedBitMap} .
+     */
+    @Override
+    public CompressedBitMap build() {
+
+      char[] resultKeys = Arrays.copyOf(keys, count + (chunkCardinality > 0 ? 1 : 0));
+      Container[] resultContainers = Arrays.copyOf(containers, resultKeys.length);
+      if (chunkCardinality > 0) {
+        resultKeys[count] = (char) chunkKey;
+        resultContainers[count] = createContainer(chunk, chunkCardinality);
+      }
+      return new CompressedBitMap(size, resultKeys, resultContainers);
+    }
+
+    private void flush() {
+
+      if (chunkCardinality == 0) {
+        return;
+      }
+      if (count == keys.length) {
+        keys = Arrays.copyOf(keys, count * 2);
+        containers = Arrays.copyOf(containers, count * 2);
+      }
+      keys[count] = (char) chunkKey;
+      containers[count] = createContainer(chunk, chunkCardinality);
+      count++;
+      Arrays.fill(chunk, 0L);
+      chunkCardinality = 0;
+    }
+  }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+import org.raistlic.common.precondition.Param;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size set of bits that can be modified by many threads concurrently without locking,
+ * and frozen into an immutable {@link BitMap} for the "rank" and "select" operations.
+ * <p>
+ * The bits are kept in an {@link AtomicLongArray}, 64 bits per element, and every modification
+ * is a compare-and-set loop on a single element, that returns early without writing when the bit
+ * already has the expected value.
+ * <p>
+ * The class is thread safe.
+ */
+public final class ConcurrentBitSet {
+
+  private final int size;
+
+  private final AtomicLongArray words;
+
+  /**
+   * Creates a bit set of {@code size} bits, all {@code 0} .
+   *
+   * @param size the number of bits, cannot be less than {@code 0} .
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code size} is less than
+   *                                                                    {@code 0} .
+   */
+  public ConcurrentBitSet(int size) {
+
+    Param.isTrue(size >= 0, "size cannot be less than 0");
+
+    this.size = size;
+    this.words = new AtomicLongArray(Bits.wordCount(size));
+  }
+
+  /**
+   * The method returns the number of bits in the set.
+   *
+   * @return the number of bits.
+   */
+  public int size() {
+
+    return size;
+  }
+
+  /**
+   * The method returns whether the bit at {@code index} is currently {@code 1} .
+   *
+   * @param index the index of the bit, must be within the range {@code [0, size())} .
+   * @return {@code true} if the bit is {@code 1} .
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code index} is out of
+   *                                                                    range.
+   */
+  public boolean isOne(int index) {
+
+    checkIndex(index);
+
+    return (words.get(index >>> Bits.WORD_SHIFT) & (1L << index)) != 0L;
+  }
+
+  /**
+   * The method sets the bit at {@code index} to be {@code 1} .
+   *
+   * @param index the index of the bit, must be within the range {@code [0, size())} .
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code index} is out of
+   *                                                                    range.
+   */
+  public void set(int index) {
+
+    testAndSet(index);
+  }
+
+  /**
+   * The method atomically sets the bit at {@code index} to be {@code 1}, and returns its previous
+   * value, so that exactly one of the threads racing to set the same bit sees {@code false} .
+   *
+   * @param index the index of the bit, must be within the range {@code [0, size())} .
+   * @return {@code true} if the bit was already {@code 1} .
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code index} is out of
+   *                                                                    range.
+   */
+  public boolean testAndSet(int index) {
+
+    checkIndex(index);
+
+    int word = index >>> Bits.WORD_SHIFT;
+    long mask = 1L << index;
+    while (true) {
+      long current = words.get(word);
+      if ((current & mask) != 0L) {
+        return true;
+      }
+      if (words.compareAndSet(word, current, current | mask)) {
+        return false;
+      }
+    }
+  }
+
+  /**
+   * The method sets the bit at {@code index} to be {@code 0} .
+   *
+   * @param index the index of the bit, must be within the range {@code [0, size())} .
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code index} is out of
+   *                                                                    range.
+   */
+  public void clear(int index) {
+
+    testAndClear(index);
+  }
+
+  /**
+   * The method atomically sets the bit at {@code index} to be {@code 0}, and returns its previous
+   * value.
+   *
+   * @param index the index of the bit, must be within the range {@code [0, size())} .
+   * @return {@code true} if the bit was {@code 1} .
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code index} is out of
+   *                                                                    range.
+   */
+  public boolean testAndClear(int index) {
+
+    checkIndex(index);
+
+    int word = index >>> Bits.WORD_SHIFT;
+    long mask = 1L << index;
+    while (true) {
+      long current = words.get(word);
+      if ((current & mask) == 0L) {
+        return false;
+      }
+      if (words.compareAndSet(word, current, current & ~mask)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Creates an immutable {@link BitMap} of the current bits, copying them a word at a time.
+   * <p>
+   * Each word is read atomically, but the words are not read as a whole atomically: modifications
+   * running concurrently with this method may or may not be included. Call it after the writing
+   * threads are done (e.g. after joining them) for an exact result.
+   *
+   * @return the created bit map.
+   */
+  public BitMap freeze() {
+
+    long[] snapshot = new long[words.length()];
+    for (int i = 0; i < snapshot.length; i++) {
+      snapshot[i] = words.get(i);
+    }
+    return BitMap.wrap(size, snapshot);
+  }
+
+  private void checkIndex(int index) {
+
+    Param.isTrue(index >= 0, "index cannot be less than 0");
+    Param.isTrue(index < size, "index must be less than size");
+  }
+}
@@ -0,0 +1,463 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+import org.raistlic.common.precondition.Param;
+import org.raistlic.common.util.ObjectBuilder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.ToLongFunction;
+
+/**
+ * A counting Bloom filter: a variant of {@link BloomFilter} with a 4 bits counter instead of a
+ * bit at each position, so that the elements can also be removed.
+ * <p>
+ * The counters are packed 16 per {@code long} word, a counter that reaches {@code 15} sticks
+ * there (it is neither incremented nor decremented any more), which keeps the filter free of
+ * false negatives at the cost of some stale positives. Removing an element that has not been
+ * added can cause false negatives, so a removal is checked with {@link #mightContain(Object)}
+ * first.
+ * <p>
+ * A filter built with {@link Builder#concurrent()} can be modified by many threads without
+ * locking (each counter is updated by a compare-and-set loop on its word), otherwise the class is
+ * NOT thread safe for writes.
+ *
+ * @param <E> the element type.
+ */
+public final class CountingBloomFilter<E> {
+
+  /**
+   * Exports a builder of a filter sized for the {@code expectedInsertions}, with a default false
+   * positive rate of {@code 1%} .
+   *
+   * @param expectedInsertions the expected number of elements in the filter at the same time,
+   *                           must be greater than {@code 0} .
+   * @param <E>                the element type.
+   * @return the builder.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if
+   *                                                                    {@code expectedInsertions}
+   *                                                                    is less than {@code 1} .
+   */
+  public static <E> Builder<E> builder(long expectedInsertions) {
+
+    return new Builder<>(expectedInsertions);
+  }
+
+  /**
+   * Reads a filter written by {@link #writeTo(WritableByteChannel)} from the {@code channel} .
+   *
+   * @param channel    the channel to read from, cannot be {@code null} .
+   * @param hasher     the hash function, must be the same as the one of the written filter,
+   *                   cannot be {@code null} .
+   * @param concurrent whether the filter read supports concurrent modifications.
+   * @param <E>        the element type.
+   * @return the filter read.
+   * @throws IOException when reading fails, or the data is not a valid filter.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if any of the parameters is
+   *                                                                    {@code null} .
+   */
+  public static <E> CountingBloomFilter<E> readFrom(ReadableByteChannel channel,
+                                                    ToLongFunction<? super E> hasher,
+                                                    boolean concurrent) throws IOException {
+
+    Param.notNull(channel, "channel cannot be null");
+    Param.notNull(hasher, "hasher cannot be null");
+
+    ByteBuffer header = BloomFilter.readFully(channel, BloomFilter.HEADER_BYTES);
+    if (header.getInt() != MAGIC) {
+      throw new IOException("not a counting bloom filter, magic number mismatch");
+    }
+    int version = header.getInt();
+    if (version != VERSION) {
+      throw new IOException("unsupported counting bloom filter version: " + version);
+    }
+    int hashCount = header.getInt();
+    header.getInt();
+    long counterCount = header.getLong();
+    if (hashCount < 1 || counterCount < 1L || counterCount > MAXIMUM_COUNTER_COUNT) {
+      throw new IOException("corrupted counting bloom filter header");
+    }
+
+    CountingBloomFilter<E> result = new CountingBloomFilter<>(counterCount, hashCount, hasher, concurrent);
+    for (int i = 0; i < result.wordCount(); ) {
+      int count = Math.min(result.wordCount() - i, BloomFilter.BUFFER_BYTES / Long.BYTES);
+      ByteBuffer body = BloomFilter.readFully(channel, count * Long.BYTES);
+      for (int end = i + count; i < end; i++) {
+        result.mergeWord(i, body.getLong());
+      }
+    }
+    return result;
+  }
+
+  private static final int COUNTER_BITS_SHIFT = 2;
+
+  private static final int COUNTERS_PER_WORD_SHIFT = 4;
+
+  private static final int COUNTERS_PER_WORD_MASK = (1 << COUNTERS_PER_WORD_SHIFT) - 1;
+
+  private static final long COUNTER_MASK = 0xFL;
+
+  private static final int MAXIMUM_COUNT = 15;
+
+  private static final int MAGIC = 0x52434246;
+
+  private static final int VERSION = 1;
+
+  private static final long MAXIMUM_COUNTER_COUNT = (long) (Integer.MAX_VALUE - 8) << COUNTERS_PER_WORD_SHIFT;
+
+  private final long counterCount;
+
+  private final int hashCount;
+
+  private final ToLongFunction<? super E> hasher;
+
+  /**
+   * The words, when the filter is not concurrent.
+   */
+  private final long[] words;
+
+  /**
+   * The words, when the filter is concurrent.
+   */
+  private final AtomicLongArray atomicWords;
+
+  private CountingBloomFilter(long counterCount, int hashCount, ToLongFunction<? super E> hasher, boolean concurrent) {
+
+    int wordCount = (int) ((counterCount + COUNTERS_PER_WORD_MASK) >>> COUNTERS_PER_WORD_SHIFT);
+    this.counterCount = counterCount;
+    this.hashCount = hashCount;
+    this.hasher = hasher;
+    this.words = concurrent ? null : new long[wordCount];
+    this.atomicWords = concurrent ? new AtomicLongArray(wordCount) : null;
+  }
+
+  /**
+   * Adds the {@code element} to the filter.
+   *
+   * @param element the element to add, cannot be {@code null} .
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code element} is
+   *                                                                    {@code null} .
+   */
+  public void add(E element) {
+
+    Param.notNull(element, "element cannot be null");
+
+    long hash = hasher.applyAsLong(element);
+    long step = BloomFilter.step(hash);
+    for (int i = 0; i < hashCount; i++, hash += step) {
+      updateCounter(BloomFilter.position(hash, counterCount), 1);
+    }
+  }
+
+  /**
+   * Removes the {@code element} from the filter, if it might be in the filter.
+   *
+   * @param element the element to remove, cannot be {@code null} .
+   * @return {@code true} if the element might have been in the filter, and has been removed.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code element} is
+   *                                                                    {@code null} .
+   */
+  public boolean remove(E element) {
+
+    Param.notNull(element, "element cannot be null");
+
+    if (!mightContain(element)) {
+      return false;
+    }
+    long hash = hasher.applyAsLong(element);
+    long step = BloomFilter.step(hash);
+    for (int i = 0; i < hashCount; i++, hash += step) {
+      updateCounter(BloomFilter.position(hash, counterCount), -1);
+    }
+    return true;
+  }
+
+  /**
+   * The method tells whether the {@code element} might be in the filter.
+   *
+   * @param element the element to query, cannot be {@code null} .
+   * @return {@code false} if the {@code element} is definitely not in the filter, {@code true} if
+   * it probably is.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code element} is
+   *                                                                    {@code null} .
+   */
+  public boolean mightContain(E element) {
+
+    return approximateCount(element) > 0;
+  }
+
+  /**
+   * The method returns an upper bound of the number of times the {@code element} is in the
+   * filter (added and not removed), capped at {@code 15} .
+   *
+   * @param element the element to query, cannot be {@code null} .
+   * @return the estimated count, within the range {@code [0, 15]} .
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code element} is
+   *                                                                    {@code null} .
+   */
+  public int approximateCount(E element) {
+
+    Param.notNull(element, "element cannot be null");
+
+    long hash = hasher.applyAsLong(element);
+    long step = BloomFilter.step(hash);
+    int result = MAXIMUM_COUNT;
+    for (int i = 0; i < hashCount && result > 0; i++, hash += step) {
+      result = Math.min(result, counter(BloomFilter.position(hash, counterCount)));
+    }
+    return result;
+  }
+
+  /**
+   * Adds the counts of the {@code other} filter to this filter (saturating at {@code 15}). The
+   * filters must have the same number of counters and of hash functions, and (which cannot be
+   * checked) the same hash function.
+   *
+   * @param other the filter to merge, cannot be {@code null} .
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code other} is
+   *                                                                    {@code null}, or not
+   *                                                                    compatible.
+   */
+  public void merge(CountingBloomFilter<E> other) {
+
+    Param.notNull(other, "other cannot be null");
+    Param.isTrue(other.counterCount == counterCount && other.hashCount == hashCount,
+        "other must have the same counter count and hash count");
+
+    for (int i = 0; i < wordCount(); i++) {
+      mergeWord(i, other.word(i));
+    }
+  }
+
+  /**
+   * The method returns the number of counters of the filter.
+   *
+   * @return the number of counters.
+   */
+  public long counterCount() {
+
+    return counterCount;
+  }
+
+  /**
+   * The method returns the number of hashed positions of each element.
+   *
+   * @return the number of hash functions.
+   */
+  public int hashCount() {
+
+    return hashCount;
+  }
+
+  /**
+   * The method returns the false positive rate expected from the current number of non-zero
+   * counters.
+   *
+   * @return the expected false positive rate.
+   */
+  public double expectedFalsePositiveRate() {
+
+    long nonZero = 0L;
+    for (int i = 0; i < wordCount(); i++) {
+      long word = word(i);
+      // folds each counter into its lowest bit
+      word |= word >>> 2;
+      word |= word >>> 1;
+      nonZero += Long.bitCount(word & 0x1111111111111111L);
+    }
+    return Math.pow((double) nonZero / counterCount, hashCount);
+  }
+
+  /**
+   * Writes the filter to the {@code channel}, at its current position. The format (version
+   * {@code 1}) is the same as the one of {@link BloomFilter#writeTo(WritableByteChannel)}, with
+   * the magic number {@code "RCBF"}, the number of counters instead of the number of bits, and the
+   * words of the packed counters.
+   *
+   * @param channel the channel to write to, cannot be {@code null} .
+   * @throws IOException when writing fails.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code channel} is
+   *                                                                    {@code null} .
+   */
+  public void writeTo(WritableByteChannel channel) throws IOException {
+
+    Param.notNull(channel, "channel cannot be null");
+
+    ByteBuffer buffer = ByteBuffer.allocate(BloomFilter.BUFFER_BYTES).order(BloomFilter.BYTE_ORDER);
+    buffer.putInt(MAGIC)
+        .putInt(VERSION)
+        .putInt(hashCount)
+        .putInt(0)
+        .putLong(counterCount);
+    for (int i = 0; i < wordCount(); i++) {
+      if (buffer.remaining() < Long.BYTES) {
+        BloomFilter.writeFully(buffer, channel);
+      }
+      buffer.putLong(word(i));
+    }
+    BloomFilter.writeFully(buffer, channel);
+  }
+
+  private int wordCount() {
+
+    return words == null ? atomicWords.length() : words.length;
+  }
+
+  private long word(int index) {
+
+    return words == null ? atomicWords.get(index) : words[index];
+  }
+
+  private int counter(long index) {
+
+    long word = word((int) (index >>> COUNTERS_PER_WORD_SHIFT));
+    return (int) ((word >>> (((int) index & COUNTERS_PER_WORD_MASK) << COUNTER_BITS_SHIFT)) & COUNTER_MASK);
+  }
+
+  /**
+   * Adds the {@code delta} ({@code 1} or {@code -1}) to the counter at {@code index}, unless the
+   * counter is stuck at the maximum, or would become negative.
+   */
+  private void updateCounter(long index, int delta) {
+
+    int wordIndex = (int) (index >>> COUNTERS_PER_WORD_SHIFT);
+    int shift = ((int) index & COUNTERS_PER_WORD_MASK) << COUNTER_BITS_SHIFT;
+    while (true) {
+      long word = word(wordIndex);
+      int count = (int) ((word >>> shift) & COUNTER_MASK);
+      if (count == MAXIMUM_COUNT || count + delta < 0) {
+        return;
+      }
+      long updated = word + ((long) delta << shift);
+      if (words != null) {
+        words[wordIndex] = updated;
+        return;
+      }
+      if (atomicWords.compareAndSet(wordIndex, word, updated)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * Adds the counters packed in the {@code other} word to the ones of the word at {@code index} .
+   */
+  private void mergeWord(int index, long other) {
+
+    while (true) {
+      long word = word(index);
+      long merged = 0L;
+      for (int shift = 0; shift < Long.SIZE; shift += 1 << COUNTER_BITS_SHIFT) {
+        long sum = ((word >>> shift) & COUNTER_MASK) + ((other >>> shift) & COUNTER_MASK);
+        merged |= Math.min(sum, MAXIMUM_COUNT) << shift;
+      }
+      if (words != null) {
+        words[index] = merged;
+        return;
+      }
+      if (atomicWords.compareAndSet(index, word, merged)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * The builder of {@link CountingBloomFilter} .
+   *
+   * @param <E> the element type.
+   */
+  public static final class Builder<E> implements ObjectBuilder<CountingBloomFilter<E>> {
+
+    private final long expectedInsertions;
+
+    private double falsePositiveRate = 0.01;
+
+    private ToLongFunction<? super E> hasher = BloomFilter::defaultHash;
+
+    private boolean concurrent;
+
+    private Builder(long expectedInsertions) {
+
+      Param.isTrue(expectedInsertions > 0L, "expectedInsertions must be greater than 0");
+
+      this.expectedInsertions = expectedInsertions;
+    }
+
+    /**
+     * Sets the false positive rate expected with the expected number of elements in the filter.
+     *
+     * @param falsePositiveRate the rate, must be within the range {@code (0, 1)} .
+     * @return the builder itself.
+     * @throws org.raistlic.common.precondition.InvalidParameterException if
+     *                                                                    {@code falsePositiveRate}
+     *                                                                    is out of range.
+     */
+    public Builder<E> falsePositiveRate(double falsePositiveRate) {
+
+      Param.isTrue(falsePositiveRate > 0.0 && falsePositiveRate < 1.0, "falsePositiveRate must be within (0, 1)");
+
+      this.falsePositiveRate = falsePositiveRate;
+      return this;
+    }
+
+    /**
+     * Sets the function that computes the 64 bits hash of an element, see
+     * {@link BloomFilter.Builder#hasher(ToLongFunction)} .
+     *
+     * @param hasher the hash function, cannot be {@code null} .
+     * @return the builder itself.
+     * @throws org.raistlic.common.precondition.InvalidParameterException if {@code hasher} is
+     *                                                                    {@code null} .
+     */
+    public Builder<E> hasher(ToLongFunction<? super E> hasher) {
+
+      Param.notNull(hasher, "hasher cannot be null");
+
+      this.hasher = hasher;
+      return this;
+    }
+
+    /**
+     * Makes the filter support concurrent modifications.
+     *
+     * @return the builder itself.
+     */
+    public Builder<E> concurrent() {
+
+      this.concurrent = true;
+      return this;
+    }
+
+    /**
+     * @throws org.raistlic.common.precondition.InvalidParameterException if the filter would be
+     *                                                                    too large.
+     */
+    @Override
+    public CountingBloomFilter<E> build() {
+
+      long counterCount = BloomFilter.optimalBitSize(expectedInsertions, falsePositiveRate);
+      Param.isTrue(counterCount <= MAXIMUM_COUNTER_COUNT, "the filter would be too large");
+
+      int hashCount = BloomFilter.optimalHashCount(expectedInsertions, counterCount);
+      return new CountingBloomFilter<>(counterCount, hashCount, hasher, concurrent);
+    }
+  }
+}
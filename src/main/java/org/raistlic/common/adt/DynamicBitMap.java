@@ -0,0 +1,465 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+import org.raistlic.common.precondition.Param;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Package private, mutable bit sequence that supports inserting and removing bits at any index,
+ * in addition to the "rank" and "select" operations, all in {@code O(log n)} plus a scan of at
+ * most {@value #CHUNK_WORDS} words.
+ * <p>
+ * The bits are split into chunks of at most {@value #CHUNK_BITS} bits, an insertion or a removal
+ * only shifts the bits within one chunk. The sizes and the numbers of {@code 1} s of the chunks
+ * are summed up by two Fenwick (binary indexed) trees, which locate the chunk of an index or of a
+ * rank; the trees are rebuilt only when a chunk is split or merged.
+ * <p>
+ * The class is NOT thread safe.
+ */
+final class DynamicBitMap implements BitSequence {
+
+  static final int CHUNK_WORDS = 64;
+
+  static final int CHUNK_BITS = CHUNK_WORDS << Bits.WORD_SHIFT;
+
+  /**
+   * Creates a sequence of {@code size} bits, the {@code i}-th of which is {@code bit.test(i)},
+   * the chunks are filled to 3/4 of their capacity, to leave room for insertions.
+   */
+  static DynamicBitMap newInstance(int size, IntPredicate bit) {
+
+    Param.isTrue(size >= 0, "size cannot be less than 0");
+    Param.notNull(bit, "bit cannot be null");
+
+    int fill = CHUNK_BITS / 4 * 3;
+    DynamicBitMap result = new DynamicBitMap(Math.max(1, (size + fill - 1) / fill));
+    for (int c = 0, from = 0; c < result.chunks.length; c++, from += fill) {
+      long[] chunk = new long[CHUNK_WORDS];
+      int chunkSize = Math.min(fill, size - from);
+      int chunkOnes = 0;
+      for (int i = 0; i < chunkSize; i++) {
+        if (bit.test(from + i)) {
+          chunk[i >>> Bits.WORD_SHIFT] |= 1L << i;
+          chunkOnes++;
+        }
+      }
+      result.chunks[c] = chunk;
+      result.chunkSizes[c] = chunkSize;
+      result.chunkOnes[c] = chunkOnes;
+      result.ones += chunkOnes;
+    }
+    result.chunkCount = result.chunks.length;
+    result.size = size;
+    result.rebuildTrees();
+    return result;
+  }
+
+  private long[][] chunks;
+
+  private int[] chunkSizes;
+
+  private int[] chunkOnes;
+
+  private int chunkCount;
+
+  /**
+   * Fenwick trees (1 based) of {@code chunkSizes} and {@code chunkOnes} .
+   */
+  private int[] sizeTree;
+
+  private int[] onesTree;
+
+  private int size;
+
+  private int ones;
+
+  private DynamicBitMap(int capacity) {
+
+    chunks = new long[capacity][];
+    chunkSizes = new int[capacity];
+    chunkOnes = new int[capacity];
+    sizeTree = new int[capacity + 1];
+    onesTree = new int[capacity + 1];
+  }
+
+  @Override
+  public int size() {
+
+    return size;
+  }
+
+  /**
+   * The method returns the total number of {@code 1} s.
+   */
+  int cardinality() {
+
+    return ones;
+  }
+
+  @Override
+  public boolean isOne(int index) {
+
+    Param.isTrue(index >= 0, "index cannot be less than 0");
+    Param.isTrue(index < size, "index must be less than size");
+
+    long location = locate(sizeTree, index);
+    int offset = offset(location);
+    return (chunks[chunk(location)][offset >>> Bits.WORD_SHIFT] & (1L << offset)) != 0L;
+  }
+
+  @Override
+  public int rankOne(int index) {
+
+    Param.isTrue(index >= 0, "index cannot be less than 0");
+    Param.isTrue(index < size, "index must be less than size");
+
+    long location = locate(sizeTree, index);
+    int chunk = chunk(location);
+    int offset = offset(location) + 1;
+    long[] words = chunks[chunk];
+    int result = prefix(onesTree, chunk);
+    int w = 0;
+    for (int last = offset >>> Bits.WORD_SHIFT; w < last; w++) {
+      result += Long.bitCount(words[w]);
+    }
+    if ((offset & Bits.WORD_MASK) != 0) {
+      result += Long.bitCount(words[w] & Bits.lowMask(offset & Bits.WORD_MASK));
+    }
+    return result;
+  }
+
+  @Override
+  public int selectOne(int i) {
+
+    Param.isTrue(i >= 0, "i cannot be less than 0");
+
+    if (i >= ones) {
+      return -1;
+    }
+    long location = locate(onesTree, i);
+    int chunk = chunk(location);
+    return prefix(sizeTree, chunk) + selectInChunk(chunks[chunk], offset(location), true);
+  }
+
+  @Override
+  public int selectZero(int i) {
+
+    Param.isTrue(i >= 0, "i cannot be less than 0");
+
+    if (i >= size - ones) {
+      return -1;
+    }
+    // the zeros of a chunk are its size minus its ones, and Fenwick trees are linear
+    int chunk = 0;
+    int remaining = i;
+    for (int step = Integer.highestOneBit(chunkCount); step > 0; step >>>= 1) {
+      int next = chunk + step;
+      if (next <= chunkCount && sizeTree[next] - onesTree[next] <= remaining) {
+        chunk = next;
+        remaining -= sizeTree[next] - onesTree[next];
+      }
+    }
+    return prefix(sizeTree, chunk) + selectInChunk(chunks[chunk], remaining, false);
+  }
+
+  @Override
+  public int nextOne(int from) {
+
+    Param.isTrue(from >= 0, "from cannot be less than 0");
+    Param.isTrue(from <= size, "from cannot be greater than size");
+
+    if (from == size) {
+      return -1;
+    }
+    long location = locate(sizeTree, from);
+    int chunk = chunk(location);
+    int start = from - offset(location);
+    // bits after the size of a chunk are always 0, so the scan can run over the whole chunk
+    int next = Bits.nextOne(chunks[chunk], offset(location));
+    while (next < 0) {
+      start += chunkSizes[chunk];
+      chunk++;
+      if (chunk == chunkCount) {
+        return -1;
+      }
+      next = chunkOnes[chunk] == 0 ? -1 : Bits.nextOne(chunks[chunk], 0);
+    }
+    return start + next;
+  }
+
+  /**
+   * Sets the bit at {@code index} to {@code bit}, returns whether the bit has changed.
+   */
+  boolean set(int index, boolean bit) {
+
+    Param.isTrue(index >= 0, "index cannot be less than 0");
+    Param.isTrue(index < size, "index must be less than size");
+
+    long location = locate(sizeTree, index);
+    int chunk = chunk(location);
+    int offset = offset(location);
+    long[] words = chunks[chunk];
+    long mask = 1L << offset;
+    boolean current = (words[offset >>> Bits.WORD_SHIFT] & mask) != 0L;
+    if (current == bit) {
+      return false;
+    }
+    words[offset >>> Bits.WORD_SHIFT] ^= mask;
+    updateOnes(chunk, bit ? 1 : -1);
+    return true;
+  }
+
+  /**
+   * Inserts {@code bit} at {@code index}, shifting the bits at and after {@code index} by one.
+   */
+  void insert(int index, boolean bit) {
+
+    Param.isTrue(index >= 0, "index cannot be less than 0");
+    Param.isTrue(index <= size, "index cannot be greater than size");
+    Param.isTrue(size < Integer.MAX_VALUE, "the bit map is full");
+
+    long location = locateForInsert(index);
+    int chunk = chunk(location);
+    if (chunkSizes[chunk] == CHUNK_BITS) {
+      split(chunk);
+      location = locateForInsert(index);
+      chunk = chunk(location);
+    }
+    int offset = offset(location);
+    long[] words = chunks[chunk];
+
+    int w = offset >>> Bits.WORD_SHIFT;
+    long low = Bits.lowMask(offset & Bits.WORD_MASK);
+    long carry = words[w] >>> Bits.WORD_MASK;
+    words[w] = (words[w] & low) | ((words[w] & ~low) << 1) | (bit ? 1L << offset : 0L);
+    for (int last = chunkSizes[chunk] >>> Bits.WORD_SHIFT; w < last; ) {
+      w++;
+      long next = words[w] >>> Bits.WORD_MASK;
+      words[w] = (words[w] << 1) | carry;
+      carry = next;
+    }
+
+    chunkSizes[chunk]++;
+    size++;
+    add(sizeTree, chunk, 1);
+    if (bit) {
+      updateOnes(chunk, 1);
+    }
+  }
+
+  /**
+   * Removes the bit at {@code index}, shifting the bits after {@code index} by one, and returns
+   * the removed bit.
+   */
+  boolean remove(int index) {
+
+    Param.isTrue(index >= 0, "index cannot be less than 0");
+    Param.isTrue(index < size, "index must be less than size");
+
+    long location = locate(sizeTree, index);
+    int chunk = chunk(location);
+    int offset = offset(location);
+    long[] words = chunks[chunk];
+
+    int w = offset >>> Bits.WORD_SHIFT;
+    boolean bit = (words[w] & (1L << offset)) != 0L;
+    long low = Bits.lowMask(offset & Bits.WORD_MASK);
+    words[w] = (words[w] & low) | ((words[w] >>> 1) & ~low);
+    for (int last = (chunkSizes[chunk] - 1) >>> Bits.WORD_SHIFT; w < last; w++) {
+      words[w] |= words[w + 1] << Bits.WORD_MASK;
+      words[w + 1] >>>= 1;
+    }
+
+    chunkSizes[chunk]--;
+    size--;
+    add(sizeTree, chunk, -1);
+    if (bit) {
+      updateOnes(chunk, -1);
+    }
+
+    if (chunkSizes[chunk] == 0 && chunkCount > 1) {
+      removeChunk(chunk);
+      rebuildTrees();
+    } else if (chunk + 1 < chunkCount && chunkSizes[chunk] + chunkSizes[chunk + 1] <= CHUNK_BITS / 2) {
+      merge(chunk);
+    }
+    return bit;
+  }
+
+  private void updateOnes(int chunk, int delta) {
+
+    chunkOnes[chunk] += delta;
+    ones += delta;
+    add(onesTree, chunk, delta);
+  }
+
+  /**
+   * Moves the upper half of the full {@code chunk} to a new chunk right after it.
+   */
+  private void split(int chunk) {
+
+    int half = CHUNK_WORDS / 2;
+    long[] words = chunks[chunk];
+    long[] upper = new long[CHUNK_WORDS];
+    System.arraycopy(words, half, upper, 0, half);
+    Arrays.fill(words, half, CHUNK_WORDS, 0L);
+    int upperOnes = 0;
+    for (int w = 0; w < half; w++) {
+      upperOnes += Long.bitCount(upper[w]);
+    }
+
+    if (chunkCount == chunks.length) {
+      int capacity = chunks.length * 2;
+      chunks = Arrays.copyOf(chunks, capacity);
+      chunkSizes = Arrays.copyOf(chunkSizes, capacity);
+      chunkOnes = Arrays.copyOf(chunkOnes, capacity);
+      sizeTree = new int[capacity + 1];
+      onesTree = new int[capacity + 1];
+    }
+    int moved = chunkCount - chunk - 1;
+    System.arraycopy(chunks, chunk + 1, chunks, chunk + 2, moved);
+    System.arraycopy(chunkSizes, chunk + 1, chunkSizes, chunk + 2, moved);
+    System.arraycopy(chunkOnes, chunk + 1, chunkOnes, chunk + 2, moved);
+    chunks[chunk + 1] = upper;
+    chunkSizes[chunk + 1] = chunkSizes[chunk] - (half << Bits.WORD_SHIFT);
+    chunkOnes[chunk + 1] = upperOnes;
+    chunkSizes[chunk] = half << Bits.WORD_SHIFT;
+    chunkOnes[chunk] -= upperOnes;
+    chunkCount++;
+    rebuildTrees();
+  }
+
+  /**
+   * Appends the bits of the chunk after {@code chunk} to {@code chunk}, and removes it.
+   */
+  private void merge(int chunk) {
+
+    long[] target = chunks[chunk];
+    long[] source = chunks[chunk + 1];
+    int offset = chunkSizes[chunk];
+    int sourceSize = chunkSizes[chunk + 1];
+    for (int w = 0, from = 0; from < sourceSize; w++, from += Bits.WORD_BITS) {
+      Bits.write(target, offset + from, Math.min(Bits.WORD_BITS, sourceSize - from), source[w]);
+    }
+    chunkSizes[chunk] += sourceSize;
+    chunkOnes[chunk] += chunkOnes[chunk + 1];
+    removeChunk(chunk + 1);
+    rebuildTrees();
+  }
+
+  private void removeChunk(int chunk) {
+
+    int moved = chunkCount - chunk - 1;
+    System.arraycopy(chunks, chunk + 1, chunks, chunk, moved);
+    System.arraycopy(chunkSizes, chunk + 1, chunkSizes, chunk, moved);
+    System.arraycopy(chunkOnes, chunk + 1, chunkOnes, chunk, moved);
+    chunkCount--;
+    chunks[chunkCount] = null;
+    chunkSizes[chunkCount] = 0;
+    chunkOnes[chunkCount] = 0;
+  }
+
+  private void rebuildTrees() {
+
+    Arrays.fill(sizeTree, 0);
+    Arrays.fill(onesTree, 0);
+    for (int i = 1; i <= chunkCount; i++) {
+      sizeTree[i] += chunkSizes[i - 1];
+      onesTree[i] += chunkOnes[i - 1];
+      int parent = i + (i & -i);
+      if (parent <= chunkCount) {
+        sizeTree[parent] += sizeTree[i];
+        onesTree[parent] += onesTree[i];
+      }
+    }
+  }
+
+  private void add(int[] tree, int chunk, int delta) {
+
+    for (int i = chunk + 1; i <= chunkCount; i += i & -i) {
+      tree[i] += delta;
+    }
+  }
+
+  /**
+   * Returns the sum of the first {@code chunk} chunks in the {@code tree} .
+   */
+  private static int prefix(int[] tree, int chunk) {
+
+    int result = 0;
+    for (int i = chunk; i > 0; i -= i & -i) {
+      result += tree[i];
+    }
+    return result;
+  }
+
+  /**
+   * Finds the chunk that contains the {@code k}-th (0 based) item counted by the {@code tree},
+   * i.e. the first chunk whose running total exceeds {@code k}, packed with the offset of the
+   * item within the chunk, see {@link #chunk(long)} and {@link #offset(long)} .
+   */
+  private long locate(int[] tree, int k) {
+
+    int chunk = 0;
+    for (int step = Integer.highestOneBit(chunkCount); step > 0; step >>>= 1) {
+      int next = chunk + step;
+      if (next <= chunkCount && tree[next] <= k) {
+        chunk = next;
+        k -= tree[next];
+      }
+    }
+    return ((long) chunk << Integer.SIZE) | k;
+  }
+
+  /**
+   * Same as {@code locate(sizeTree, index)}, except that {@code index == size} is located at the
+   * end of the last chunk.
+   */
+  private long locateForInsert(int index) {
+
+    if (index == size) {
+      int last = chunkCount - 1;
+      return ((long) last << Integer.SIZE) | chunkSizes[last];
+    }
+    return locate(sizeTree, index);
+  }
+
+  private static int chunk(long location) {
+
+    return (int) (location >>> Integer.SIZE);
+  }
+
+  private static int offset(long location) {
+
+    return (int) location;
+  }
+
+  private static int selectInChunk(long[] words, int i, boolean one) {
+
+    for (int w = 0; ; w++) {
+      long bits = one ? words[w] : ~words[w];
+      int count = Long.bitCount(bits);
+      if (i < count) {
+        return (w << Bits.WORD_SHIFT) + Bits.selectInWord(bits, i);
+      }
+      i -= count;
+    }
+  }
+}
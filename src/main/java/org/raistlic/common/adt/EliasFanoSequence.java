@@ -0,0 +1,209 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+import org.raistlic.common.precondition.Param;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntToLongFunction;
+
+/**
+ * An immutable, compact representation of a non-decreasing sequence of non-negative integers,
+ * using the Elias-Fano encoding.
+ * <p>
+ * Each value is split into its lowest {@code l} bits, which are stored bit-packed, and the rest
+ * (high) bits, which are stored in unary in a {@link BitMap}: the {@code i}-th value sets the bit
+ * at {@code (value >>> l) + i} . With {@code l = floor(log2(U / n))}, where {@code U} is the
+ * largest value plus one and {@code n} is the number of values, the sequence takes about
+ * {@code 2 + log2(U / n)} bits per value.
+ * <p>
+ * {@link #get(int)} is a {@link BitMap#selectOne(int)} plus a read of the low bits,
+ * {@link #nextGreaterOrEqual(long)} is a {@link BitMap#selectZero(int)} to skip all the values
+ * with smaller high bits, followed by a short scan.
+ */
+public final class EliasFanoSequence implements Iterable<Long> {
+
+  /**
+   * Creates the sequence of the given {@code values} .
+   *
+   * @param values the values, cannot be {@code null}, must be non-negative and in non-decreasing
+   *               order.
+   * @return the created sequence.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code values} is
+   *                                                                    {@code null}, or not in
+   *                                                                    order, or has negative
+   *                                                                    values.
+   */
+  public static EliasFanoSequence newInstance(long[] values) {
+
+    Param.notNull(values, "values cannot be null");
+
+    long previous = 0L;
+    for (long value : values) {
+      Param.isTrue(value >= previous, "values must be non-negative and in non-decreasing order");
+      previous = value;
+    }
+    return new EliasFanoSequence(values.length, previous, i -> values[i]);
+  }
+
+  /**
+   * Creates the sequence of the given {@code values} .
+   *
+   * @param values the values, cannot be {@code null}, must be non-negative and in non-decreasing
+   *               order.
+   * @return the created sequence.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code values} is
+   *                                                                    {@code null}, or not in
+   *                                                                    order, or has negative
+   *                                                                    values.
+   */
+  public static EliasFanoSequence newInstance(int[] values) {
+
+    Param.notNull(values, "values cannot be null");
+
+    int previous = 0;
+    for (int value : values) {
+      Param.isTrue(value >= previous, "values must be non-negative and in non-decreasing order");
+      previous = value;
+    }
+    return new EliasFanoSequence(values.length, previous, i -> values[i]);
+  }
+
+  private final int size;
+
+  private final int lowBits;
+
+  private final long[] lows;
+
+  private final BitMap highs;
+
+  private EliasFanoSequence(int size, long last, IntToLongFunction values) {
+
+    this.size = size;
+    this.lowBits = size == 0 ? 0 : Math.max(0, 63 - Long.numberOfLeadingZeros((last + 1) / size));
+
+    long highsSize = size + (last >>> lowBits) + 1;
+    Param.isTrue(highsSize <= Integer.MAX_VALUE, "too many values, or the values are too large");
+
+    this.lows = new long[(int) Bits.wordCount((long) size * lowBits)];
+    BitMap.Builder builder = BitMap.builder((int) highsSize);
+    for (int i = 0; i < size; i++) {
+      long value = values.applyAsLong(i);
+      Bits.write(lows, (long) i * lowBits, lowBits, value);
+      builder.set((int) (value >>> lowBits) + i);
+    }
+    this.highs = builder.build();
+  }
+
+  /**
+   * The method returns the number of values in the sequence.
+   *
+   * @return the number of values.
+   */
+  public int size() {
+
+    return size;
+  }
+
+  /**
+   * The method returns the {@code i}-th value.
+   *
+   * @param i the index of the value, must be within the range {@code [0, size())} .
+   * @return the value.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code i} is out of range.
+   */
+  public long get(int i) {
+
+    Param.isTrue(i >= 0, "i cannot be less than 0");
+    Param.isTrue(i < size, "i must be less than size");
+
+    long high = highs.selectOne(i) - i;
+    return (high << lowBits) | Bits.read(lows, (long) i * lowBits, lowBits);
+  }
+
+  /**
+   * The method returns the index of the first value that is greater than or equal to {@code x} .
+   *
+   * @param x the value to search for.
+   * @return the index of the first value that is not less than {@code x}, or {@code -1} if all the
+   * values are less than {@code x} .
+   */
+  public int nextGreaterOrEqual(long x) {
+
+    if (size == 0 || x > get(size - 1)) {
+      return -1;
+    }
+    if (x <= 0L) {
+      return 0;
+    }
+    long high = x >>> lowBits;
+    // all the values with high bits less than `high` come before the `high`-th 0
+    int position = high == 0L ? 0 : highs.selectZero((int) high - 1) + 1;
+    int i = position - (int) high;
+    while (get(i) < x) {
+      i++;
+    }
+    return i;
+  }
+
+  /**
+   * The method returns the number of bits used by the sequence, excluding the object headers.
+   *
+   * @return the number of bits.
+   */
+  public long sizeInBits() {
+
+    return (long) lows.length * Bits.WORD_BITS + (long) Bits.wordCount(highs.size()) * Bits.WORD_BITS;
+  }
+
+  /**
+   * The returned iterator walks the high bits sequentially, instead of running a select for
+   * every value.
+   */
+  @Override
+  public PrimitiveIterator.OfLong iterator() {
+
+    return new ValueIterator();
+  }
+
+  private final class ValueIterator implements PrimitiveIterator.OfLong {
+
+    private int index;
+
+    private int position = -1;
+
+    @Override
+    public boolean hasNext() {
+
+      return index < size;
+    }
+
+    @Override
+    public long nextLong() {
+
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      position = highs.nextOne(position + 1);
+      long high = position - index;
+      long result = (high << lowBits) | Bits.read(lows, (long) index * lowBits, lowBits);
+      index++;
+      return result;
+    }
+  }
+}
@@ -1,18 +1,21 @@
 package org.raistlic.common.adt;
 
 import org.raistlic.common.precondition.Precondition;
-import org.raistlic.common.predicate.Predicates;
 
+import java.util.AbstractList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 
 /**
  * @deprecated will be removed in 2.0, no need after Java 8
  */
 @Deprecated
-public abstract class FilteredList<E> implements Iterable<E> {
+public abstract class FilteredList<E> extends AbstractList<E> implements RandomAccess {
 
   @SuppressWarnings("unchecked")
   public static <E> FilteredList<E> of(E[] elements, Predicate<? super E> predicate) {
@@ -24,7 +27,7 @@ public abstract class FilteredList<E> implements Iterable<E> {
       return (FilteredList<E>) EMPTY;
     }
 
-    BitMap.Builder builder = BitMap.builder(elements.length + 1);
+    BitMap.Builder builder = BitMap.builder(elements.length);
     for (int i = 0, length = elements.length; i < length; i++) {
       if (predicate.test(elements[i])) {
         builder.set(i);
@@ -47,119 +50,215 @@ public abstract class FilteredList<E> implements Iterable<E> {
     return new ListWrapper<>(elements, bitMap);
   }
 
-  private FilteredList() {
+  /**
+   * Creates a filtered view of the {@code elements}, with a pre-built {@code bits} sequence,
+   * in which the {@code 1} s mark the elements in the view, for example a
+   * {@link CompressedBitMap} when only a few elements are expected to match.
+   *
+   * @param elements the elements to filter, cannot be {@code null} .
+   * @param bits     the bits that mark the elements in the view, cannot be {@code null}, and
+   *                 its size must be equal to the size of {@code elements} .
+   * @param <E>      the element type.
+   * @return the filtered view.
+   */
+  @SuppressWarnings("unchecked")
+  public static <E> FilteredList<E> of(List<E> elements, BitSequence bits) {
+
+    Precondition.param(elements).isNotNull();
+    Precondition.param(bits).isNotNull();
+    Precondition.assertParam(bits.size() == elements.size(), "bits size must be equal to elements size");
+
+    if (elements.isEmpty()) {
+      return (FilteredList<E>) EMPTY;
+    }
+    return new ListWrapper<>(elements, bits);
   }
 
-  public abstract int size();
+  private final BitSequence bits;
+
+  private final int size;
+
+  private FilteredList(BitSequence bits) {
 
-  public abstract E get(int index);
+    this.bits = bits;
+    this.size = bits.size() == 0 ? 0 : bits.rankOne(bits.size() - 1);
+  }
+
+  /**
+   * Returns the element at {@code sourceIndex} of the underlying elements.
+   */
+  abstract E element(int sourceIndex);
+
+  @Override
+  public final int size() {
+
+    return size;
+  }
+
+  @Override
+  public final E get(int index) {
 
+    Precondition.param(index).greaterThanOrEqualTo(0, "Index out of bounds: " + index);
+    Precondition.param(index).lessThan(size, "Index out of bounds: " + index);
+
+    return element(bits.selectOne(index));
+  }
+
+  @Override
   public final boolean isEmpty() {
 
-    return size() == 0;
+    return size == 0;
   }
 
+  /**
+   * The returned iterator keeps a cursor on the underlying elements, and advances it to the next
+   * {@code 1} of the bits, instead of running a select for every element.
+   */
   @Override
   public Iterator<E> iterator() {
 
-    return this.new IndexIterator();
+    return this.new CursorIterator();
+  }
+
+  /**
+   * The returned spliterator splits by rank, i.e. in halves of the elements in the view, so that
+   * parallel streams get balanced work no matter how the matching elements are distributed.
+   */
+  @Override
+  public Spliterator<E> spliterator() {
+
+    return this.new RankSpliterator(0, size);
   }
 
   @SuppressWarnings("rawtypes")
-  private static final FilteredList EMPTY = new FilteredList() {
+  private static final FilteredList EMPTY = new ArrayWrapper<>(new Object[0], BitMap.builder(0).build());
 
-    @Override
-    public int size() {
+  private static final class ArrayWrapper<E> extends FilteredList<E> {
+
+    private final E[] array;
+
+    private ArrayWrapper(E[] array, BitSequence bits) {
 
-      return 0;
+      super(bits);
+      this.array = array;
     }
 
     @Override
-    public Object get(int index) {
+    E element(int sourceIndex) {
 
-      Precondition.param(index).matches(Predicates.dummyFalse(), "Index out of bounds: " + index);
-      return null; // never reaches here.
+      return array[sourceIndex];
     }
-  };
+  }
 
-  private static final class ArrayWrapper<E> extends FilteredList<E> {
+  private static final class ListWrapper<E> extends FilteredList<E> {
 
-    private E[] array;
+    private final List<E> list;
 
-    private BitMap bitMap;
+    private ListWrapper(List<E> list, BitSequence bits) {
 
-    private ArrayWrapper(E[] array, BitMap bitMap) {
+      super(bits);
+      this.list = list;
+    }
 
-      this.array = array;
-      this.bitMap = bitMap;
+    @Override
+    E element(int sourceIndex) {
+
+      return list.get(sourceIndex);
     }
+  }
+
+  private final class CursorIterator implements Iterator<E> {
+
+    private int remaining = size;
+
+    private int cursor = 0;
 
     @Override
-    public int size() {
+    public boolean hasNext() {
 
-      return bitMap.rankOne(array.length);
+      return remaining > 0;
     }
 
     @Override
-    public E get(int index) {
+    public E next() {
 
-      Precondition.param(index).greaterThanOrEqualTo(0, "Index out of bounds: " + index);
-      Precondition.param(index).lessThan(size(), "Index out of bounds: " + index);
+      if (!hasNext()) {
+        throw new NoSuchElementException("No next element.");
+      }
 
-      index = bitMap.selectOne(index);
-      return array[index];
+      cursor = bits.nextOne(cursor);
+      E next = element(cursor);
+      cursor++;
+      remaining--;
+      return next;
     }
   }
 
-  private static final class ListWrapper<E> extends FilteredList<E> {
+  /**
+   * Covers the elements of ranks {@code [from, to)} in the view, the cursor on the underlying
+   * elements is only located (with a select) when the spliterator starts traversing.
+   */
+  private final class RankSpliterator implements Spliterator<E> {
 
-    private List<E> list;
+    private int from;
 
-    private BitMap bitMap;
+    private final int to;
 
-    private ListWrapper(List<E> list, BitMap bitMap) {
+    private int cursor = -1;
 
-      this.list = list;
-      this.bitMap = bitMap;
+    private RankSpliterator(int from, int to) {
+
+      this.from = from;
+      this.to = to;
     }
 
     @Override
-    public int size() {
+    public boolean tryAdvance(Consumer<? super E> action) {
 
-      return bitMap.rankOne(list.size());
+      Precondition.param(action).isNotNull();
+
+      if (from >= to) {
+        return false;
+      }
+      cursor = cursor < 0 ? bits.selectOne(from) : bits.nextOne(cursor);
+      action.accept(element(cursor));
+      cursor++;
+      from++;
+      return true;
     }
 
     @Override
-    public E get(int index) {
+    public void forEachRemaining(Consumer<? super E> action) {
 
-      Precondition.param(index).greaterThanOrEqualTo(0, "Index out of bounds: " + index);
-      Precondition.param(index).lessThan(size(), "Index out of bounds: " + index);
+      Precondition.param(action).isNotNull();
 
-      index = bitMap.selectOne(index);
-      return list.get(index);
+      while (tryAdvance(action)) {
+        // keep advancing
+      }
     }
-  }
 
-  private class IndexIterator implements Iterator<E> {
+    @Override
+    public Spliterator<E> trySplit() {
 
-    private int index = 0;
+      if (cursor >= 0 || to - from < 2) {
+        return null;
+      }
+      int mid = (from + to) >>> 1;
+      Spliterator<E> prefix = new RankSpliterator(from, mid);
+      from = mid;
+      return prefix;
+    }
 
     @Override
-    public boolean hasNext() {
+    public long estimateSize() {
 
-      return index < size();
+      return to - from;
     }
 
     @Override
-    public E next() {
-
-      if (!hasNext()) {
-        throw new NoSuchElementException("No next element.");
-      }
+    public int characteristics() {
 
-      E next = get(index);
-      index++;
-      return next;
+      return ORDERED | SIZED | SUBSIZED;
     }
   }
 }
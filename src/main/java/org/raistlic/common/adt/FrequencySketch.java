@@ -0,0 +1,141 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+/**
+ * A count-min sketch of the access frequencies of the elements, with 4-bit counters, used by
+ * {@link TinyLfuCache} to decide whether a new entry is worth more than the one it would evict.
+ * <p>
+ * Sixteen counters are packed in each {@code long}, an element has one counter in each of four
+ * words chosen by four hash functions, and its frequency is the minimum of them (capped at
+ * {@code 15}). Once the number of increments reaches ten times the capacity, all the counters
+ * are halved, so that the old popularity fades out.
+ * <p>
+ * The class is NOT thread safe.
+ */
+final class FrequencySketch {
+
+  private static final long[] SEEDS = {
+      0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L
+  };
+
+  private static final long RESET_MASK = 0x7777777777777777L;
+
+  private static final long ONE_MASK = 0x1111111111111111L;
+
+  private static final int MAXIMUM_FREQUENCY = 15;
+
+  private static final int MAXIMUM_TABLE_LENGTH = 1 << 24;
+
+  private long[] table;
+
+  private int sampleSize;
+
+  private int size;
+
+  /**
+   * Creates a sketch for about {@code capacity} distinct elements.
+   */
+  FrequencySketch(long capacity) {
+
+    ensureCapacity(capacity);
+  }
+
+  /**
+   * Grows the table for {@code capacity} distinct elements, the existing counts are dropped when
+   * the table grows.
+   */
+  void ensureCapacity(long capacity) {
+
+    int maximum = (int) Math.min(Math.max(capacity, 8L), MAXIMUM_TABLE_LENGTH);
+    if (table != null && table.length >= maximum) {
+      return;
+    }
+    table = new long[Integer.highestOneBit(maximum - 1) << 1];
+    sampleSize = 10 * maximum < 0 ? Integer.MAX_VALUE : 10 * maximum;
+    size = 0;
+  }
+
+  /**
+   * Returns the estimated number of occurrences of the {@code element}, within {@code [0, 15]} .
+   */
+  int frequency(Object element) {
+
+    int hash = spread(element.hashCode());
+    int start = (hash & 3) << 2;
+    int result = MAXIMUM_FREQUENCY;
+    for (int i = 0; i < 4; i++) {
+      int count = (int) ((table[indexOf(hash, i)] >>> ((start + i) << 2)) & 0xFL);
+      result = Math.min(result, count);
+    }
+    return result;
+  }
+
+  /**
+   * Counts an occurrence of the {@code element} .
+   */
+  void increment(Object element) {
+
+    int hash = spread(element.hashCode());
+    int start = (hash & 3) << 2;
+    boolean added = false;
+    for (int i = 0; i < 4; i++) {
+      added |= incrementAt(indexOf(hash, i), start + i);
+    }
+    if (added && ++size >= sampleSize) {
+      reset();
+    }
+  }
+
+  private boolean incrementAt(int index, int counter) {
+
+    int offset = counter << 2;
+    long mask = 0xFL << offset;
+    if ((table[index] & mask) != mask) {
+      table[index] += 1L << offset;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Halves all the counters, the odd counts lose their half, which is compensated in
+   * {@code size} .
+   */
+  private void reset() {
+
+    int odd = 0;
+    for (int i = 0; i < table.length; i++) {
+      odd += Long.bitCount(table[i] & ONE_MASK);
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+    size = (size >>> 1) - (odd >>> 2);
+  }
+
+  private int indexOf(int hash, int i) {
+
+    long h = (hash + SEEDS[i]) * SEEDS[i];
+    h += h >>> 32;
+    return (int) h & (table.length - 1);
+  }
+
+  private static int spread(int hash) {
+
+    int h = hash * 0x9E3779B9;
+    return h ^ (h >>> 17);
+  }
+}
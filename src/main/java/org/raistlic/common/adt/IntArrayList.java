@@ -0,0 +1,272 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+import org.raistlic.common.precondition.Param;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * A growable list of {@code int} values, backed by an {@code int[]}, without boxing.
+ * <p>
+ * The class is NOT thread safe.
+ */
+public final class IntArrayList {
+
+  private static final int DEFAULT_CAPACITY = 10;
+
+  private int[] values;
+
+  private int size;
+
+  /**
+   * Creates an empty list with a default initial capacity.
+   */
+  public IntArrayList() {
+
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Creates an empty list, with room for {@code initialCapacity} values before growing.
+   *
+   * @param initialCapacity the initial capacity, cannot be less than {@code 0} .
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code initialCapacity}
+   *                                                                    is less than {@code 0} .
+   */
+  public IntArrayList(int initialCapacity) {
+
+    Param.isTrue(initialCapacity >= 0, "initialCapacity cannot be less than 0");
+
+    this.values = new int[initialCapacity];
+  }
+
+  public int size() {
+
+    return size;
+  }
+
+  public boolean isEmpty() {
+
+    return size == 0;
+  }
+
+  /**
+   * Appends the {@code value} to the end of the list.
+   *
+   * @param value the value to append.
+   */
+  public void add(int value) {
+
+    if (size == values.length) {
+      values = Arrays.copyOf(values, grow(values.length, size + 1));
+    }
+    values[size++] = value;
+  }
+
+  /**
+   * Inserts the {@code value} at {@code index}, shifting the values at and after it.
+   *
+   * @param index the index, must be within the range {@code [0, size()]} .
+   * @param value the value to insert.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code index} is out of
+   *                                                                    range.
+   */
+  public void add(int index, int value) {
+
+    Param.isTrue(index >= 0, "index cannot be less than 0");
+    Param.isTrue(index <= size, "index cannot be greater than size");
+
+    if (size == values.length) {
+      values = Arrays.copyOf(values, grow(values.length, size + 1));
+    }
+    System.arraycopy(values, index, values, index + 1, size - index);
+    values[index] = value;
+    size++;
+  }
+
+  /**
+   * Appends all the {@code values} to the end of the list.
+   *
+   * @param values the values to append, cannot be {@code null} .
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code values} is
+   *                                                                    {@code null} .
+   */
+  public void addAll(int... values) {
+
+    Param.notNull(values, "values cannot be null");
+
+    if (size + values.length > this.values.length) {
+      this.values = Arrays.copyOf(this.values, grow(this.values.length, size + values.length));
+    }
+    System.arraycopy(values, 0, this.values, size, values.length);
+    size += values.length;
+  }
+
+  /**
+   * @param index the index, must be within the range {@code [0, size())} .
+   * @return the value at {@code index} .
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code index} is out of
+   *                                                                    range.
+   */
+  public int get(int index) {
+
+    checkIndex(index);
+
+    return values[index];
+  }
+
+  /**
+   * Replaces the value at {@code index} .
+   *
+   * @param index the index, must be within the range {@code [0, size())} .
+   * @param value the new value.
+   * @return the previous value at {@code index} .
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code index} is out of
+   *                                                                    range.
+   */
+  public int set(int index, int value) {
+
+    checkIndex(index);
+
+    int previous = values[index];
+    values[index] = value;
+    return previous;
+  }
+
+  /**
+   * Removes the value at {@code index}, shifting the values after it.
+   *
+   * @param index the index, must be within the range {@code [0, size())} .
+   * @return the removed value.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code index} is out of
+   *                                                                    range.
+   */
+  public int removeAt(int index) {
+
+    checkIndex(index);
+
+    int removed = values[index];
+    System.arraycopy(values, index + 1, values, index, size - index - 1);
+    size--;
+    return removed;
+  }
+
+  /**
+   * @param value the value to search for.
+   * @return the index of the first occurrence of the {@code value}, or {@code -1} if there is
+   * none.
+   */
+  public int indexOf(int value) {
+
+    for (int i = 0; i < size; i++) {
+      if (values[i] == value) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  public boolean contains(int value) {
+
+    return indexOf(value) >= 0;
+  }
+
+  public void clear() {
+
+    size = 0;
+  }
+
+  /**
+   * Sorts the values in ascending order.
+   */
+  public void sort() {
+
+    Arrays.sort(values, 0, size);
+  }
+
+  public void forEach(IntConsumer action) {
+
+    Param.notNull(action, "action cannot be null");
+
+    for (int i = 0; i < size; i++) {
+      action.accept(values[i]);
+    }
+  }
+
+  public IntStream stream() {
+
+    return Arrays.stream(values, 0, size);
+  }
+
+  public int[] toArray() {
+
+    return Arrays.copyOf(values, size);
+  }
+
+  @Override
+  public int hashCode() {
+
+    int result = 1;
+    for (int i = 0; i < size; i++) {
+      result = 31 * result + values[i];
+    }
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+
+    if (o == this) {
+      return true;
+    }
+    if (!(o instanceof IntArrayList)) {
+      return false;
+    }
+    IntArrayList other = (IntArrayList) o;
+    if (size != other.size) {
+      return false;
+    }
+    for (int i = 0; i < size; i++) {
+      if (values[i] != other.values[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public String toString() {
+
+    return Arrays.toString(toArray());
+  }
+
+  private void checkIndex(int index) {
+
+    Param.isTrue(index >= 0, "index cannot be less than 0");
+    Param.isTrue(index < size, "index must be less than size");
+  }
+
+  private static int grow(int capacity, int minimum) {
+
+    Param.isTrue(minimum > 0, "the list is too large");
+
+    return (int) Math.min(Integer.MAX_VALUE - 8, Math.max(minimum, capacity + (capacity >> 1) + 1L));
+  }
+}
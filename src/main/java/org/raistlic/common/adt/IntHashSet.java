@@ -0,0 +1,213 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+import org.raistlic.common.precondition.Param;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A set of {@code int} values, stored in an open addressing hash table (an {@code int[]}) with
+ * linear probing, without boxing or per entry objects.
+ * <p>
+ * The value {@code 0} marks the free slots of the table, so it is tracked by a separate flag.
+ * <p>
+ * The class is NOT thread safe.
+ */
+public final class IntHashSet {
+
+  private int[] keys;
+
+  private int size;
+
+  private boolean containsZero;
+
+  /**
+   * Creates an empty set with a default initial capacity.
+   */
+  public IntHashSet() {
+
+    this(0);
+  }
+
+  /**
+   * Creates an empty set that holds {@code expectedSize} values without growing.
+   *
+   * @param expectedSize the expected number of values, cannot be less than {@code 0} .
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code expectedSize} is
+   *                                                                    less than {@code 0} .
+   */
+  public IntHashSet(int expectedSize) {
+
+    Param.isTrue(expectedSize >= 0, "expectedSize cannot be less than 0");
+
+    this.keys = new int[PrimitiveHashing.capacityFor(expectedSize)];
+  }
+
+  public int size() {
+
+    return size;
+  }
+
+  public boolean isEmpty() {
+
+    return size == 0;
+  }
+
+  public boolean contains(int value) {
+
+    if (value == 0) {
+      return containsZero;
+    }
+    int mask = keys.length - 1;
+    for (int slot = PrimitiveHashing.mix(value) & mask; keys[slot] != 0; slot = (slot + 1) & mask) {
+      if (keys[slot] == value) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Adds the {@code value} to the set.
+   *
+   * @param value the value to add.
+   * @return {@code true} if the set did not contain the {@code value} .
+   */
+  public boolean add(int value) {
+
+    if (value == 0) {
+      if (containsZero) {
+        return false;
+      }
+      containsZero = true;
+      size++;
+      return true;
+    }
+    int mask = keys.length - 1;
+    int slot = PrimitiveHashing.mix(value) & mask;
+    for (; keys[slot] != 0; slot = (slot + 1) & mask) {
+      if (keys[slot] == value) {
+        return false;
+      }
+    }
+    keys[slot] = value;
+    size++;
+    if (size > PrimitiveHashing.threshold(keys.length)) {
+      rehash(keys.length * 2);
+    }
+    return true;
+  }
+
+  /**
+   * Removes the {@code value} from the set.
+   *
+   * @param value the value to remove.
+   * @return {@code true} if the set contained the {@code value} .
+   */
+  public boolean remove(int value) {
+
+    if (value == 0) {
+      if (!containsZero) {
+        return false;
+      }
+      containsZero = false;
+      size--;
+      return true;
+    }
+    int mask = keys.length - 1;
+    for (int slot = PrimitiveHashing.mix(value) & mask; keys[slot] != 0; slot = (slot + 1) & mask) {
+      if (keys[slot] == value) {
+        shiftBack(slot);
+        size--;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public void clear() {
+
+    Arrays.fill(keys, 0);
+    containsZero = false;
+    size = 0;
+  }
+
+  /**
+   * Performs the {@code action} for each value, in no particular order.
+   *
+   * @param action the action, cannot be {@code null} .
+   */
+  public void forEach(IntConsumer action) {
+
+    Param.notNull(action, "action cannot be null");
+
+    if (containsZero) {
+      action.accept(0);
+    }
+    for (int key : keys) {
+      if (key != 0) {
+        action.accept(key);
+      }
+    }
+  }
+
+  public int[] toArray() {
+
+    int[] result = new int[size];
+    int i = containsZero ? 1 : 0;
+    for (int key : keys) {
+      if (key != 0) {
+        result[i++] = key;
+      }
+    }
+    return result;
+  }
+
+  private void shiftBack(int gap) {
+
+    int mask = keys.length - 1;
+    for (int slot = (gap + 1) & mask; keys[slot] != 0; slot = (slot + 1) & mask) {
+      int home = PrimitiveHashing.mix(keys[slot]) & mask;
+      if (PrimitiveHashing.canShiftBack(home, gap, slot, mask)) {
+        keys[gap] = keys[slot];
+        gap = slot;
+      }
+    }
+    keys[gap] = 0;
+  }
+
+  private void rehash(int capacity) {
+
+    if (capacity > PrimitiveHashing.MAXIMUM_CAPACITY) {
+      return;
+    }
+    int[] old = keys;
+    keys = new int[capacity];
+    int mask = capacity - 1;
+    for (int key : old) {
+      if (key != 0) {
+        int slot = PrimitiveHashing.mix(key) & mask;
+        while (keys[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+      }
+    }
+  }
+}
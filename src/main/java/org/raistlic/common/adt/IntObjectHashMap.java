@@ -0,0 +1,248 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+import org.raistlic.common.precondition.Param;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/**
+ * A map from {@code int} keys to (non-{@code null}) values, stored in an open addressing hash
+ * table of two parallel arrays with linear probing, without boxing the keys or creating per entry
+ * objects.
+ * <p>
+ * A {@code null} value marks a free slot of the table, so {@code null} values are not allowed.
+ * <p>
+ * The class is NOT thread safe.
+ *
+ * @param <V> the value type.
+ */
+public final class IntObjectHashMap<V> {
+
+  /**
+   * An action on the entries of an {@link IntObjectHashMap} .
+   *
+   * @param <V> the value type.
+   */
+  @FunctionalInterface
+  public interface EntryConsumer<V> {
+
+    void accept(int key, V value);
+  }
+
+  private int[] keys;
+
+  private Object[] values;
+
+  private int size;
+
+  /**
+   * Creates an empty map with a default initial capacity.
+   */
+  public IntObjectHashMap() {
+
+    this(0);
+  }
+
+  /**
+   * Creates an empty map that holds {@code expectedSize} entries without growing.
+   *
+   * @param expectedSize the expected number of entries, cannot be less than {@code 0} .
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code expectedSize} is
+   *                                                                    less than {@code 0} .
+   */
+  public IntObjectHashMap(int expectedSize) {
+
+    Param.isTrue(expectedSize >= 0, "expectedSize cannot be less than 0");
+
+    int capacity = PrimitiveHashing.capacityFor(expectedSize);
+    this.keys = new int[capacity];
+    this.values = new Object[capacity];
+  }
+
+  public int size() {
+
+    return size;
+  }
+
+  public boolean isEmpty() {
+
+    return size == 0;
+  }
+
+  /**
+   * @param key the key to look up.
+   * @return the value of the {@code key}, or {@code null} if there is none.
+   */
+  @SuppressWarnings("unchecked")
+  public V get(int key) {
+
+    int slot = find(key);
+    return slot < 0 ? null : (V) values[slot];
+  }
+
+  public boolean containsKey(int key) {
+
+    return find(key) >= 0;
+  }
+
+  /**
+   * Associates the {@code value} with the {@code key} .
+   *
+   * @param key   the key.
+   * @param value the value, cannot be {@code null} .
+   * @return the previous value of the {@code key}, or {@code null} if there was none.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code value} is
+   *                                                                    {@code null} .
+   */
+  @SuppressWarnings("unchecked")
+  public V put(int key, V value) {
+
+    Param.notNull(value, "value cannot be null");
+
+    int mask = keys.length - 1;
+    int slot = PrimitiveHashing.mix(key) & mask;
+    for (; values[slot] != null; slot = (slot + 1) & mask) {
+      if (keys[slot] == key) {
+        V previous = (V) values[slot];
+        values[slot] = value;
+        return previous;
+      }
+    }
+    keys[slot] = key;
+    values[slot] = value;
+    size++;
+    if (size > PrimitiveHashing.threshold(keys.length)) {
+      rehash(keys.length * 2);
+    }
+    return null;
+  }
+
+  /**
+   * Returns the value of the {@code key}, or computes it with the {@code function} and associates
+   * it with the {@code key}, if there is none.
+   *
+   * @param key      the key.
+   * @param function the function that computes the missing value, cannot be {@code null}, or
+   *                 return {@code null} .
+   * @return the existing or computed value.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code function} is
+   *                                                                    {@code null}, or returns
+   *                                                                    {@code null} .
+   */
+  public V computeIfAbsent(int key, IntFunction<? extends V> function) {
+
+    Param.notNull(function, "function cannot be null");
+
+    V value = get(key);
+    if (value == null) {
+      value = function.apply(key);
+      put(key, value);
+    }
+    return value;
+  }
+
+  /**
+   * Removes the entry of the {@code key} .
+   *
+   * @param key the key.
+   * @return the removed value, or {@code null} if there was none.
+   */
+  @SuppressWarnings("unchecked")
+  public V remove(int key) {
+
+    int slot = find(key);
+    if (slot < 0) {
+      return null;
+    }
+    V removed = (V) values[slot];
+    shiftBack(slot);
+    size--;
+    return removed;
+  }
+
+  public void clear() {
+
+    Arrays.fill(values, null);
+    size = 0;
+  }
+
+  /**
+   * Performs the {@code action} for each entry, in no particular order.
+   *
+   * @param action the action, cannot be {@code null} .
+   */
+  @SuppressWarnings("unchecked")
+  public void forEach(EntryConsumer<? super V> action) {
+
+    Param.notNull(action, "action cannot be null");
+
+    for (int slot = 0; slot < values.length; slot++) {
+      if (values[slot] != null) {
+        action.accept(keys[slot], (V) values[slot]);
+      }
+    }
+  }
+
+  private int find(int key) {
+
+    int mask = keys.length - 1;
+    for (int slot = PrimitiveHashing.mix(key) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+      if (keys[slot] == key) {
+        return slot;
+      }
+    }
+    return -1;
+  }
+
+  private void shiftBack(int gap) {
+
+    int mask = keys.length - 1;
+    for (int slot = (gap + 1) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+      int home = PrimitiveHashing.mix(keys[slot]) & mask;
+      if (PrimitiveHashing.canShiftBack(home, gap, slot, mask)) {
+        keys[gap] = keys[slot];
+        values[gap] = values[slot];
+        gap = slot;
+      }
+    }
+    values[gap] = null;
+  }
+
+  private void rehash(int capacity) {
+
+    if (capacity > PrimitiveHashing.MAXIMUM_CAPACITY) {
+      return;
+    }
+    int[] oldKeys = keys;
+    Object[] oldValues = values;
+    keys = new int[capacity];
+    values = new Object[capacity];
+    int mask = capacity - 1;
+    for (int i = 0; i < oldValues.length; i++) {
+      if (oldValues[i] != null) {
+        int slot = PrimitiveHashing.mix(oldKeys[i]) & mask;
+        while (values[slot] != null) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+import org.raistlic.common.precondition.Param;
+
+import java.util.AbstractList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.function.Predicate;
+
+/**
+ * A read-only view of the elements of a mutable source list that match a predicate, which is
+ * kept up to date incrementally: after modifying the source list, the owner calls the matching
+ * notification method ({@link #elementSet(int)}, {@link #elementAdded(int)} or
+ * {@link #elementRemoved(int)}), and only the affected position is tested against the predicate
+ * again.
+ * <p>
+ * The matches are kept in a bit sequence that supports insertions and removals at any index, so
+ * each notification, as well as {@link #get(int)}, costs {@code O(log n)} in the size of the
+ * source list, instead of {@code O(n)} for filtering the whole list again.
+ * <p>
+ * The view does not observe the source list by itself, reading it while a modification of the
+ * source list has not been notified yet gives undefined results. The class is NOT thread safe.
+ *
+ * @param <E> the element type.
+ */
+public final class LiveFilteredList<E> extends AbstractList<E> implements RandomAccess {
+
+  /**
+   * Creates a live filtered view of the {@code source} list.
+   *
+   * @param source    the source list, cannot be {@code null} .
+   * @param predicate the predicate that selects the elements in the view, cannot be {@code null} .
+   * @param <E>       the element type.
+   * @return the created view.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if any of the parameters is
+   *                                                                    {@code null} .
+   */
+  public static <E> LiveFilteredList<E> of(List<E> source, Predicate<? super E> predicate) {
+
+    Param.notNull(source, "source cannot be null");
+    Param.notNull(predicate, "predicate cannot be null");
+
+    return new LiveFilteredList<>(source, predicate);
+  }
+
+  private final List<E> source;
+
+  private final Predicate<? super E> predicate;
+
+  private final DynamicBitMap bits;
+
+  private LiveFilteredList(List<E> source, Predicate<? super E> predicate) {
+
+    this.source = source;
+    this.predicate = predicate;
+    this.bits = DynamicBitMap.newInstance(source.size(), i -> predicate.test(source.get(i)));
+  }
+
+  @Override
+  public int size() {
+
+    return bits.cardinality();
+  }
+
+  @Override
+  public E get(int index) {
+
+    Param.isTrue(index >= 0, "index cannot be less than 0");
+    Param.isTrue(index < size(), "index must be less than size");
+
+    return source.get(bits.selectOne(index));
+  }
+
+  /**
+   * The method returns the index in the source list of the element at {@code index} in the view.
+   *
+   * @param index the index in the view, must be within the range {@code [0, size())} .
+   * @return the index in the source list.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code index} is out of
+   *                                                                    range.
+   */
+  public int sourceIndex(int index) {
+
+    Param.isTrue(index >= 0, "index cannot be less than 0");
+    Param.isTrue(index < size(), "index must be less than size");
+
+    return bits.selectOne(index);
+  }
+
+  /**
+   * Notifies the view that the element at {@code index} of the source list has been replaced (or
+   * modified in a way that may change the result of the predicate).
+   *
+   * @param index the index in the source list, must be within the range
+   *              {@code [0, source.size())} .
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code index} is out of
+   *                                                                    range.
+   */
+  public void elementSet(int index) {
+
+    Param.isTrue(index >= 0, "index cannot be less than 0");
+    Param.isTrue(index < bits.size(), "index must be less than the source size");
+
+    if (bits.set(index, predicate.test(source.get(index)))) {
+      modCount++;
+    }
+  }
+
+  /**
+   * Notifies the view that an element has been inserted at {@code index} of the source list.
+   *
+   * @param index the index in the source list, must be within the range
+   *              {@code [0, source.size()]} (the size before the insertion).
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code index} is out of
+   *                                                                    range.
+   */
+  public void elementAdded(int index) {
+
+    Param.isTrue(index >= 0, "index cannot be less than 0");
+    Param.isTrue(index <= bits.size(), "index cannot be greater than the source size");
+
+    bits.insert(index, predicate.test(source.get(index)));
+    modCount++;
+  }
+
+  /**
+   * Notifies the view that the element at {@code index} of the source list has been removed.
+   *
+   * @param index the index in the source list, must be within the range
+   *              {@code [0, source.size())} (the size before the removal).
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code index} is out of
+   *                                                                    range.
+   */
+  public void elementRemoved(int index) {
+
+    Param.isTrue(index >= 0, "index cannot be less than 0");
+    Param.isTrue(index < bits.size(), "index must be less than the source size");
+
+    bits.remove(index);
+    modCount++;
+  }
+
+  /**
+   * The returned iterator keeps a cursor on the source list and advances it to the next match,
+   * and fails fast if the view is notified of a change during the iteration.
+   */
+  @Override
+  public Iterator<E> iterator() {
+
+    return new CursorIterator();
+  }
+
+  private final class CursorIterator implements Iterator<E> {
+
+    private final int expectedModCount = modCount;
+
+    private int remaining = bits.cardinality();
+
+    private int cursor = 0;
+
+    @Override
+    public boolean hasNext() {
+
+      return remaining > 0;
+    }
+
+    @Override
+    public E next() {
+
+      if (expectedModCount != modCount) {
+        throw new ConcurrentModificationException();
+      }
+      if (!hasNext()) {
+        throw new NoSuchElementException("No next element.");
+      }
+      cursor = bits.nextOne(cursor);
+      E next = source.get(cursor);
+      cursor++;
+      remaining--;
+      return next;
+    }
+  }
+}
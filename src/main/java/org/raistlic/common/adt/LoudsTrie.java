@@ -0,0 +1,280 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+import org.raistlic.common.precondition.Param;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * An immutable, succinct set of {@link String} keys, stored as a trie in the LOUDS (level order
+ * unary degree sequence) encoding: the shape of the trie takes about 2 bits per node, plus one
+ * {@code char} label and one "terminal" bit per node, and the trie is navigated with the "rank" and
+ * "select" operations of a {@link BitSequence}, instead of pointers.
+ * <p>
+ * The nodes are numbered in breadth-first order, with the root being node {@code 0} . The shape
+ * bits start with {@code "10"} for a virtual super-root, followed by one {@code 1} per child and
+ * a {@code 0} for every node in breadth-first order, so that:
+ * <ul>
+ * <li>node {@code v} is represented by the {@code v}-th {@code 1};</li>
+ * <li>the children of node {@code v} are the {@code 1} s between the {@code v}-th and the
+ * {@code (v + 1)}-th {@code 0};</li>
+ * <li>the parent of node {@code v} is the number of {@code 0} s before the {@code v}-th
+ * {@code 1}, minus {@code 1} .</li>
+ * </ul>
+ * <p>
+ * Every key is also mapped to a dense id within the range {@code [0, size())}, which is the rank
+ * of its terminal node among all the terminal nodes.
+ */
+public final class LoudsTrie {
+
+  /**
+   * Creates a trie of the {@code keys}, duplicated keys are stored only once.
+   *
+   * @param keys the keys, cannot be {@code null} or contain {@code null} .
+   * @return the created trie.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code keys} is
+   *                                                                    {@code null} or contains
+   *                                                                    {@code null} .
+   */
+  public static LoudsTrie newInstance(Collection<String> keys) {
+
+    Param.notNull(keys, "keys cannot be null");
+
+    List<String> sorted = new ArrayList<>(keys.size());
+    for (String key : keys) {
+      Param.notNull(key, "keys cannot contain null");
+      sorted.add(key);
+    }
+    Collections.sort(sorted);
+    int unique = 0;
+    for (String key : sorted) {
+      if (unique == 0 || !key.equals(sorted.get(unique - 1))) {
+        sorted.set(unique++, key);
+      }
+    }
+    return new LoudsTrie(sorted.subList(0, unique));
+  }
+
+  private final int size;
+
+  private final BitSequence shape;
+
+  private final BitSequence terminals;
+
+  /**
+   * {@code labels[v]} is the label of the edge from the parent of node {@code v} to {@code v},
+   * {@code labels[0]} is not used.
+   */
+  private final char[] labels;
+
+  private LoudsTrie(List<String> keys) {
+
+    AppendableBitMap shapeBits = new AppendableBitMap();
+    AppendableBitMap terminalBits = new AppendableBitMap();
+    StringBuilder labelBuilder = new StringBuilder();
+
+    shapeBits.append(true).append(false);
+    labelBuilder.append('\0');
+
+    // every node is the range [from, to) of the sorted keys sharing a prefix of length depth
+    Deque<int[]> queue = new ArrayDeque<>();
+    queue.add(new int[]{0, keys.size(), 0});
+    while (!queue.isEmpty()) {
+      int[] node = queue.poll();
+      int from = node[0];
+      int to = node[1];
+      int depth = node[2];
+
+      boolean terminal = from < to && keys.get(from).length() == depth;
+      terminalBits.append(terminal);
+      if (terminal) {
+        from++;
+      }
+      while (from < to) {
+        char label = keys.get(from).charAt(depth);
+        int end = from + 1;
+        while (end < to && keys.get(end).charAt(depth) == label) {
+          end++;
+        }
+        shapeBits.append(true);
+        labelBuilder.append(label);
+        queue.add(new int[]{from, end, depth + 1});
+        from = end;
+      }
+      shapeBits.append(false);
+    }
+
+    this.size = keys.size();
+    this.shape = shapeBits.snapshot();
+    this.terminals = terminalBits.snapshot();
+    this.labels = labelBuilder.toString().toCharArray();
+  }
+
+  /**
+   * The method returns the number of (distinct) keys in the trie.
+   *
+   * @return the number of keys.
+   */
+  public int size() {
+
+    return size;
+  }
+
+  /**
+   * The method checks whether the trie contains the {@code key} .
+   *
+   * @param key the key to check, cannot be {@code null} .
+   * @return {@code true} if the trie contains the {@code key} .
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code key} is
+   *                                                                    {@code null} .
+   */
+  public boolean contains(String key) {
+
+    return idOf(key) >= 0;
+  }
+
+  /**
+   * The method returns the dense id of the {@code key} .
+   *
+   * @param key the key to look up, cannot be {@code null} .
+   * @return the id of the {@code key} within the range {@code [0, size())}, or {@code -1} if the
+   * trie does not contain the {@code key} .
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code key} is
+   *                                                                    {@code null} .
+   */
+  public int idOf(String key) {
+
+    Param.notNull(key, "key cannot be null");
+
+    int node = find(key);
+    if (node < 0 || !terminals.isOne(node)) {
+      return -1;
+    }
+    return terminals.rankOne(node) - 1;
+  }
+
+  /**
+   * The method returns the key of the dense {@code id}, it is the reverse of
+   * {@link #idOf(String)} .
+   *
+   * @param id the id of the key, must be within the range {@code [0, size())} .
+   * @return the key.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code id} is out of
+   *                                                                    range.
+   */
+  public String keyOf(int id) {
+
+    Param.isTrue(id >= 0, "id cannot be less than 0");
+    Param.isTrue(id < size, "id must be less than size");
+
+    StringBuilder builder = new StringBuilder();
+    for (int node = terminals.selectOne(id); node > 0; node = parent(node)) {
+      builder.append(labels[node]);
+    }
+    return builder.reverse().toString();
+  }
+
+  /**
+   * The method returns all the keys that start with the {@code prefix}, in lexicographic order.
+   *
+   * @param prefix the prefix, cannot be {@code null} .
+   * @return the list of keys, or an empty list if there is no such key.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code prefix} is
+   *                                                                    {@code null} .
+   */
+  public List<String> keysWithPrefix(String prefix) {
+
+    Param.notNull(prefix, "prefix cannot be null");
+
+    List<String> result = new ArrayList<>();
+    int start = find(prefix);
+    if (start < 0) {
+      return result;
+    }
+
+    // depth first, the stack holds pairs of node and the length of its key
+    StringBuilder builder = new StringBuilder(prefix);
+    Deque<int[]> stack = new ArrayDeque<>();
+    stack.push(new int[]{start, prefix.length()});
+    while (!stack.isEmpty()) {
+      int[] entry = stack.pop();
+      int node = entry[0];
+      int length = entry[1];
+      if (node != start) {
+        builder.setLength(length - 1);
+        builder.append(labels[node]);
+      }
+      if (terminals.isOne(node)) {
+        result.add(builder.toString());
+      }
+      int firstChild = firstChild(node);
+      for (int child = firstChild + childCount(node) - 1; child >= firstChild; child--) {
+        stack.push(new int[]{child, length + 1});
+      }
+    }
+    return result;
+  }
+
+  private int find(String key) {
+
+    int node = 0;
+    for (int i = 0, length = key.length(); i < length && node >= 0; i++) {
+      node = child(node, key.charAt(i));
+    }
+    return node;
+  }
+
+  private int child(int node, char label) {
+
+    int low = firstChild(node);
+    int high = low + childCount(node) - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (labels[mid] < label) {
+        low = mid + 1;
+      } else if (labels[mid] > label) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  private int firstChild(int node) {
+
+    // the children block starts after the node-th 0, with node + 1 0s and (start - node - 1) 1s
+    // before it
+    return shape.selectZero(node) - node;
+  }
+
+  private int childCount(int node) {
+
+    return shape.selectZero(node + 1) - shape.selectZero(node) - 1;
+  }
+
+  private int parent(int node) {
+
+    return shape.selectOne(node) - node - 1;
+  }
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+import org.raistlic.common.precondition.Param;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A read-only {@link BitSequence} that runs the rank and select operations directly on a memory
+ * mapped file, written by {@link #write(BitMap, WritableByteChannel)}, without copying the bits
+ * or the rank directory onto the heap.
+ * <p>
+ * The file format (version {@code 1}) is little endian, and consists of:
+ * <ol>
+ * <li>a 32 bytes header: the magic number {@code "RBMP"}, the format version, the size, the
+ * number of {@code 1} s, and the lengths of the 4 arrays of the rank directory (super block
+ * ranks, block ranks, select samples of {@code 1} s and of {@code 0} s), each as an {@code int};</li>
+ * <li>the {@code long} words of the bits;</li>
+ * <li>the super block ranks, as {@code int} s;</li>
+ * <li>the block ranks, as {@code char} s, padded to a multiple of 4 bytes;</li>
+ * <li>the select samples of {@code 1} s and then of {@code 0} s, as {@code int} s.</li>
+ * </ol>
+ * The layout is the same as the in memory layout of {@link BitMap}, so the results of all the
+ * operations are identical to the ones of the written {@link BitMap} . Several processes mapping
+ * the same file share the pages in the operating system's page cache.
+ */
+public final class MappedBitMap implements BitSequence {
+
+  /**
+   * Writes the {@code bitMap}, including its rank directory, to the {@code channel} at its
+   * current position.
+   *
+   * @param bitMap  the bit map to write, cannot be {@code null} .
+   * @param channel the channel to write to, cannot be {@code null} .
+   * @throws IOException when writing to the {@code channel} fails.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if any of the parameters is
+   *                                                                    {@code null} .
+   */
+  public static void write(BitMap bitMap, WritableByteChannel channel) throws IOException {
+
+    Param.notNull(bitMap, "bitMap cannot be null");
+    Param.notNull(channel, "channel cannot be null");
+
+    long[] words = bitMap.words();
+    BitMap.RankDirectory directory = bitMap.directory();
+
+    ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_BYTES).order(BYTE_ORDER);
+    buffer.putInt(MAGIC)
+        .putInt(VERSION)
+        .putInt(bitMap.size())
+        .putInt(directory.ones)
+        .putInt(directory.superBlockRanks.length)
+        .putInt(directory.blockRanks.length)
+        .putInt(directory.selectOneSamples.length)
+        .putInt(directory.selectZeroSamples.length);
+    for (long word : words) {
+      ensureRemaining(buffer, Long.BYTES, channel).putLong(word);
+    }
+    writeInts(directory.superBlockRanks, buffer, channel);
+    for (char rank : directory.blockRanks) {
+      ensureRemaining(buffer, Character.BYTES, channel).putChar(rank);
+    }
+    if ((directory.blockRanks.length & 1) != 0) {
+      ensureRemaining(buffer, Character.BYTES, channel).putChar((char) 0);
+    }
+    writeInts(directory.selectOneSamples, buffer, channel);
+    writeInts(directory.selectZeroSamples, buffer, channel);
+    flush(buffer, channel);
+  }
+
+  /**
+   * Maps the whole file of the {@code channel}, which must contain exactly one bit map written by
+   * {@link #write(BitMap, WritableByteChannel)}, read-only into memory.
+   * <p>
+   * The mapping stays valid after the {@code channel} is closed.
+   *
+   * @param channel the file channel to map, cannot be {@code null} .
+   * @return the mapped bit map.
+   * @throws IOException when mapping fails, or the file is not a valid bit map file.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code channel} is
+   *                                                                    {@code null} .
+   */
+  public static MappedBitMap map(FileChannel channel) throws IOException {
+
+    Param.notNull(channel, "channel cannot be null");
+
+    long length = channel.size();
+    if (length < HEADER_BYTES || length > Integer.MAX_VALUE) {
+      throw new IOException("not a bit map file, unexpected file length: " + length);
+    }
+    ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, length).order(BYTE_ORDER);
+    return new MappedBitMap(buffer);
+  }
+
+  private static final int MAGIC = 0x52424D50;
+
+  private static final int VERSION = 1;
+
+  private static final int HEADER_BYTES = 32;
+
+  private static final int WRITE_BUFFER_BYTES = 1 << 16;
+
+  private static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+  private final int size;
+
+  private final int ones;
+
+  private final LongBuffer words;
+
+  private final IntBuffer superBlockRanks;
+
+  private final CharBuffer blockRanks;
+
+  private final IntBuffer selectOneSamples;
+
+  private final IntBuffer selectZeroSamples;
+
+  private MappedBitMap(ByteBuffer buffer) throws IOException {
+
+    if (buffer.getInt(0) != MAGIC) {
+      throw new IOException("not a bit map file, magic number mismatch");
+    }
+    int version = buffer.getInt(4);
+    if (version != VERSION) {
+      throw new IOException("unsupported bit map file version: " + version);
+    }
+    size = buffer.getInt(8);
+    ones = buffer.getInt(12);
+    int superBlockCount = buffer.getInt(16);
+    int blockCount = buffer.getInt(20);
+    int selectOneSampleCount = buffer.getInt(24);
+    int selectZeroSampleCount = buffer.getInt(28);
+
+    if (size < 0 || ones < 0 || ones > size
+        || superBlockCount != (size >>> BitMap.SUPER_BLOCK_SHIFT) + 1
+        || blockCount != (size >>> BitMap.BLOCK_SHIFT) + 1
+        || selectOneSampleCount != BitMap.sampleCount(ones)
+        || selectZeroSampleCount != BitMap.sampleCount(size - ones)) {
+      throw new IOException("corrupted bit map file header");
+    }
+
+    int offset = HEADER_BYTES;
+    int wordBytes = Bits.wordCount(size) * Long.BYTES;
+    words = slice(buffer, offset, wordBytes).asLongBuffer();
+    offset += wordBytes;
+    superBlockRanks = slice(buffer, offset, superBlockCount * Integer.BYTES).asIntBuffer();
+    offset += superBlockCount * Integer.BYTES;
+    blockRanks = slice(buffer, offset, blockCount * Character.BYTES).asCharBuffer();
+    offset += (blockCount + (blockCount & 1)) * Character.BYTES;
+    selectOneSamples = slice(buffer, offset, selectOneSampleCount * Integer.BYTES).asIntBuffer();
+    offset += selectOneSampleCount * Integer.BYTES;
+    selectZeroSamples = slice(buffer, offset, selectZeroSampleCount * Integer.BYTES).asIntBuffer();
+    offset += selectZeroSampleCount * Integer.BYTES;
+
+    if (offset != buffer.limit()) {
+      throw new IOException("corrupted bit map file, unexpected file length: " + buffer.limit());
+    }
+  }
+
+  @Override
+  public int size() {
+
+    return size;
+  }
+
+  @Override
+  public boolean isOne(int index) {
+
+    Param.isTrue(index >= 0, "index cannot be less than 0");
+    Param.isTrue(index < size, "index must be less than size");
+
+    return (words.get(index >>> Bits.WORD_SHIFT) & (1L << index)) != 0L;
+  }
+
+  @Override
+  public int rankOne(int index) {
+
+    Param.isTrue(index >= 0, "index cannot be less than 0");
+    Param.isTrue(index < size, "index must be less than size");
+
+    return rank(index + 1);
+  }
+
+  @Override
+  public int selectOne(int i) {
+
+    Param.isTrue(i >= 0, "i cannot be less than 0");
+
+    return i < ones ? select(i, true) : -1;
+  }
+
+  @Override
+  public int selectZero(int i) {
+
+    Param.isTrue(i >= 0, "i cannot be less than 0");
+
+    return i < size - ones ? select(i, false) : -1;
+  }
+
+  /**
+   * The method returns the total number of {@code 1} s in the bit map.
+   *
+   * @return the number of {@code 1} s.
+   */
+  public int cardinality() {
+
+    return ones;
+  }
+
+  private int rank(int end) {
+
+    int block = end >>> BitMap.BLOCK_SHIFT;
+    int word = end >>> Bits.WORD_SHIFT;
+    int result = superBlockRanks.get(end >>> BitMap.SUPER_BLOCK_SHIFT) + blockRanks.get(block);
+    for (int w = block << BitMap.WORDS_PER_BLOCK_SHIFT; w < word; w++) {
+      result += Long.bitCount(words.get(w));
+    }
+    int offset = end & Bits.WORD_MASK;
+    if (offset != 0) {
+      result += Long.bitCount(words.get(word) & Bits.lowMask(offset));
+    }
+    return result;
+  }
+
+  private int select(int i, boolean one) {
+
+    IntBuffer samples = one ? selectOneSamples : selectZeroSamples;
+    int sample = i >>> BitMap.SELECT_SAMPLE_SHIFT;
+    int left = samples.get(sample);
+    int right = sample + 1 < samples.limit() ? samples.get(sample + 1) : superBlockRanks.limit() - 1;
+    while (left < right) {
+      int mid = (left + right + 1) >>> 1;
+      if (superBlockCount(mid, one) > i) {
+        right = mid - 1;
+      } else {
+        left = mid;
+      }
+    }
+
+    int superBlock = left;
+    i -= superBlockCount(superBlock, one);
+    int block = superBlock << BitMap.BLOCKS_PER_SUPER_BLOCK_SHIFT;
+    int lastBlock = Math.min(block + (1 << BitMap.BLOCKS_PER_SUPER_BLOCK_SHIFT), blockRanks.limit()) - 1;
+    while (block < lastBlock && blockCount(block + 1, one) <= i) {
+      block++;
+    }
+
+    i -= blockCount(block, one);
+    int word = block << BitMap.WORDS_PER_BLOCK_SHIFT;
+    while (true) {
+      long bits = one ? words.get(word) : ~words.get(word);
+      int count = Long.bitCount(bits);
+      if (i < count) {
+        return (word << Bits.WORD_SHIFT) + Bits.selectInWord(bits, i);
+      }
+      i -= count;
+      word++;
+    }
+  }
+
+  private int superBlockCount(int superBlock, boolean one) {
+
+    int rank = superBlockRanks.get(superBlock);
+    return one ? rank : (superBlock << BitMap.SUPER_BLOCK_SHIFT) - rank;
+  }
+
+  private int blockCount(int block, boolean one) {
+
+    int rank = blockRanks.get(block);
+    int blockInSuperBlock = block & ((1 << BitMap.BLOCKS_PER_SUPER_BLOCK_SHIFT) - 1);
+    return one ? rank : (blockInSuperBlock << BitMap.BLOCK_SHIFT) - rank;
+  }
+
+  private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) throws IOException {
+
+    if (offset + (long) length > buffer.limit()) {
+      throw new IOException("corrupted bit map file, unexpected end of file");
+    }
+    ByteBuffer duplicate = buffer.duplicate();
+    duplicate.position(offset);
+    duplicate.limit(offset + length);
+    return duplicate.slice().order(BYTE_ORDER);
+  }
+
+  private static void writeInts(int[] values, ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+
+    for (int value : values) {
+      ensureRemaining(buffer, Integer.BYTES, channel).putInt(value);
+    }
+  }
+
+  private static ByteBuffer ensureRemaining(ByteBuffer buffer, int bytes, WritableByteChannel channel) throws IOException {
+
+    if (buffer.remaining() < bytes) {
+      flush(buffer, channel);
+    }
+    return buffer;
+  }
+
+  private static void flush(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+}
@@ -0,0 +1,419 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+import org.raistlic.common.precondition.Param;
+import org.raistlic.common.precondition.Precondition;
+import org.raistlic.common.util.ObjectBuilder;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * An immutable bit map with {@code long} indices, for sequences of more than
+ * {@link Integer#MAX_VALUE} bits, that supports the same "rank" and "select" operations as
+ * {@link BitMap} .
+ * <p>
+ * Both the bits and the rank directory are stored off the java heap, in direct {@link ByteBuffer}
+ * segments of up to 1 GB each, so the size of the bit map is not limited by the maximum length of
+ * a java array, and the bits add no pressure to the garbage collector. The memory is released when
+ * the bit map becomes unreachable and its buffers are collected.
+ * <p>
+ * The rank directory keeps an absolute {@code long} rank every {@code 65536} bits, and a relative
+ * {@code char} rank every {@code 512} bits, which is about 3% of extra space; "rank" is
+ * {@code O(1)} and "select" is a binary search over the directory.
+ */
+public final class OffHeapBitMap {
+
+  /**
+   * The static factory method exports a {@code Builder} instance, to set the bits of the bit map
+   * to build.
+   * <p>
+   * A {@code Builder} instance is NOT thread safe.
+   *
+   * @param size the size of the bit map to build, cannot be less than {@code 0} .
+   * @return the new {@link org.raistlic.common.adt.OffHeapBitMap.Builder} instance.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code size} is less than
+   *                                                                    {@code 0}.
+   */
+  public static Builder builder(long size) {
+
+    return new Builder(size, SEGMENT_SHIFT);
+  }
+
+  /**
+   * Package private builder with a custom segment size, so that the segmentation can be tested
+   * with small bit maps.
+   */
+  static Builder builder(long size, int segmentShift) {
+
+    return new Builder(size, segmentShift);
+  }
+
+  private static final int SEGMENT_SHIFT = 30;
+
+  private static final int SUPER_BLOCK_SHIFT = 16;
+
+  private static final int WORDS_PER_BLOCK_SHIFT = BitMap.BLOCK_SHIFT - Bits.WORD_SHIFT;
+
+  private static final int BLOCKS_PER_SUPER_BLOCK_SHIFT = SUPER_BLOCK_SHIFT - BitMap.BLOCK_SHIFT;
+
+  private final long size;
+
+  private final long ones;
+
+  private final Segments words;
+
+  private final Segments superBlockRanks;
+
+  private final Segments blockRanks;
+
+  private final long superBlockCount;
+
+  private final long blockCount;
+
+  private OffHeapBitMap(long size, Segments words, int segmentShift) {
+
+    this.size = size;
+    this.words = words;
+    this.superBlockCount = (size >>> SUPER_BLOCK_SHIFT) + 1;
+    this.blockCount = (size >>> BitMap.BLOCK_SHIFT) + 1;
+    this.superBlockRanks = new Segments(superBlockCount * Long.BYTES, segmentShift);
+    this.blockRanks = new Segments(blockCount * Character.BYTES, segmentShift);
+
+    long wordCount = Bits.wordCount(size);
+    long rank = 0L;
+    long superBlockRank = 0L;
+    for (long block = 0L; block < blockCount; block++) {
+      if ((block & ((1 << BLOCKS_PER_SUPER_BLOCK_SHIFT) - 1)) == 0L) {
+        superBlockRank = rank;
+        superBlockRanks.putLong(block >>> BLOCKS_PER_SUPER_BLOCK_SHIFT, rank);
+      }
+      blockRanks.putChar(block, (char) (rank - superBlockRank));
+      long word = block << WORDS_PER_BLOCK_SHIFT;
+      long end = Math.min(wordCount, word + (1 << WORDS_PER_BLOCK_SHIFT));
+      for (; word < end; word++) {
+        rank += Long.bitCount(words.getLong(word));
+      }
+    }
+    this.ones = rank;
+  }
+
+  /**
+   * The method returns the number of bits in the bit map.
+   *
+   * @return the size of the bit map.
+   */
+  public long size() {
+
+    return size;
+  }
+
+  /**
+   * The method returns the total number of {@code 1} s in the bit map.
+   *
+   * @return the number of {@code 1} s.
+   */
+  public long cardinality() {
+
+    return ones;
+  }
+
+  /**
+   * The method returns whether the specified bit at {@code index} is {@code 1} or not.
+   *
+   * @param index the index to query, must be within the range {@code [0, size())} .
+   * @return {@code true} if the bit at {@code index} is {@code 1} .
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code index} is out of
+   *                                                                    range.
+   */
+  public boolean isOne(long index) {
+
+    Param.isTrue(index >= 0L, "index cannot be less than 0");
+    Param.isTrue(index < size, "index must be less than size");
+
+    return (words.getLong(index >>> Bits.WORD_SHIFT) & (1L << index)) != 0L;
+  }
+
+  /**
+   * The method returns the number of {@code 1} s up to {@code index} (inclusively).
+   *
+   * @param index the index up to which to query the number of {@code 1} s, must be within the
+   *              range {@code [0, size())} .
+   * @return the number of {@code 1} s.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code index} is out of
+   *                                                                    range.
+   */
+  public long rankOne(long index) {
+
+    Param.isTrue(index >= 0L, "index cannot be less than 0");
+    Param.isTrue(index < size, "index must be less than size");
+
+    return rank(index + 1);
+  }
+
+  /**
+   * The method returns the number of {@code 0} s up to the {@code index} (inclusively).
+   *
+   * @param index the index up to which to query the number of {@code 0} s, must be within the
+   *              range {@code [0, size())} .
+   * @return the number of {@code 0} s.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code index} is out of
+   *                                                                    range.
+   */
+  public long rankZero(long index) {
+
+    return index + 1 - rankOne(index);
+  }
+
+  /**
+   * The method returns the index of the {@code i}-th {@code 1} .
+   *
+   * @param i specifies which {@code 1} 's index to query, cannot be less than {@code 0} .
+   * @return the index of the {@code i}-th {@code 1}, or {@code -1} if there are insufficient
+   * {@code 1} s in the bit map.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code i} is less than
+   *                                                                    {@code 0}.
+   */
+  public long selectOne(long i) {
+
+    Param.isTrue(i >= 0L, "i cannot be less than 0");
+
+    return i < ones ? select(i, true) : -1L;
+  }
+
+  /**
+   * The method returns the index of the {@code i}-th {@code 0} .
+   *
+   * @param i specifies which {@code 0} 's index to query, cannot be less than {@code 0} .
+   * @return the index of the {@code i}-th {@code 0}, or {@code -1} if there are insufficient
+   * {@code 0} s in the bit map.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code i} is less than
+   *                                                                    {@code 0}.
+   */
+  public long selectZero(long i) {
+
+    Param.isTrue(i >= 0L, "i cannot be less than 0");
+
+    return i < size - ones ? select(i, false) : -1L;
+  }
+
+  private long rank(long end) {
+
+    long block = end >>> BitMap.BLOCK_SHIFT;
+    long word = end >>> Bits.WORD_SHIFT;
+    long result = superBlockRanks.getLong(end >>> SUPER_BLOCK_SHIFT) + blockRanks.getChar(block);
+    for (long w = block << WORDS_PER_BLOCK_SHIFT; w < word; w++) {
+      result += Long.bitCount(words.getLong(w));
+    }
+    int offset = (int) (end & Bits.WORD_MASK);
+    if (offset != 0) {
+      result += Long.bitCount(words.getLong(word) & Bits.lowMask(offset));
+    }
+    return result;
+  }
+
+  private long select(long i, boolean one) {
+
+    // the last super block whose count before it is not greater than i
+    long left = 0L;
+    long right = superBlockCount - 1;
+    while (left < right) {
+      long mid = (left + right + 1) >>> 1;
+      if (superBlockCount(mid, one) > i) {
+        right = mid - 1;
+      } else {
+        left = mid;
+      }
+    }
+    i -= superBlockCount(left, one);
+
+    // the last block within the super block whose count before it is not greater than i
+    long block = left << BLOCKS_PER_SUPER_BLOCK_SHIFT;
+    long lastBlock = Math.min(block + (1 << BLOCKS_PER_SUPER_BLOCK_SHIFT), blockCount) - 1;
+    while (block < lastBlock) {
+      long mid = (block + lastBlock + 1) >>> 1;
+      if (blockCount(mid, one) > i) {
+        lastBlock = mid - 1;
+      } else {
+        block = mid;
+      }
+    }
+    i -= blockCount(block, one);
+
+    long word = block << WORDS_PER_BLOCK_SHIFT;
+    while (true) {
+      long bits = one ? words.getLong(word) : ~words.getLong(word);
+      int count = Long.bitCount(bits);
+      if (i < count) {
+        return (word << Bits.WORD_SHIFT) + Bits.selectInWord(bits, (int) i);
+      }
+      i -= count;
+      word++;
+    }
+  }
+
+  private long superBlockCount(long superBlock, boolean one) {
+
+    long rank = superBlockRanks.getLong(superBlock);
+    return one ? rank : (superBlock << SUPER_BLOCK_SHIFT) - rank;
+  }
+
+  private long blockCount(long block, boolean one) {
+
+    long rank = blockRanks.getChar(block);
+    long blockInSuperBlock = block & ((1 << BLOCKS_PER_SUPER_BLOCK_SHIFT) - 1);
+    return one ? rank : (blockInSuperBlock << BitMap.BLOCK_SHIFT) - rank;
+  }
+
+  /**
+   * A fixed size, zero initialized, off heap array of {@code long} s or {@code char} s, split into
+   * direct buffers of {@code 2^shift} bytes each. The segment size is a multiple of the element
+   * size, so no element crosses two segments.
+   */
+  private static final class Segments {
+
+    private final ByteBuffer[] buffers;
+
+    private final int shift;
+
+    private final long mask;
+
+    private Segments(long bytes, int shift) {
+
+      long segmentBytes = 1L << shift;
+      long segmentCount = (bytes + segmentBytes - 1) >>> shift;
+      Param.isTrue(segmentCount <= Integer.MAX_VALUE, "the bit map is too large");
+
+      this.shift = shift;
+      this.mask = segmentBytes - 1;
+      this.buffers = new ByteBuffer[(int) segmentCount];
+      for (int i = 0; i < buffers.length; i++) {
+        long length = Math.min(segmentBytes, bytes - ((long) i << shift));
+        buffers[i] = ByteBuffer.allocateDirect((int) length).order(ByteOrder.nativeOrder());
+      }
+    }
+
+    private long getLong(long index) {
+
+      long position = index << 3;
+      return buffers[(int) (position >>> shift)].getLong((int) (position & mask));
+    }
+
+    private void putLong(long index, long value) {
+
+      long position = index << 3;
+      buffers[(int) (position >>> shift)].putLong((int) (position & mask), value);
+    }
+
+    private char getChar(long index) {
+
+      long position = index << 1;
+      return buffers[(int) (position >>> shift)].getChar((int) (position & mask));
+    }
+
+    private void putChar(long index, char value) {
+
+      long position = index << 1;
+      buffers[(int) (position >>> shift)].putChar((int) (position & mask), value);
+    }
+  }
+
+  /**
+   * The builder sets the bits directly in the off heap memory of the bit map to build, which is
+   * handed over to the built instance instead of being copied, so {@link #build()} can be called
+   * only once.
+   */
+  public static final class Builder implements ObjectBuilder<OffHeapBitMap> {
+
+    private final long size;
+
+    private final int segmentShift;
+
+    private Segments words;
+
+    private Builder(long size, int segmentShift) {
+
+      Param.isTrue(size >= 0L, "size cannot be less than 0");
+      Param.isTrue(segmentShift >= Bits.WORD_SHIFT && segmentShift <= SEGMENT_SHIFT, "invalid segment shift");
+
+      this.size = size;
+      this.segmentShift = segmentShift;
+      this.words = new Segments(Bits.wordCount(size) * Long.BYTES, segmentShift);
+    }
+
+    /**
+     * The method sets the bit at {@code index} to be {@code 1} .
+     *
+     * @param index the index of the bit to set, must be within range {@code [0, size)}.
+     * @return the {@link org.raistlic.common.adt.OffHeapBitMap.Builder} instance itself.
+     * @throws org.raistlic.common.precondition.InvalidParameterException if {@code index} is out of
+     *                                                                    range.
+     * @throws org.raistlic.common.precondition.InvalidContextException   if the bit map has already
+     *                                                                    been built.
+     */
+    public Builder set(long index) {
+
+      Param.isTrue(index >= 0L, "index cannot be less than 0");
+      Param.isTrue(index < size, "index must be less than size");
+      Precondition.assertContext(words != null, "the bit map has already been built");
+
+      long word = index >>> Bits.WORD_SHIFT;
+      words.putLong(word, words.getLong(word) | (1L << index));
+      return this;
+    }
+
+    /**
+     * The method sets the bit at {@code index} to be {@code 0} .
+     *
+     * @param index the index of the bit to clear, must be within range {@code [0, size)}.
+     * @return the {@link org.raistlic.common.adt.OffHeapBitMap.Builder} instance itself.
+     * @throws org.raistlic.common.precondition.InvalidParameterException if {@code index} is out of
+     *                                                                    range.
+     * @throws org.raistlic.common.precondition.InvalidContextException   if the bit map has already
+     *                                                                    been built.
+     */
+    public Builder unset(long index) {
+
+      Param.isTrue(index >= 0L, "index cannot be less than 0");
+      Param.isTrue(index < size, "index must be less than size");
+      Precondition.assertContext(words != null, "the bit map has already been built");
+
+      long word = index >>> Bits.WORD_SHIFT;
+      words.putLong(word, words.getLong(word) & ~(1L << index));
+      return this;
+    }
+
+    /**
+     * Creates the {@link OffHeapBitMap} with the bits set so far, and hands over the off heap
+     * memory to it.
+     *
+     * @return the created {@link OffHeapBitMap} .
+     * @throws org.raistlic.common.precondition.InvalidContextException if the bit map has already
+     *                                                                  been built.
+     */
+    @Override
+    public OffHeapBitMap build() {
+
+      Precondition.assertContext(words != null, "the bit map has already been built");
+
+      OffHeapBitMap result = new OffHeapBitMap(size, words, segmentShift);
+      words = null;
+      return result;
+    }
+  }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+import org.raistlic.common.precondition.Param;
+
+/**
+ * A fixed size vector of non-negative {@code int} values of a fixed bit width, packed back-to-back
+ * into {@code long} words, e.g. category codes of 3 bits take 3 bits each instead of 32.
+ * <p>
+ * The width is within {@code [1, 32]}, and the values within {@code [0, 2^width)}, except that a
+ * width of 32 holds any {@code int}, as its 32 bits. When the width divides 64 (1, 2, 4, 8, 16 or
+ * 32 bits), no value crosses a word boundary, and the accesses take a shift-and-mask fast path;
+ * otherwise a value may span two words, see {@link Bits#read(long[], long, int)} .
+ * <p>
+ * The class is NOT thread safe.
+ */
+public final class PackedIntVector {
+
+  /**
+   * Creates a vector of {@code size} values of {@code width} bits, all {@code 0} .
+   *
+   * @param size  the number of values, cannot be less than {@code 0} .
+   * @param width the number of bits of each value, must be within the range {@code [1, 32]} .
+   * @return the created vector.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if any of the parameters is
+   *                                                                    out of range.
+   */
+  public static PackedIntVector newInstance(int size, int width) {
+
+    Param.isTrue(size >= 0, "size cannot be less than 0");
+    Param.isTrue(width >= 1 && width <= Integer.SIZE, "width must be within [1, 32]");
+
+    return new PackedIntVector(size, width);
+  }
+
+  /**
+   * Creates a vector of the {@code values}, with the smallest width that holds the largest one.
+   *
+   * @param values the values, cannot be {@code null}, or negative.
+   * @return the created vector.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code values} is
+   *                                                                    {@code null}, or contains
+   *                                                                    negative values.
+   */
+  public static PackedIntVector of(int... values) {
+
+    Param.notNull(values, "values cannot be null");
+
+    int maximum = 0;
+    for (int value : values) {
+      Param.isTrue(value >= 0, "values cannot be negative");
+      maximum = Math.max(maximum, value);
+    }
+    PackedIntVector result = new PackedIntVector(values.length, widthFor(maximum));
+    for (int i = 0; i < values.length; i++) {
+      result.setUnchecked(i, values[i]);
+    }
+    return result;
+  }
+
+  /**
+   * The method returns the number of bits needed for the values within {@code [0, maximum]} .
+   *
+   * @param maximum the largest value, cannot be less than {@code 0} .
+   * @return the width, within the range {@code [1, 31]} .
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code maximum} is less
+   *                                                                    than {@code 0} .
+   */
+  public static int widthFor(int maximum) {
+
+    Param.isTrue(maximum >= 0, "maximum cannot be less than 0");
+
+    return Math.max(1, Integer.SIZE - Integer.numberOfLeadingZeros(maximum));
+  }
+
+  private final int size;
+
+  private final int width;
+
+  private final long mask;
+
+  /**
+   * {@code log2(width)} when the width divides 64, {@code -1} otherwise.
+   */
+  private final int alignedShift;
+
+  private final long[] words;
+
+  private PackedIntVector(int size, int width) {
+
+    this.size = size;
+    this.width = width;
+    this.mask = Bits.lowMask(width);
+    this.alignedShift = Integer.bitCount(width) == 1 ? Integer.numberOfTrailingZeros(width) : -1;
+    this.words = new long[(int) Bits.wordCount((long) size * width)];
+  }
+
+  /**
+   * The method returns the number of values in the vector.
+   *
+   * @return the number of values.
+   */
+  public int size() {
+
+    return size;
+  }
+
+  /**
+   * The method returns the number of bits of each value.
+   *
+   * @return the width.
+   */
+  public int width() {
+
+    return width;
+  }
+
+  /**
+   * @param index the index, must be within the range {@code [0, size())} .
+   * @return the value at {@code index} .
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code index} is out of
+   *                                                                    range.
+   */
+  public int get(int index) {
+
+    checkIndex(index);
+
+    return getUnchecked(index);
+  }
+
+  /**
+   * Replaces the value at {@code index} .
+   *
+   * @param index the index, must be within the range {@code [0, size())} .
+   * @param value the new value, must be within the range {@code [0, 2^width)}, unless the width
+   *              is {@code 32} .
+   * @throws org.raistlic.common.precondition.InvalidParameterException if any of the parameters is
+   *                                                                    out of range.
+   */
+  public void set(int index, int value) {
+
+    checkIndex(index);
+    Param.isTrue((value & 0xFFFFFFFFL & ~mask) == 0L, "value does not fit in the width");
+
+    setUnchecked(index, value);
+  }
+
+  /**
+   * Unpacks the {@code length} values starting at {@code from} into the {@code buffer}, starting
+   * at {@code offset} ; the aligned widths are unpacked a whole word at a time.
+   *
+   * @param from   the index of the first value to unpack.
+   * @param buffer the buffer to unpack to, cannot be {@code null} .
+   * @param offset the index in the {@code buffer} of the first value.
+   * @param length the number of values to unpack.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code buffer} is
+   *                                                                    {@code null}, or any of the
+   *                                                                    ranges is out of bounds.
+   */
+  public void unpack(int from, int[] buffer, int offset, int length) {
+
+    Param.notNull(buffer, "buffer cannot be null");
+    Param.isTrue(from >= 0 && length >= 0 && from <= size - length, "the range is out of the vector's bounds");
+    Param.isTrue(offset >= 0 && offset <= buffer.length - length, "the range is out of the buffer's bounds");
+
+    int end = from + length;
+    if (alignedShift < 0) {
+      long bit = (long) from * width;
+      for (int i = from; i < end; i++, bit += width) {
+        buffer[offset++] = (int) Bits.read(words, bit, width);
+      }
+      return;
+    }
+
+    int perWordShift = Bits.WORD_SHIFT - alignedShift;
+    int perWordMask = (1 << perWordShift) - 1;
+    for (int index = from; index < end; ) {
+      int inWord = index & perWordMask;
+      long word = words[index >>> perWordShift] >>> (inWord << alignedShift);
+      int count = Math.min(end - index, (1 << perWordShift) - inWord);
+      for (int k = 0; k < count; k++, word >>>= width) {
+        buffer[offset++] = (int) (word & mask);
+      }
+      index += count;
+    }
+  }
+
+  /**
+   * The method returns all the values, unpacked into a new array.
+   *
+   * @return the values.
+   */
+  public int[] toArray() {
+
+    int[] result = new int[size];
+    unpack(0, result, 0, size);
+    return result;
+  }
+
+  /**
+   * The method returns the number of bytes of the packed words.
+   *
+   * @return the number of bytes.
+   */
+  public long packedBytes() {
+
+    return (long) words.length * Long.BYTES;
+  }
+
+  int getUnchecked(int index) {
+
+    if (alignedShift >= 0) {
+      int perWordShift = Bits.WORD_SHIFT - alignedShift;
+      long word = words[index >>> perWordShift];
+      return (int) ((word >>> ((index & ((1 << perWordShift) - 1)) << alignedShift)) & mask);
+    }
+    return (int) Bits.read(words, (long) index * width, width);
+  }
+
+  void setUnchecked(int index, int value) {
+
+    Bits.write(words, (long) index * width, width, value);
+  }
+
+  private void checkIndex(int index) {
+
+    Param.isTrue(index >= 0, "index cannot be less than 0");
+    Param.isTrue(index < size, "index must be less than size");
+  }
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+import org.raistlic.common.precondition.Param;
+
+import java.util.AbstractList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Predicate;
+
+/**
+ * A read-only view of (some of) the elements of a list in another order, e.g. sorted, that keeps
+ * only the indices of the viewed elements in the underlying list, and not the elements.
+ * <p>
+ * The indices are bit-packed in a {@link PackedIntVector}, each takes just enough bits for the
+ * largest index of the underlying list (e.g. 20 bits for a list of a million elements). A sorted
+ * view is built by a stable, parallel merge sort of the indices, and can be restricted to the
+ * elements marked by a {@link BitSequence}, or matching a predicate, which gives sorted and
+ * filtered views without copying the elements.
+ * <p>
+ * The view reflects the current elements at the indices of the underlying list, which should be
+ * a {@link RandomAccess} list, and should not change its size.
+ *
+ * @param <E> the element type.
+ */
+public final class PermutedList<E> extends AbstractList<E> implements RandomAccess {
+
+  /**
+   * Creates a view of the {@code elements} sorted by the {@code comparator}, the equal elements
+   * are kept in their order in the {@code elements} .
+   *
+   * @param elements   the elements to view, cannot be {@code null} .
+   * @param comparator the comparator, cannot be {@code null} .
+   * @param <E>        the element type.
+   * @return the sorted view.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if any of the parameters is
+   *                                                                    {@code null} .
+   */
+  public static <E> PermutedList<E> sorted(List<E> elements, Comparator<? super E> comparator) {
+
+    Param.notNull(elements, "elements cannot be null");
+    Param.notNull(comparator, "comparator cannot be null");
+
+    int[] indices = new int[elements.size()];
+    for (int i = 0; i < indices.length; i++) {
+      indices[i] = i;
+    }
+    return sortedView(elements, indices, comparator);
+  }
+
+  /**
+   * Creates a view of the {@code elements} that match the {@code predicate}, sorted by the
+   * {@code comparator}, the equal elements are kept in their order in the {@code elements} .
+   *
+   * @param elements   the elements to view, cannot be {@code null} .
+   * @param predicate  the predicate that selects the elements in the view, cannot be
+   *                   {@code null} .
+   * @param comparator the comparator, cannot be {@code null} .
+   * @param <E>        the element type.
+   * @return the sorted and filtered view.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if any of the parameters is
+   *                                                                    {@code null} .
+   */
+  public static <E> PermutedList<E> sorted(List<E> elements,
+                                           Predicate<? super E> predicate,
+                                           Comparator<? super E> comparator) {
+
+    Param.notNull(elements, "elements cannot be null");
+    Param.notNull(predicate, "predicate cannot be null");
+
+    return sorted(elements, BitMap.newInstance(elements, predicate), comparator);
+  }
+
+  /**
+   * Creates a view of the {@code elements} marked by the {@code 1} s of the {@code bits}, sorted
+   * by the {@code comparator}, the equal elements are kept in their order in the
+   * {@code elements} .
+   *
+   * @param elements   the elements to view, cannot be {@code null} .
+   * @param bits       the bits that mark the elements in the view, cannot be {@code null}, and its
+   *                   size must be equal to the size of {@code elements} .
+   * @param comparator the comparator, cannot be {@code null} .
+   * @param <E>        the element type.
+   * @return the sorted and filtered view.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if any of the parameters is
+   *                                                                    {@code null}, or the sizes
+   *                                                                    do not match.
+   */
+  public static <E> PermutedList<E> sorted(List<E> elements, BitSequence bits, Comparator<? super E> comparator) {
+
+    Param.notNull(elements, "elements cannot be null");
+    Param.notNull(bits, "bits cannot be null");
+    Param.notNull(comparator, "comparator cannot be null");
+    Param.isTrue(bits.size() == elements.size(), "bits size must be equal to elements size");
+
+    int count = bits.size() == 0 ? 0 : bits.rankOne(bits.size() - 1);
+    int[] indices = new int[count];
+    for (int i = 0, cursor = 0; i < count; i++, cursor++) {
+      cursor = bits.nextOne(cursor);
+      indices[i] = cursor;
+    }
+    return sortedView(elements, indices, comparator);
+  }
+
+  /**
+   * Creates a view of the {@code elements} at the {@code indices}, in the order of the
+   * {@code indices} .
+   *
+   * @param elements the elements to view, cannot be {@code null} .
+   * @param indices  the indices of the elements in the view, cannot be {@code null}, each must be
+   *                 within the range {@code [0, elements.size())} .
+   * @param <E>      the element type.
+   * @return the view.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if any of the parameters is
+   *                                                                    {@code null}, or an index
+   *                                                                    is out of range.
+   */
+  public static <E> PermutedList<E> of(List<E> elements, int[] indices) {
+
+    Param.notNull(elements, "elements cannot be null");
+    Param.notNull(indices, "indices cannot be null");
+
+    for (int index : indices) {
+      Param.isTrue(index >= 0 && index < elements.size(), "index out of range: " + index);
+    }
+    return new PermutedList<>(elements, indices);
+  }
+
+  private static <E> PermutedList<E> sortedView(List<E> elements, int[] indices, Comparator<? super E> comparator) {
+
+    IndexComparator indexComparator = (i, j) -> comparator.compare(elements.get(i), elements.get(j));
+    new SortTask(indices, new int[indices.length], 0, indices.length, indexComparator).invoke();
+    return new PermutedList<>(elements, indices);
+  }
+
+  private final List<E> elements;
+
+  private final PackedIntVector indices;
+
+  private PermutedList(List<E> elements, int[] indices) {
+
+    this.elements = elements;
+    this.indices = PackedIntVector.newInstance(indices.length, PackedIntVector.widthFor(Math.max(0, elements.size() - 1)));
+    for (int i = 0; i < indices.length; i++) {
+      this.indices.setUnchecked(i, indices[i]);
+    }
+  }
+
+  @Override
+  public int size() {
+
+    return indices.size();
+  }
+
+  @Override
+  public E get(int index) {
+
+    if (index < 0 || index >= indices.size()) {
+      throw new IndexOutOfBoundsException("index: " + index + ", size: " + indices.size());
+    }
+    return elements.get(indices.getUnchecked(index));
+  }
+
+  /**
+   * The method returns the index in the underlying list of the element at {@code index} of the
+   * view.
+   *
+   * @param index the index in the view, must be within the range {@code [0, size())} .
+   * @return the index in the underlying list.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code index} is out of
+   *                                                                    range.
+   */
+  public int sourceIndex(int index) {
+
+    return indices.get(index);
+  }
+
+  @FunctionalInterface
+  private interface IndexComparator {
+
+    int compare(int i, int j);
+  }
+
+  /**
+   * Sorts the indices in {@code [from, to)}, sorting the halves in parallel and then merging
+   * them, with the range {@code [from, to)} of the {@code buffer} as the scratch space.
+   */
+  private static final class SortTask extends RecursiveAction {
+
+    private static final int THRESHOLD = 1 << 13;
+
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private static final long serialVersionUID = 1L;
+
+    private final int[] indices;
+
+    private final int[] buffer;
+
+    private final int from;
+
+    private final int to;
+
+    private final IndexComparator comparator;
+
+    private SortTask(int[] indices, int[] buffer, int from, int to, IndexComparator comparator) {
+
+      this.indices = indices;
+      this.buffer = buffer;
+      this.from = from;
+      this.to = to;
+      this.comparator = comparator;
+    }
+
+    @Override
+    protected void compute() {
+
+      if (to - from <= THRESHOLD || ForkJoinPool.getCommonPoolParallelism() < 2) {
+        sort(from, to);
+      } else {
+        int mid = (from + to) >>> 1;
+        invokeAll(
+            new SortTask(indices, buffer, from, mid, comparator),
+            new SortTask(indices, buffer, mid, to, comparator)
+        );
+        merge(from, mid, to);
+      }
+    }
+
+    private void sort(int from, int to) {
+
+      if (to - from <= INSERTION_SORT_THRESHOLD) {
+        for (int i = from + 1; i < to; i++) {
+          int index = indices[i];
+          int j = i - 1;
+          for (; j >= from && comparator.compare(indices[j], index) > 0; j--) {
+            indices[j + 1] = indices[j];
+          }
+          indices[j + 1] = index;
+        }
+        return;
+      }
+      int mid = (from + to) >>> 1;
+      sort(from, mid);
+      sort(mid, to);
+      merge(from, mid, to);
+    }
+
+    /**
+     * Merges the sorted ranges {@code [from, mid)} and {@code [mid, to)}, taking from the left
+     * range on ties, so that the sort is stable.
+     */
+    private void merge(int from, int mid, int to) {
+
+      if (comparator.compare(indices[mid - 1], indices[mid]) <= 0) {
+        return;
+      }
+      System.arraycopy(indices, from, buffer, from, mid - from);
+      int left = from;
+      int right = mid;
+      int target = from;
+      while (left < mid && right < to) {
+        indices[target++] = comparator.compare(buffer[left], indices[right]) <= 0 ? buffer[left++] : indices[right++];
+      }
+      System.arraycopy(buffer, left, indices, target, mid - left);
+    }
+  }
+}
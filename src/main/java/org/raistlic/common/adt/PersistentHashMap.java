@@ -0,0 +1,678 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+import org.raistlic.common.precondition.Param;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable (persistent) hash map, implemented as a hash array mapped trie (HAMT): every
+ * update returns a new map that shares all but the {@code O(log32 n)} nodes on the updated path
+ * with the original one, so a version of the map can be published as a snapshot without copying.
+ * <p>
+ * The nodes use the compressed (CHAMP) layout: a node keeps a bitmap of the inlined entries and a
+ * bitmap of the sub-nodes among its 32 branches, and a single array with the entries first and the
+ * sub-nodes last. Keys with the same full hash code are kept in collision nodes.
+ * <p>
+ * {@code null} keys are not allowed, {@code null} values are. The class is thread safe.
+ *
+ * @param <K> the key type.
+ * @param <V> the value type.
+ */
+public final class PersistentHashMap<K, V> implements Iterable<Map.Entry<K, V>> {
+
+  /**
+   * Returns the empty map.
+   *
+   * @param <K> the key type.
+   * @param <V> the value type.
+   * @return the empty map.
+   */
+  @SuppressWarnings("unchecked")
+  public static <K, V> PersistentHashMap<K, V> empty() {
+
+    return (PersistentHashMap<K, V>) EMPTY;
+  }
+
+  /**
+   * Creates a persistent map with the entries of the {@code map} .
+   *
+   * @param map the map to copy, cannot be {@code null}, or contain {@code null} keys.
+   * @param <K> the key type.
+   * @param <V> the value type.
+   * @return the created map.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code map} is
+   *                                                                    {@code null} or contains
+   *                                                                    {@code null} keys.
+   */
+  public static <K, V> PersistentHashMap<K, V> copyOf(Map<? extends K, ? extends V> map) {
+
+    Param.notNull(map, "map cannot be null");
+
+    PersistentHashMap<K, V> result = empty();
+    for (Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+      result = result.put(entry.getKey(), entry.getValue());
+    }
+    return result;
+  }
+
+  private static final int BITS = 5;
+
+  private static final int MASK = (1 << BITS) - 1;
+
+  private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(BitmapNode.EMPTY, 0);
+
+  private final Node root;
+
+  private final int size;
+
+  private Map<K, V> view;
+
+  private PersistentHashMap(Node root, int size) {
+
+    this.root = root;
+    this.size = size;
+  }
+
+  public int size() {
+
+    return size;
+  }
+
+  public boolean isEmpty() {
+
+    return size == 0;
+  }
+
+  /**
+   * @param key the key to look up, cannot be {@code null} .
+   * @return the value of the {@code key}, or {@code null} if there is none.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code key} is
+   *                                                                    {@code null} .
+   */
+  @SuppressWarnings("unchecked")
+  public V get(Object key) {
+
+    Param.notNull(key, "key cannot be null");
+
+    Object result = root.find(key, hash(key), 0);
+    return result == NOT_FOUND ? null : (V) result;
+  }
+
+  /**
+   * @param key the key to look up, cannot be {@code null} .
+   * @return {@code true} if the map contains the {@code key} .
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code key} is
+   *                                                                    {@code null} .
+   */
+  public boolean containsKey(Object key) {
+
+    Param.notNull(key, "key cannot be null");
+
+    return root.find(key, hash(key), 0) != NOT_FOUND;
+  }
+
+  /**
+   * Returns a map with the {@code value} associated with the {@code key}, this map is not
+   * modified.
+   *
+   * @param key   the key, cannot be {@code null} .
+   * @param value the value.
+   * @return the updated map, or this map if it already associates the {@code value} with the
+   * {@code key} .
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code key} is
+   *                                                                    {@code null} .
+   */
+  public PersistentHashMap<K, V> put(K key, V value) {
+
+    Param.notNull(key, "key cannot be null");
+
+    boolean[] added = new boolean[1];
+    Node updated = root.put(key, hash(key), value, 0, added);
+    if (updated == root) {
+      return this;
+    }
+    return new PersistentHashMap<>(updated, added[0] ? size + 1 : size);
+  }
+
+  /**
+   * Returns a map without the {@code key}, this map is not modified.
+   *
+   * @param key the key, cannot be {@code null} .
+   * @return the updated map, or this map if it does not contain the {@code key} .
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code key} is
+   *                                                                    {@code null} .
+   */
+  public PersistentHashMap<K, V> remove(Object key) {
+
+    Param.notNull(key, "key cannot be null");
+
+    Node updated = root.remove(key, hash(key), 0);
+    if (updated == root) {
+      return this;
+    }
+    return new PersistentHashMap<>(updated, size - 1);
+  }
+
+  /**
+   * Performs the {@code action} for each entry, in no particular order.
+   *
+   * @param action the action, cannot be {@code null} .
+   */
+  public void forEach(BiConsumer<? super K, ? super V> action) {
+
+    Param.notNull(action, "action cannot be null");
+
+    for (Map.Entry<K, V> entry : this) {
+      action.accept(entry.getKey(), entry.getValue());
+    }
+  }
+
+  @Override
+  public Iterator<Map.Entry<K, V>> iterator() {
+
+    return new EntryIterator<>(root);
+  }
+
+  /**
+   * The method returns a read-only {@link Map} view of this (immutable) map, the view does not
+   * copy the entries, and answers the look ups in {@code O(log32 n)} .
+   *
+   * @return the map view.
+   */
+  public Map<K, V> asMap() {
+
+    Map<K, V> result = view;
+    if (result == null) {
+      result = new MapView();
+      view = result;
+    }
+    return result;
+  }
+
+  @Override
+  public int hashCode() {
+
+    return asMap().hashCode();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+
+    return o == this || (o instanceof PersistentHashMap && asMap().equals(((PersistentHashMap<?, ?>) o).asMap()));
+  }
+
+  @Override
+  public String toString() {
+
+    return asMap().toString();
+  }
+
+  private static int hash(Object key) {
+
+    int h = key.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  private static int fragment(int hash, int shift) {
+
+    return (hash >>> shift) & MASK;
+  }
+
+  private static final Object NOT_FOUND = new Object();
+
+  private abstract static class Node {
+
+    /**
+     * Returns the value of the {@code key}, or {@link #NOT_FOUND} .
+     */
+    abstract Object find(Object key, int hash, int shift);
+
+    /**
+     * Returns the updated node, or this node if nothing changed, and sets {@code added[0]} if a
+     * new entry has been added.
+     */
+    abstract Node put(Object key, int hash, Object value, int shift, boolean[] added);
+
+    /**
+     * Returns the updated node, or this node if the {@code key} is not found.
+     */
+    abstract Node remove(Object key, int hash, int shift);
+
+    abstract int entryCount();
+
+    abstract int nodeCount();
+
+    abstract Object keyAt(int index);
+
+    abstract Object valueAt(int index);
+
+    abstract Node nodeAt(int index);
+  }
+
+  private static final class BitmapNode extends Node {
+
+    private static final BitmapNode EMPTY = new BitmapNode(0, 0, new Object[0]);
+
+    private final int entryMap;
+
+    private final int nodeMap;
+
+    /**
+     * The keys and values of the entries in pairs, followed by the sub-nodes in reverse order.
+     */
+    private final Object[] array;
+
+    private BitmapNode(int entryMap, int nodeMap, Object[] array) {
+
+      this.entryMap = entryMap;
+      this.nodeMap = nodeMap;
+      this.array = array;
+    }
+
+    @Override
+    Object find(Object key, int hash, int shift) {
+
+      int bit = 1 << fragment(hash, shift);
+      if ((entryMap & bit) != 0) {
+        int index = Integer.bitCount(entryMap & (bit - 1));
+        return key.equals(array[2 * index]) ? array[2 * index + 1] : NOT_FOUND;
+      }
+      if ((nodeMap & bit) != 0) {
+        return subNode(bit).find(key, hash, shift + BITS);
+      }
+      return NOT_FOUND;
+    }
+
+    @Override
+    Node put(Object key, int hash, Object value, int shift, boolean[] added) {
+
+      int bit = 1 << fragment(hash, shift);
+      if ((entryMap & bit) != 0) {
+        int index = Integer.bitCount(entryMap & (bit - 1));
+        Object existingKey = array[2 * index];
+        if (key.equals(existingKey)) {
+          if (array[2 * index + 1] == value) {
+            return this;
+          }
+          Object[] updated = array.clone();
+          updated[2 * index + 1] = value;
+          return new BitmapNode(entryMap, nodeMap, updated);
+        }
+        // the existing entry and the new one move down to a new sub-node
+        Node merged = merge(existingKey, hash(existingKey), array[2 * index + 1], key, hash, value, shift + BITS);
+        added[0] = true;
+        return entryToNode(bit, index, merged);
+      }
+      if ((nodeMap & bit) != 0) {
+        Node node = subNode(bit);
+        Node updated = node.put(key, hash, value, shift + BITS, added);
+        return updated == node ? this : replaceNode(bit, updated);
+      }
+
+      int index = Integer.bitCount(entryMap & (bit - 1));
+      Object[] updated = new Object[array.length + 2];
+      System.arraycopy(array, 0, updated, 0, 2 * index);
+      updated[2 * index] = key;
+      updated[2 * index + 1] = value;
+      System.arraycopy(array, 2 * index, updated, 2 * index + 2, array.length - 2 * index);
+      added[0] = true;
+      return new BitmapNode(entryMap | bit, nodeMap, updated);
+    }
+
+    @Override
+    Node remove(Object key, int hash, int shift) {
+
+      int bit = 1 << fragment(hash, shift);
+      if ((entryMap & bit) != 0) {
+        int index = Integer.bitCount(entryMap & (bit - 1));
+        if (!key.equals(array[2 * index])) {
+          return this;
+        }
+        Object[] updated = new Object[array.length - 2];
+        System.arraycopy(array, 0, updated, 0, 2 * index);
+        System.arraycopy(array, 2 * index + 2, updated, 2 * index, array.length - 2 * index - 2);
+        return new BitmapNode(entryMap ^ bit, nodeMap, updated);
+      }
+      if ((nodeMap & bit) != 0) {
+        Node node = subNode(bit);
+        Node updated = node.remove(key, hash, shift + BITS);
+        if (updated == node) {
+          return this;
+        }
+        // a sub-node left with a single entry is inlined, to keep the trie canonical
+        if (updated.nodeCount() == 0 && updated.entryCount() == 1) {
+          return nodeToEntry(bit, updated.keyAt(0), updated.valueAt(0));
+        }
+        return replaceNode(bit, updated);
+      }
+      return this;
+    }
+
+    @Override
+    int entryCount() {
+
+      return Integer.bitCount(entryMap);
+    }
+
+    @Override
+    int nodeCount() {
+
+      return Integer.bitCount(nodeMap);
+    }
+
+    @Override
+    Object keyAt(int index) {
+
+      return array[2 * index];
+    }
+
+    @Override
+    Object valueAt(int index) {
+
+      return array[2 * index + 1];
+    }
+
+    @Override
+    Node nodeAt(int index) {
+
+      return (Node) array[array.length - 1 - index];
+    }
+
+    private Node subNode(int bit) {
+
+      return nodeAt(Integer.bitCount(nodeMap & (bit - 1)));
+    }
+
+    private Node replaceNode(int bit, Node node) {
+
+      Object[] updated = array.clone();
+      updated[array.length - 1 - Integer.bitCount(nodeMap & (bit - 1))] = node;
+      return new BitmapNode(entryMap, nodeMap, updated);
+    }
+
+    private Node entryToNode(int bit, int entryIndex, Node node) {
+
+      int nodeIndex = Integer.bitCount(nodeMap & (bit - 1));
+      int position = array.length - 2 - nodeIndex;
+      Object[] updated = new Object[array.length - 1];
+      System.arraycopy(array, 0, updated, 0, 2 * entryIndex);
+      System.arraycopy(array, 2 * entryIndex + 2, updated, 2 * entryIndex, position - 2 * entryIndex);
+      updated[position] = node;
+      System.arraycopy(array, array.length - nodeIndex, updated, position + 1, nodeIndex);
+      return new BitmapNode(entryMap ^ bit, nodeMap | bit, updated);
+    }
+
+    private Node nodeToEntry(int bit, Object key, Object value) {
+
+      int entryIndex = Integer.bitCount(entryMap & (bit - 1));
+      int nodeIndex = array.length - 1 - Integer.bitCount(nodeMap & (bit - 1));
+      Object[] updated = new Object[array.length + 1];
+      System.arraycopy(array, 0, updated, 0, 2 * entryIndex);
+      updated[2 * entryIndex] = key;
+      updated[2 * entryIndex + 1] = value;
+      System.arraycopy(array, 2 * entryIndex, updated, 2 * entryIndex + 2, nodeIndex - 2 * entryIndex);
+      System.arraycopy(array, nodeIndex + 1, updated, nodeIndex + 2, array.length - nodeIndex - 1);
+      return new BitmapNode(entryMap | bit, nodeMap ^ bit, updated);
+    }
+
+    private static Node merge(Object key0, int hash0, Object value0, Object key1, int hash1, Object value1, int shift) {
+
+      if (hash0 == hash1) {
+        return new CollisionNode(hash0, new Object[]{key0, value0, key1, value1});
+      }
+      int fragment0 = fragment(hash0, shift);
+      int fragment1 = fragment(hash1, shift);
+      if (fragment0 != fragment1) {
+        int entryMap = (1 << fragment0) | (1 << fragment1);
+        return fragment0 < fragment1
+            ? new BitmapNode(entryMap, 0, new Object[]{key0, value0, key1, value1})
+            : new BitmapNode(entryMap, 0, new Object[]{key1, value1, key0, value0});
+      }
+      Node node = merge(key0, hash0, value0, key1, hash1, value1, shift + BITS);
+      return new BitmapNode(0, 1 << fragment0, new Object[]{node});
+    }
+  }
+
+  /**
+   * The entries of the keys that share the same full hash code.
+   */
+  private static final class CollisionNode extends Node {
+
+    private final int hash;
+
+    private final Object[] array;
+
+    private CollisionNode(int hash, Object[] array) {
+
+      this.hash = hash;
+      this.array = array;
+    }
+
+    @Override
+    Object find(Object key, int hash, int shift) {
+
+      int index = indexOf(key);
+      return index < 0 ? NOT_FOUND : array[index + 1];
+    }
+
+    @Override
+    Node put(Object key, int hash, Object value, int shift, boolean[] added) {
+
+      if (hash != this.hash) {
+        // a different hash that shares the prefix, push this node down one level
+        Node wrapper = new BitmapNode(0, 1 << fragment(this.hash, shift), new Object[]{this});
+        return wrapper.put(key, hash, value, shift, added);
+      }
+      int index = indexOf(key);
+      if (index >= 0) {
+        if (array[index + 1] == value) {
+          return this;
+        }
+        Object[] updated = array.clone();
+        updated[index + 1] = value;
+        return new CollisionNode(hash, updated);
+      }
+      Object[] updated = Arrays.copyOf(array, array.length + 2);
+      updated[array.length] = key;
+      updated[array.length + 1] = value;
+      added[0] = true;
+      return new CollisionNode(hash, updated);
+    }
+
+    @Override
+    Node remove(Object key, int hash, int shift) {
+
+      int index = indexOf(key);
+      if (index < 0) {
+        return this;
+      }
+      Object[] updated = new Object[array.length - 2];
+      System.arraycopy(array, 0, updated, 0, index);
+      System.arraycopy(array, index + 2, updated, index, array.length - index - 2);
+      return new CollisionNode(hash, updated);
+    }
+
+    @Override
+    int entryCount() {
+
+      return array.length / 2;
+    }
+
+    @Override
+    int nodeCount() {
+
+      return 0;
+    }
+
+    @Override
+    Object keyAt(int index) {
+
+      return array[2 * index];
+    }
+
+    @Override
+    Object valueAt(int index) {
+
+      return array[2 * index + 1];
+    }
+
+    @Override
+    Node nodeAt(int index) {
+
+      throw new IndexOutOfBoundsException();
+    }
+
+    private int indexOf(Object key) {
+
+      for (int i = 0; i < array.length; i += 2) {
+        if (key.equals(array[i])) {
+          return i;
+        }
+      }
+      return -1;
+    }
+  }
+
+  /**
+   * Depth first iteration, with an explicit stack of the nodes on the current path.
+   */
+  private static final class EntryIterator<K, V> implements Iterator<Map.Entry<K, V>> {
+
+    // 32 bits of hash in fragments of 5 bits, plus a collision node
+    private static final int MAX_DEPTH = 8;
+
+    private final Node[] nodes = new Node[MAX_DEPTH];
+
+    private final int[] nextEntries = new int[MAX_DEPTH];
+
+    private final int[] nextNodes = new int[MAX_DEPTH];
+
+    private int depth;
+
+    private EntryIterator(Node root) {
+
+      nodes[0] = root;
+      advance();
+    }
+
+    @Override
+    public boolean hasNext() {
+
+      return depth >= 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map.Entry<K, V> next() {
+
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      Node node = nodes[depth];
+      int index = nextEntries[depth]++;
+      Map.Entry<K, V> result = new AbstractMap.SimpleImmutableEntry<>((K) node.keyAt(index), (V) node.valueAt(index));
+      advance();
+      return result;
+    }
+
+    /**
+     * Moves to the next node that has an entry to return, or sets {@code depth} to {@code -1} .
+     */
+    private void advance() {
+
+      while (depth >= 0) {
+        Node node = nodes[depth];
+        if (nextEntries[depth] < node.entryCount()) {
+          return;
+        }
+        if (nextNodes[depth] < node.nodeCount()) {
+          Node child = node.nodeAt(nextNodes[depth]++);
+          depth++;
+          nodes[depth] = child;
+          nextEntries[depth] = 0;
+          nextNodes[depth] = 0;
+        } else {
+          nodes[depth] = null;
+          depth--;
+        }
+      }
+    }
+  }
+
+  private final class MapView extends AbstractMap<K, V> {
+
+    @Override
+    public int size() {
+
+      return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+
+      return key != null && PersistentHashMap.this.containsKey(key);
+    }
+
+    @Override
+    public V get(Object key) {
+
+      return key == null ? null : PersistentHashMap.this.get(key);
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+
+      return new AbstractSet<Entry<K, V>>() {
+
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+
+          return PersistentHashMap.this.iterator();
+        }
+
+        @Override
+        public int size() {
+
+          return size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+
+          if (!(o instanceof Entry)) {
+            return false;
+          }
+          Entry<?, ?> entry = (Entry<?, ?>) o;
+          Object key = entry.getKey();
+          return key != null
+              && PersistentHashMap.this.containsKey(key)
+              && Objects.equals(PersistentHashMap.this.get(key), entry.getValue());
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,419 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+import org.raistlic.common.precondition.Param;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.function.Predicate;
+
+/**
+ * An immutable (persistent) vector, implemented as a bit-partitioned trie of 32-way nodes with the
+ * elements at the leaves: every update returns a new vector that shares all but the
+ * {@code O(log32 n)} nodes on the updated path with the original one, so a version of the vector
+ * can be published as a snapshot without copying.
+ * <p>
+ * The last (up to 32) elements are kept in a separate tail array, so that appending, and removing
+ * the last element, touch the trie only once every 32 elements.
+ * <p>
+ * The class is thread safe.
+ *
+ * @param <E> the element type.
+ */
+public final class PersistentVector<E> implements Iterable<E> {
+
+  /**
+   * Returns the empty vector.
+   *
+   * @param <E> the element type.
+   * @return the empty vector.
+   */
+  @SuppressWarnings("unchecked")
+  public static <E> PersistentVector<E> empty() {
+
+    return (PersistentVector<E>) EMPTY;
+  }
+
+  /**
+   * Creates a vector of the {@code elements}, in their iteration order.
+   *
+   * @param elements the elements, cannot be {@code null} .
+   * @param <E>      the element type.
+   * @return the created vector.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code elements} is
+   *                                                                    {@code null} .
+   */
+  public static <E> PersistentVector<E> copyOf(Collection<? extends E> elements) {
+
+    Param.notNull(elements, "elements cannot be null");
+
+    PersistentVector<E> result = empty();
+    for (E element : elements) {
+      result = result.append(element);
+    }
+    return result;
+  }
+
+  private static final int BITS = 5;
+
+  private static final int WIDTH = 1 << BITS;
+
+  private static final int MASK = WIDTH - 1;
+
+  private static final Object[] EMPTY_NODE = new Object[WIDTH];
+
+  private static final PersistentVector<?> EMPTY = new PersistentVector<>(0, BITS, EMPTY_NODE, new Object[0]);
+
+  private final int size;
+
+  /**
+   * The bit offset of the indices at the root level of the trie.
+   */
+  private final int shift;
+
+  /**
+   * The root of the trie, the internal nodes are all {@code Object[WIDTH]}, with {@code null}s in
+   * the unused branches.
+   */
+  private final Object[] root;
+
+  private final Object[] tail;
+
+  private List<E> view;
+
+  private PersistentVector(int size, int shift, Object[] root, Object[] tail) {
+
+    this.size = size;
+    this.shift = shift;
+    this.root = root;
+    this.tail = tail;
+  }
+
+  public int size() {
+
+    return size;
+  }
+
+  public boolean isEmpty() {
+
+    return size == 0;
+  }
+
+  /**
+   * @param index the index, must be within the range {@code [0, size())} .
+   * @return the element at {@code index} .
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code index} is out of
+   *                                                                    range.
+   */
+  @SuppressWarnings("unchecked")
+  public E get(int index) {
+
+    checkIndex(index);
+
+    return (E) leafOf(index)[index & MASK];
+  }
+
+  /**
+   * Returns a vector with the {@code element} appended to the end, this vector is not modified.
+   *
+   * @param element the element to append.
+   * @return the updated vector.
+   */
+  public PersistentVector<E> append(E element) {
+
+    int tailSize = size - tailOffset();
+    if (tailSize < WIDTH) {
+      Object[] updatedTail = Arrays.copyOf(tail, tailSize + 1);
+      updatedTail[tailSize] = element;
+      return new PersistentVector<>(size + 1, shift, root, updatedTail);
+    }
+
+    // the tail is full, push it into the trie
+    Object[] updatedRoot;
+    int updatedShift = shift;
+    if ((size >>> BITS) > (1 << shift)) {
+      updatedRoot = new Object[WIDTH];
+      updatedRoot[0] = root;
+      updatedRoot[1] = newPath(shift, tail);
+      updatedShift += BITS;
+    } else {
+      updatedRoot = pushTail(shift, root, tail);
+    }
+    return new PersistentVector<>(size + 1, updatedShift, updatedRoot, new Object[]{element});
+  }
+
+  /**
+   * Returns a vector with the element at {@code index} replaced, this vector is not modified.
+   *
+   * @param index   the index, must be within the range {@code [0, size())} .
+   * @param element the new element.
+   * @return the updated vector.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code index} is out of
+   *                                                                    range.
+   */
+  public PersistentVector<E> set(int index, E element) {
+
+    checkIndex(index);
+
+    if (index >= tailOffset()) {
+      Object[] updatedTail = tail.clone();
+      updatedTail[index & MASK] = element;
+      return new PersistentVector<>(size, shift, root, updatedTail);
+    }
+    return new PersistentVector<>(size, shift, set(shift, root, index, element), tail);
+  }
+
+  /**
+   * Returns a vector without the last element, this vector is not modified.
+   *
+   * @return the updated vector.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if the vector is empty.
+   */
+  public PersistentVector<E> removeLast() {
+
+    Param.isTrue(size > 0, "the vector is empty");
+
+    if (size == 1) {
+      return empty();
+    }
+    if (size - tailOffset() > 1) {
+      return new PersistentVector<>(size - 1, shift, root, Arrays.copyOf(tail, tail.length - 1));
+    }
+
+    // the tail becomes empty, pull the last leaf out of the trie as the new tail
+    Object[] updatedTail = leafOf(size - 2);
+    Object[] updatedRoot = popTail(shift, root);
+    int updatedShift = shift;
+    if (updatedRoot == null) {
+      updatedRoot = EMPTY_NODE;
+    }
+    if (shift > BITS && updatedRoot[1] == null) {
+      updatedRoot = (Object[]) updatedRoot[0];
+      updatedShift -= BITS;
+    }
+    return new PersistentVector<>(size - 1, updatedShift, updatedRoot, updatedTail);
+  }
+
+  /**
+   * Returns a vector without the elements that match the {@code filter}, in the same order, this
+   * vector is not modified. The method rebuilds the vector, it costs {@code O(n)} .
+   *
+   * @param filter the filter, cannot be {@code null} .
+   * @return the updated vector, or this vector if no element matches.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code filter} is
+   *                                                                    {@code null} .
+   */
+  public PersistentVector<E> removeIf(Predicate<? super E> filter) {
+
+    Param.notNull(filter, "filter cannot be null");
+
+    PersistentVector<E> result = empty();
+    boolean removed = false;
+    for (E element : this) {
+      if (filter.test(element)) {
+        removed = true;
+      } else {
+        result = result.append(element);
+      }
+    }
+    return removed ? result : this;
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+
+    return new ElementIterator();
+  }
+
+  /**
+   * The method returns a read-only {@link List} view of this (immutable) vector, the view does not
+   * copy the elements.
+   *
+   * @return the list view.
+   */
+  public List<E> asList() {
+
+    List<E> result = view;
+    if (result == null) {
+      result = new ListView();
+      view = result;
+    }
+    return result;
+  }
+
+  @Override
+  public int hashCode() {
+
+    return asList().hashCode();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+
+    return o == this || (o instanceof PersistentVector && asList().equals(((PersistentVector<?>) o).asList()));
+  }
+
+  @Override
+  public String toString() {
+
+    return asList().toString();
+  }
+
+  private void checkIndex(int index) {
+
+    Param.isTrue(index >= 0, "index cannot be less than 0");
+    Param.isTrue(index < size, "index must be less than size");
+  }
+
+  private int tailOffset() {
+
+    return size < WIDTH ? 0 : ((size - 1) >>> BITS) << BITS;
+  }
+
+  /**
+   * Returns the leaf array that holds the element at {@code index} .
+   */
+  private Object[] leafOf(int index) {
+
+    if (index >= tailOffset()) {
+      return tail;
+    }
+    Object[] node = root;
+    for (int level = shift; level > 0; level -= BITS) {
+      node = (Object[]) node[(index >>> level) & MASK];
+    }
+    return node;
+  }
+
+  private Object[] pushTail(int level, Object[] parent, Object[] tailNode) {
+
+    int branch = ((size - 1) >>> level) & MASK;
+    Object[] result = parent.clone();
+    if (level == BITS) {
+      result[branch] = tailNode;
+    } else {
+      Object[] child = (Object[]) parent[branch];
+      result[branch] = child == null ? newPath(level - BITS, tailNode) : pushTail(level - BITS, child, tailNode);
+    }
+    return result;
+  }
+
+  private static Object[] newPath(int level, Object[] node) {
+
+    if (level == 0) {
+      return node;
+    }
+    Object[] result = new Object[WIDTH];
+    result[0] = newPath(level - BITS, node);
+    return result;
+  }
+
+  private static Object[] set(int level, Object[] node, int index, Object element) {
+
+    Object[] result = node.clone();
+    if (level == 0) {
+      result[index & MASK] = element;
+    } else {
+      int branch = (index >>> level) & MASK;
+      result[branch] = set(level - BITS, (Object[]) node[branch], index, element);
+    }
+    return result;
+  }
+
+  /**
+   * Removes the last leaf from the sub-trie of the {@code node}, returns {@code null} if the
+   * sub-trie becomes empty.
+   */
+  private Object[] popTail(int level, Object[] node) {
+
+    int branch = ((size - 2) >>> level) & MASK;
+    if (level > BITS) {
+      Object[] child = popTail(level - BITS, (Object[]) node[branch]);
+      if (child == null && branch == 0) {
+        return null;
+      }
+      Object[] result = node.clone();
+      result[branch] = child;
+      return result;
+    }
+    if (branch == 0) {
+      return null;
+    }
+    Object[] result = node.clone();
+    result[branch] = null;
+    return result;
+  }
+
+  /**
+   * Iterates leaf by leaf, so that the trie is walked once per 32 elements.
+   */
+  private final class ElementIterator implements Iterator<E> {
+
+    private int index;
+
+    private Object[] leaf;
+
+    @Override
+    public boolean hasNext() {
+
+      return index < size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E next() {
+
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      if ((index & MASK) == 0) {
+        leaf = leafOf(index);
+      }
+      return (E) leaf[index++ & MASK];
+    }
+  }
+
+  private final class ListView extends AbstractList<E> implements RandomAccess {
+
+    @Override
+    public E get(int index) {
+
+      if (index < 0 || index >= size) {
+        throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+      }
+      return PersistentVector.this.get(index);
+    }
+
+    @Override
+    public int size() {
+
+      return size;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+
+      return PersistentVector.this.iterator();
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+/**
+ * Package private helpers shared by the open addressing hash tables with primitive keys in this
+ * package ({@link IntHashSet}, {@link IntObjectHashMap} and {@link LongObjectHashMap}).
+ * <p>
+ * The tables use linear probing over a power of two capacity, kept at most 3/4 full, and remove
+ * entries by shifting the following entries of the probe sequence back, so there are no
+ * tombstones.
+ */
+final class PrimitiveHashing {
+
+  static final int DEFAULT_CAPACITY = 16;
+
+  static final int MAXIMUM_CAPACITY = 1 << 30;
+
+  /**
+   * Spreads the bits of the {@code key}, so that keys in sequence do not form long probe runs.
+   */
+  static int mix(int key) {
+
+    int h = key * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * Spreads the bits of the {@code key}, so that keys in sequence do not form long probe runs.
+   */
+  static int mix(long key) {
+
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  /**
+   * Returns the power of two table capacity that holds {@code expectedSize} entries without
+   * growing.
+   */
+  static int capacityFor(int expectedSize) {
+
+    long minimum = Math.max(DEFAULT_CAPACITY, (expectedSize * 4L + 2) / 3);
+    if (minimum >= MAXIMUM_CAPACITY) {
+      return MAXIMUM_CAPACITY;
+    }
+    return Integer.highestOneBit((int) minimum - 1) << 1;
+  }
+
+  /**
+   * Returns the number of entries at which a table of {@code capacity} grows.
+   */
+  static int threshold(int capacity) {
+
+    return capacity == MAXIMUM_CAPACITY ? Integer.MAX_VALUE : capacity / 4 * 3;
+  }
+
+  /**
+   * Tells whether the entry at {@code slot}, whose ideal slot is {@code home}, can be moved back
+   * to the empty {@code gap} of a removal, i.e. whether {@code home} is not cyclically within
+   * {@code (gap, slot]} .
+   */
+  static boolean canShiftBack(int home, int gap, int slot, int mask) {
+
+    return ((slot - home) & mask) >= ((slot - gap) & mask);
+  }
+
+  private PrimitiveHashing() {
+  }
+}
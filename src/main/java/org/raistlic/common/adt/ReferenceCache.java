@@ -0,0 +1,407 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+import org.raistlic.common.precondition.Param;
+import org.raistlic.common.util.ObjectBuilder;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A concurrent, keyed cache, that holds its values through weak or soft references, so that the
+ * garbage collector can reclaim them (soft values are typically kept until the memory is short),
+ * and optionally bounds the number of entries.
+ * <p>
+ * The entries whose values have been reclaimed are removed from the cache when their references
+ * are polled from a {@link ReferenceQueue}, which happens along with the writes, or when
+ * {@link #cleanUp()} is called. When the cache is bounded, the oldest entries are evicted first
+ * (first in, first out).
+ * <p>
+ * The cache counts the hits, the misses and the evictions (both by the size bound and by the
+ * garbage collector), see {@link #stats()} . The class is thread safe.
+ *
+ * @param <K> the key type.
+ * @param <V> the value type.
+ */
+public final class ReferenceCache<K, V> {
+
+  /**
+   * Exports a builder of the cache, which by default has soft values and no size bound.
+   *
+   * @param <K> the key type.
+   * @param <V> the value type.
+   * @return the builder.
+   */
+  public static <K, V> Builder<K, V> builder() {
+
+    return new Builder<>();
+  }
+
+  /**
+   * The strength of the references to the cached values.
+   */
+  public enum ValueStrength {
+
+    /**
+     * The values can be reclaimed as soon as they are not strongly reachable elsewhere.
+     */
+    WEAK,
+
+    /**
+     * The values can be reclaimed when the JVM is short of memory.
+     */
+    SOFT
+  }
+
+  private final ConcurrentHashMap<K, ValueReference<K, V>> map;
+
+  private final ReferenceQueue<V> queue;
+
+  private final ValueStrength strength;
+
+  private final int maximumSize;
+
+  /**
+   * The values in the order of insertion, only kept when the cache is bounded, it may contain
+   * stale references that are no longer in the map, which are skipped when polled.
+   */
+  private final Queue<ValueReference<K, V>> insertionOrder;
+
+  private final AtomicInteger insertionOrderLength;
+
+  private final LongAdder hits;
+
+  private final LongAdder misses;
+
+  private final LongAdder evictions;
+
+  private ReferenceCache(ValueStrength strength, int maximumSize) {
+
+    this.map = new ConcurrentHashMap<>();
+    this.queue = new ReferenceQueue<>();
+    this.strength = strength;
+    this.maximumSize = maximumSize;
+    this.insertionOrder = new ConcurrentLinkedQueue<>();
+    this.insertionOrderLength = new AtomicInteger();
+    this.hits = new LongAdder();
+    this.misses = new LongAdder();
+    this.evictions = new LongAdder();
+  }
+
+  /**
+   * The method returns the value cached with the {@code key}, and counts a hit or a miss.
+   *
+   * @param key the key, cannot be {@code null} .
+   * @return the cached value, or {@code null} if there is none, or it has been reclaimed.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code key} is
+   *                                                                    {@code null} .
+   */
+  public V get(K key) {
+
+    Param.notNull(key, "key cannot be null");
+
+    ValueReference<K, V> reference = map.get(key);
+    V value = reference == null ? null : reference.get();
+    if (value == null) {
+      misses.increment();
+    } else {
+      hits.increment();
+    }
+    return value;
+  }
+
+  /**
+   * The method returns the value cached with the {@code key}, or computes it with the
+   * {@code loader} and caches it, if there is none. The {@code loader} is called at most once
+   * per missing key, while the other threads asking for the same key wait.
+   * <p>
+   * The {@code loader} runs inside the atomic update of the underlying map, so it should be short
+   * and free of side effects, and it must not access this cache: a recursive update fails with an
+   * {@link IllegalStateException}, or may deadlock, depending on the JDK.
+   *
+   * @param key    the key, cannot be {@code null} .
+   * @param loader the function that computes the missing value, cannot be {@code null}, or return
+   *               {@code null} .
+   * @return the cached or computed value.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if any of the parameters is
+   *                                                                    {@code null}, or the
+   *                                                                    {@code loader} returns
+   *                                                                    {@code null} .
+   */
+  public V get(K key, Function<? super K, ? extends V> loader) {
+
+    Param.notNull(key, "key cannot be null");
+    Param.notNull(loader, "loader cannot be null");
+
+    ValueReference<K, V> reference = map.get(key);
+    V value = reference == null ? null : reference.get();
+    if (value != null) {
+      hits.increment();
+      return value;
+    }
+
+    // the value is kept strongly reachable by the array until it is returned, the second
+    // element is the reference of the loaded value, if it has been loaded
+    Object[] result = new Object[2];
+    map.compute(key, (k, current) -> {
+      V existing = current == null ? null : current.get();
+      if (existing != null) {
+        result[0] = existing;
+        return current;
+      }
+      V loaded = loader.apply(k);
+      Param.notNull(loaded, "loader cannot return null");
+      ValueReference<K, V> created = newReference(k, loaded);
+      result[0] = loaded;
+      result[1] = created;
+      return created;
+    });
+    if (result[1] == null) {
+      hits.increment();
+    } else {
+      misses.increment();
+      @SuppressWarnings("unchecked")
+      ValueReference<K, V> created = (ValueReference<K, V>) result[1];
+      afterWrite(created);
+    }
+    @SuppressWarnings("unchecked")
+    V loaded = (V) result[0];
+    return loaded;
+  }
+
+  /**
+   * Caches the {@code value} with the {@code key}, replacing the existing one, if any.
+   *
+   * @param key   the key, cannot be {@code null} .
+   * @param value the value, cannot be {@code null} .
+   * @throws org.raistlic.common.precondition.InvalidParameterException if any of the parameters is
+   *                                                                    {@code null} .
+   */
+  public void put(K key, V value) {
+
+    Param.notNull(key, "key cannot be null");
+    Param.notNull(value, "value cannot be null");
+
+    ValueReference<K, V> reference = newReference(key, value);
+    map.put(key, reference);
+    afterWrite(reference);
+  }
+
+  /**
+   * Removes the value cached with the {@code key}, if any.
+   *
+   * @param key the key, cannot be {@code null} .
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code key} is
+   *                                                                    {@code null} .
+   */
+  public void invalidate(K key) {
+
+    Param.notNull(key, "key cannot be null");
+
+    map.remove(key);
+    cleanUp();
+  }
+
+  /**
+   * The method returns the number of entries in the cache, including the ones whose values have
+   * been reclaimed, but not yet cleaned up.
+   *
+   * @return the number of entries.
+   */
+  public int size() {
+
+    return map.size();
+  }
+
+  /**
+   * Removes the entries whose values have been reclaimed by the garbage collector.
+   */
+  @SuppressWarnings("unchecked")
+  public void cleanUp() {
+
+    for (Reference<? extends V> polled = queue.poll(); polled != null; polled = queue.poll()) {
+      ValueReference<K, V> reference = (ValueReference<K, V>) polled;
+      if (map.remove(reference.key(), reference)) {
+        evictions.increment();
+      }
+    }
+  }
+
+  /**
+   * The method returns a snapshot of the counters of the cache.
+   *
+   * @return the counters.
+   */
+  public CacheStats stats() {
+
+    return new CacheStats(hits.sum(), misses.sum(), evictions.sum());
+  }
+
+  private ValueReference<K, V> newReference(K key, V value) {
+
+    return strength == ValueStrength.WEAK
+        ? new WeakValueReference<>(key, value, queue)
+        : new SoftValueReference<>(key, value, queue);
+  }
+
+  /**
+   * Records the {@code written} reference in the insertion order, after it is in the map, so that
+   * the compaction below never drops it as stale, and evicts the oldest entries over the bound.
+   */
+  private void afterWrite(ValueReference<K, V> written) {
+
+    cleanUp();
+    if (maximumSize == Integer.MAX_VALUE) {
+      return;
+    }
+    insertionOrder.add(written);
+    insertionOrderLength.incrementAndGet();
+    while (map.size() > maximumSize) {
+      ValueReference<K, V> oldest = pollInsertionOrder();
+      if (oldest == null) {
+        break;
+      }
+      if (map.remove(oldest.key(), oldest)) {
+        evictions.increment();
+      }
+    }
+    // replaced and invalidated entries leave stale references behind, drop them in place when
+    // they are too many, so that the live ones keep their order
+    if (insertionOrderLength.get() > 2 * maximumSize + 16) {
+      insertionOrder.removeIf(reference -> {
+        if (map.get(reference.key()) == reference) {
+          return false;
+        }
+        insertionOrderLength.decrementAndGet();
+        return true;
+      });
+    }
+  }
+
+  private ValueReference<K, V> pollInsertionOrder() {
+
+    ValueReference<K, V> result = insertionOrder.poll();
+    if (result != null) {
+      insertionOrderLength.decrementAndGet();
+    }
+    return result;
+  }
+
+  private interface ValueReference<K, V> {
+
+    K key();
+
+    V get();
+  }
+
+  private static final class WeakValueReference<K, V> extends WeakReference<V> implements ValueReference<K, V> {
+
+    private final K key;
+
+    private WeakValueReference(K key, V value, ReferenceQueue<? super V> queue) {
+
+      super(value, queue);
+      this.key = key;
+    }
+
+    @Override
+    public K key() {
+
+      return key;
+    }
+  }
+
+  private static final class SoftValueReference<K, V> extends SoftReference<V> implements ValueReference<K, V> {
+
+    private final K key;
+
+    private SoftValueReference(K key, V value, ReferenceQueue<? super V> queue) {
+
+      super(value, queue);
+      this.key = key;
+    }
+
+    @Override
+    public K key() {
+
+      return key;
+    }
+  }
+
+  /**
+   * The builder of {@link ReferenceCache} .
+   *
+   * @param <K> the key type.
+   * @param <V> the value type.
+   */
+  public static final class Builder<K, V> implements ObjectBuilder<ReferenceCache<K, V>> {
+
+    private ValueStrength strength = ValueStrength.SOFT;
+
+    private int maximumSize = Integer.MAX_VALUE;
+
+    private Builder() {
+    }
+
+    /**
+     * Sets the strength of the references to the cached values.
+     *
+     * @param strength the strength, cannot be {@code null} .
+     * @return the builder itself.
+     * @throws org.raistlic.common.precondition.InvalidParameterException if {@code strength} is
+     *                                                                    {@code null} .
+     */
+    public Builder<K, V> valueStrength(ValueStrength strength) {
+
+      Param.notNull(strength, "strength cannot be null");
+
+      this.strength = strength;
+      return this;
+    }
+
+    /**
+     * Bounds the number of entries in the cache.
+     *
+     * @param maximumSize the maximum number of entries, must be greater than {@code 0} .
+     * @return the builder itself.
+     * @throws org.raistlic.common.precondition.InvalidParameterException if {@code maximumSize} is
+     *                                                                    less than {@code 1} .
+     */
+    public Builder<K, V> maximumSize(int maximumSize) {
+
+      Param.isTrue(maximumSize > 0, "maximumSize must be greater than 0");
+
+      this.maximumSize = maximumSize;
+      return this;
+    }
+
+    @Override
+    public ReferenceCache<K, V> build() {
+
+      return new ReferenceCache<>(strength, maximumSize);
+    }
+  }
+}
@@ -0,0 +1,758 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+import org.raistlic.common.precondition.Param;
+import org.raistlic.common.precondition.Precondition;
+import org.raistlic.common.util.ObjectBuilder;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * A concurrent cache bounded by the number, or the total weight, of its entries, that evicts with
+ * the W-TinyLFU policy:
+ * <ul>
+ * <li>a new entry enters a small LRU "window" (1% of the capacity), which absorbs bursts of
+ * recent entries;</li>
+ * <li>an entry leaving the window is a candidate to the main space, it is admitted only if its
+ * access frequency, estimated by a {@link FrequencySketch}, is higher than the one of the entry
+ * it would evict, so one-off entries (e.g. of a scan) do not flush the popular ones;</li>
+ * <li>the main space is a segmented LRU, the entries accessed again are promoted from the
+ * "probation" segment to the "protected" one (80% of the main space).</li>
+ * </ul>
+ * The entries are stored in a {@link ConcurrentHashMap}, the reads and writes do not update the
+ * policy directly: the reads are recorded in striped, lossy ring buffers, the writes in a queue,
+ * and both are replayed on the policy in batches, by whichever thread gets the policy lock, so
+ * the cost of the maintenance is amortized, and the readers never block.
+ * <p>
+ * The size bound is therefore approximate: the cache may exceed it briefly, until the next
+ * maintenance, see also {@link #cleanUp()} . The class is thread safe.
+ *
+ * @param <K> the key type.
+ * @param <V> the value type.
+ */
+public final class TinyLfuCache<K, V> {
+
+  /**
+   * Exports a builder of the cache, either {@link Builder#maximumSize(long)} or
+   * {@link Builder#maximumWeight(long, ToIntBiFunction)} must be set.
+   *
+   * @param <K> the key type.
+   * @param <V> the value type.
+   * @return the builder.
+   */
+  public static <K, V> Builder<K, V> builder() {
+
+    return new Builder<>();
+  }
+
+  private static final int WINDOW_PERCENT = 1;
+
+  private static final int PROTECTED_PERCENT = 80;
+
+  private final ConcurrentHashMap<K, Node<K, V>> data;
+
+  private final ToIntBiFunction<? super K, ? super V> weigher;
+
+  private final long maximum;
+
+  private final ReadBuffer<Node<K, V>> readBuffer;
+
+  private final Queue<Runnable> writeBuffer;
+
+  private final ReentrantLock evictionLock;
+
+  private final LongAdder hits;
+
+  private final LongAdder misses;
+
+  private final LongAdder evictions;
+
+  // the policy state below is guarded by the evictionLock
+
+  private final FrequencySketch sketch;
+
+  private final AccessOrderDeque<K, V> window;
+
+  private final AccessOrderDeque<K, V> probation;
+
+  private final AccessOrderDeque<K, V> protectedSegment;
+
+  private final long windowMaximum;
+
+  private final long protectedMaximum;
+
+  private long weightedSize;
+
+  private long windowWeightedSize;
+
+  private long protectedWeightedSize;
+
+  private TinyLfuCache(long maximum, ToIntBiFunction<? super K, ? super V> weigher, long expectedSize) {
+
+    this.data = new ConcurrentHashMap<>();
+    this.weigher = weigher;
+    this.maximum = maximum;
+    this.readBuffer = new ReadBuffer<>();
+    this.writeBuffer = new ConcurrentLinkedQueue<>();
+    this.evictionLock = new ReentrantLock();
+    this.hits = new LongAdder();
+    this.misses = new LongAdder();
+    this.evictions = new LongAdder();
+
+    this.sketch = new FrequencySketch(expectedSize);
+    this.window = new AccessOrderDeque<>();
+    this.probation = new AccessOrderDeque<>();
+    this.protectedSegment = new AccessOrderDeque<>();
+    this.windowMaximum = Math.max(1L, maximum * WINDOW_PERCENT / 100);
+    this.protectedMaximum = (maximum - windowMaximum) * PROTECTED_PERCENT / 100;
+  }
+
+  /**
+   * The method returns the value cached with the {@code key}, and counts a hit or a miss.
+   *
+   * @param key the key, cannot be {@code null} .
+   * @return the cached value, or {@code null} if there is none.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code key} is
+   *                                                                    {@code null} .
+   */
+  public V get(K key) {
+
+    Param.notNull(key, "key cannot be null");
+
+    Node<K, V> node = data.get(key);
+    if (node == null) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    afterRead(node);
+    return node.value;
+  }
+
+  /**
+   * The method returns the value cached with the {@code key}, or computes it with the
+   * {@code loader} and caches it, if there is none. The {@code loader} is called at most once
+   * per missing key, while the other threads asking for the same key wait.
+   * <p>
+   * The {@code loader} runs inside the atomic update of the underlying map, so it should be short
+   * and free of side effects, and it must not access this cache: a recursive update fails with an
+   * {@link IllegalStateException}, or may deadlock, depending on the JDK.
+   *
+   * @param key    the key, cannot be {@code null} .
+   * @param loader the function that computes the missing value, cannot be {@code null}, or return
+   *               {@code null} .
+   * @return the cached or computed value.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if any of the parameters is
+   *                                                                    {@code null}, or the
+   *                                                                    {@code loader} returns
+   *                                                                    {@code null} .
+   */
+  public V get(K key, Function<? super K, ? extends V> loader) {
+
+    Param.notNull(key, "key cannot be null");
+    Param.notNull(loader, "loader cannot be null");
+
+    Node<K, V> node = data.get(key);
+    if (node != null) {
+      hits.increment();
+      afterRead(node);
+      return node.value;
+    }
+
+    boolean[] loaded = new boolean[1];
+    node = data.computeIfAbsent(key, k -> {
+      V value = loader.apply(k);
+      Param.notNull(value, "loader cannot return null");
+      loaded[0] = true;
+      return new Node<>(k, value, weigh(k, value));
+    });
+    if (loaded[0]) {
+      misses.increment();
+      afterWrite(new AddTask(node, node.weight));
+    } else {
+      hits.increment();
+      afterRead(node);
+    }
+    return node.value;
+  }
+
+  /**
+   * Caches the {@code value} with the {@code key}, replacing the existing one, if any.
+   *
+   * @param key   the key, cannot be {@code null} .
+   * @param value the value, cannot be {@code null} .
+   * @throws org.raistlic.common.precondition.InvalidParameterException if any of the parameters is
+   *                                                                    {@code null} .
+   */
+  public void put(K key, V value) {
+
+    Param.notNull(key, "key cannot be null");
+    Param.notNull(value, "value cannot be null");
+
+    int weight = weigh(key, value);
+    Runnable[] task = new Runnable[1];
+    data.compute(key, (k, existing) -> {
+      if (existing == null) {
+        Node<K, V> created = new Node<>(k, value, weight);
+        task[0] = new AddTask(created, weight);
+        return created;
+      }
+      task[0] = new UpdateTask(existing, weight - existing.weight);
+      existing.value = value;
+      existing.weight = weight;
+      return existing;
+    });
+    afterWrite(task[0]);
+  }
+
+  /**
+   * Removes the value cached with the {@code key}, if any.
+   *
+   * @param key the key, cannot be {@code null} .
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code key} is
+   *                                                                    {@code null} .
+   */
+  public void invalidate(K key) {
+
+    Param.notNull(key, "key cannot be null");
+
+    Node<K, V> node = data.remove(key);
+    if (node != null) {
+      node.retired = true;
+      afterWrite(new RemoveTask(node));
+    }
+  }
+
+  /**
+   * The method returns the number of entries in the cache, which may briefly exceed the bound,
+   * until the pending maintenance is done.
+   *
+   * @return the number of entries.
+   */
+  public int size() {
+
+    return data.size();
+  }
+
+  /**
+   * Performs the pending maintenance, i.e. replays the buffered reads and writes on the policy,
+   * and evicts the entries beyond the bound.
+   */
+  public void cleanUp() {
+
+    evictionLock.lock();
+    try {
+      maintenance();
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  /**
+   * The method returns a snapshot of the counters of the cache.
+   *
+   * @return the counters.
+   */
+  public CacheStats stats() {
+
+    return new CacheStats(hits.sum(), misses.sum(), evictions.sum());
+  }
+
+  private int weigh(K key, V value) {
+
+    int weight = weigher.applyAsInt(key, value);
+    Param.isTrue(weight >= 0, "weigher cannot return a negative weight");
+    return weight;
+  }
+
+  private void afterRead(Node<K, V> node) {
+
+    if (readBuffer.offer(node)) {
+      tryMaintenance();
+    }
+  }
+
+  private void afterWrite(Runnable task) {
+
+    writeBuffer.add(task);
+    tryMaintenance();
+  }
+
+  /**
+   * Does the maintenance if the policy lock is free, otherwise the lock holder picks up the
+   * pending writes, as it checks the write buffer again after releasing the lock.
+   */
+  private void tryMaintenance() {
+
+    do {
+      if (!evictionLock.tryLock()) {
+        return;
+      }
+      try {
+        maintenance();
+      } finally {
+        evictionLock.unlock();
+      }
+    } while (!writeBuffer.isEmpty());
+  }
+
+  private void maintenance() {
+
+    readBuffer.drainTo(this::onAccess);
+    for (Runnable task = writeBuffer.poll(); task != null; task = writeBuffer.poll()) {
+      task.run();
+    }
+    evictEntries();
+  }
+
+  private void onAccess(Node<K, V> node) {
+
+    sketch.increment(node.key);
+    if (node.queue == Node.WINDOW) {
+      window.moveToBack(node);
+    } else if (node.queue == Node.PROBATION) {
+      probation.remove(node);
+      protectedSegment.addLast(node);
+      node.queue = Node.PROTECTED;
+      protectedWeightedSize += node.policyWeight;
+      demoteFromProtected();
+    } else if (node.queue == Node.PROTECTED) {
+      protectedSegment.moveToBack(node);
+    }
+  }
+
+  private void demoteFromProtected() {
+
+    while (protectedWeightedSize > protectedMaximum) {
+      Node<K, V> demoted = protectedSegment.pollFirst();
+      if (demoted == null) {
+        return;
+      }
+      protectedWeightedSize -= demoted.policyWeight;
+      probation.addLast(demoted);
+      demoted.queue = Node.PROBATION;
+    }
+  }
+
+  private void evictEntries() {
+
+    // the entries leaving the window are appended to the probation segment as candidates
+    Node<K, V> candidate = null;
+    while (windowWeightedSize > windowMaximum) {
+      Node<K, V> node = window.pollFirst();
+      if (node == null) {
+        break;
+      }
+      windowWeightedSize -= node.policyWeight;
+      probation.addLast(node);
+      node.queue = Node.PROBATION;
+      if (candidate == null) {
+        candidate = node;
+      }
+    }
+
+    // each candidate competes with the least recently used entry of the probation segment
+    while (weightedSize > maximum) {
+      Node<K, V> victim = probation.peekFirst();
+      if (victim == null) {
+        victim = protectedSegment.peekFirst();
+      }
+      if (victim == null) {
+        victim = window.peekFirst();
+      }
+      if (victim == null) {
+        return;
+      }
+      if (candidate == null || candidate == victim || candidate.queue != Node.PROBATION) {
+        if (candidate == victim) {
+          candidate = null;
+        }
+        evict(victim);
+      } else if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+        evict(victim);
+      } else {
+        Node<K, V> rejected = candidate;
+        candidate = candidate.next;
+        evict(rejected);
+      }
+    }
+  }
+
+  private void evict(Node<K, V> node) {
+
+    if (data.remove(node.key, node)) {
+      evictions.increment();
+    }
+    node.retired = true;
+    unlink(node);
+  }
+
+  private void link(Node<K, V> node) {
+
+    window.addLast(node);
+    node.queue = Node.WINDOW;
+    weightedSize += node.policyWeight;
+    windowWeightedSize += node.policyWeight;
+  }
+
+  private void unlink(Node<K, V> node) {
+
+    switch (node.queue) {
+      case Node.WINDOW:
+        window.remove(node);
+        windowWeightedSize -= node.policyWeight;
+        break;
+      case Node.PROBATION:
+        probation.remove(node);
+        break;
+      case Node.PROTECTED:
+        protectedSegment.remove(node);
+        protectedWeightedSize -= node.policyWeight;
+        break;
+      default:
+        return;
+    }
+    weightedSize -= node.policyWeight;
+    node.queue = Node.NONE;
+  }
+
+  /**
+   * The write tasks of the same entry may be replayed out of order, as they are queued after the
+   * map is updated, so the weight changes are additive, and a retired entry is never linked.
+   */
+  private final class AddTask implements Runnable {
+
+    private final Node<K, V> node;
+
+    private final int weight;
+
+    private AddTask(Node<K, V> node, int weight) {
+
+      this.node = node;
+      this.weight = weight;
+    }
+
+    @Override
+    public void run() {
+
+      node.policyWeight += weight;
+      if (node.retired) {
+        return;
+      }
+      // the size overshoots the bound until the eviction, growing against it would reallocate the
+      // sketch, and drop all the frequency history, once the cache is full
+      sketch.ensureCapacity(Math.min(data.size(), maximum));
+      sketch.increment(node.key);
+      link(node);
+    }
+  }
+
+  private final class UpdateTask implements Runnable {
+
+    private final Node<K, V> node;
+
+    private final int weightDifference;
+
+    private UpdateTask(Node<K, V> node, int weightDifference) {
+
+      this.node = node;
+      this.weightDifference = weightDifference;
+    }
+
+    @Override
+    public void run() {
+
+      node.policyWeight += weightDifference;
+      if (node.queue == Node.NONE) {
+        return;
+      }
+      weightedSize += weightDifference;
+      if (node.queue == Node.WINDOW) {
+        windowWeightedSize += weightDifference;
+      } else if (node.queue == Node.PROTECTED) {
+        protectedWeightedSize += weightDifference;
+      }
+      onAccess(node);
+    }
+  }
+
+  private final class RemoveTask implements Runnable {
+
+    private final Node<K, V> node;
+
+    private RemoveTask(Node<K, V> node) {
+
+      this.node = node;
+    }
+
+    @Override
+    public void run() {
+
+      unlink(node);
+    }
+  }
+
+  private static final class Node<K, V> {
+
+    private static final byte NONE = 0;
+
+    private static final byte WINDOW = 1;
+
+    private static final byte PROBATION = 2;
+
+    private static final byte PROTECTED = 3;
+
+    private final K key;
+
+    private volatile V value;
+
+    /**
+     * The current weight, written under the lock of the map entry.
+     */
+    private int weight;
+
+    private volatile boolean retired;
+
+    // the fields below are guarded by the evictionLock
+
+    private int policyWeight;
+
+    private byte queue;
+
+    private Node<K, V> previous;
+
+    private Node<K, V> next;
+
+    private Node(K key, V value, int weight) {
+
+      this.key = key;
+      this.value = value;
+      this.weight = weight;
+    }
+  }
+
+  /**
+   * A doubly linked list of nodes in access order, from the least recently used one, the links
+   * are the fields of the nodes, so a node is in at most one deque.
+   */
+  private static final class AccessOrderDeque<K, V> {
+
+    private Node<K, V> first;
+
+    private Node<K, V> last;
+
+    private Node<K, V> peekFirst() {
+
+      return first;
+    }
+
+    private Node<K, V> pollFirst() {
+
+      Node<K, V> result = first;
+      if (result != null) {
+        remove(result);
+      }
+      return result;
+    }
+
+    private void addLast(Node<K, V> node) {
+
+      node.previous = last;
+      node.next = null;
+      if (last == null) {
+        first = node;
+      } else {
+        last.next = node;
+      }
+      last = node;
+    }
+
+    private void remove(Node<K, V> node) {
+
+      if (node.previous == null) {
+        first = node.next;
+      } else {
+        node.previous.next = node.next;
+      }
+      if (node.next == null) {
+        last = node.previous;
+      } else {
+        node.next.previous = node.previous;
+      }
+      node.previous = null;
+      node.next = null;
+    }
+
+    private void moveToBack(Node<K, V> node) {
+
+      if (node != last) {
+        remove(node);
+        addLast(node);
+      }
+    }
+  }
+
+  /**
+   * Striped, lossy ring buffers of the read nodes: a thread records into the stripe picked by its
+   * id, and a record is simply dropped when the stripe is full, or contended, which costs only a
+   * little accuracy of the policy.
+   */
+  private static final class ReadBuffer<E> {
+
+    private static final int STRIPE_LENGTH = 16;
+
+    private static final int STRIPE_MASK = STRIPE_LENGTH - 1;
+
+    private final AtomicReferenceArray<E>[] stripes;
+
+    private final AtomicLong[] writeCounts;
+
+    // the read counts are written only by the drainer, under the policy lock
+    private final AtomicLong[] readCounts;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private ReadBuffer() {
+
+      int count = Integer.highestOneBit(Math.min(64, 4 * Runtime.getRuntime().availableProcessors()) * 2 - 1);
+      this.stripes = new AtomicReferenceArray[count];
+      this.writeCounts = new AtomicLong[count];
+      this.readCounts = new AtomicLong[count];
+      for (int i = 0; i < count; i++) {
+        stripes[i] = new AtomicReferenceArray<>(STRIPE_LENGTH);
+        writeCounts[i] = new AtomicLong();
+        readCounts[i] = new AtomicLong();
+      }
+    }
+
+    /**
+     * Records the {@code element}, returns {@code true} if the stripe is full and should be
+     * drained.
+     */
+    private boolean offer(E element) {
+
+      int stripe = PrimitiveHashing.mix(Thread.currentThread().getId()) & (stripes.length - 1);
+      long head = readCounts[stripe].get();
+      long tail = writeCounts[stripe].get();
+      if (tail - head >= STRIPE_LENGTH) {
+        return true;
+      }
+      if (writeCounts[stripe].compareAndSet(tail, tail + 1)) {
+        stripes[stripe].lazySet((int) tail & STRIPE_MASK, element);
+        return tail + 1 - head >= STRIPE_LENGTH;
+      }
+      return false;
+    }
+
+    private void drainTo(Consumer<? super E> consumer) {
+
+      for (int stripe = 0; stripe < stripes.length; stripe++) {
+        AtomicReferenceArray<E> buffer = stripes[stripe];
+        long head = readCounts[stripe].get();
+        long tail = writeCounts[stripe].get();
+        for (; head < tail; head++) {
+          int index = (int) head & STRIPE_MASK;
+          E element = buffer.get(index);
+          if (element == null) {
+            // the slot is claimed, but the element is not published yet
+            break;
+          }
+          buffer.lazySet(index, null);
+          consumer.accept(element);
+        }
+        readCounts[stripe].lazySet(head);
+      }
+    }
+  }
+
+  /**
+   * The builder of {@link TinyLfuCache} .
+   *
+   * @param <K> the key type.
+   * @param <V> the value type.
+   */
+  public static final class Builder<K, V> implements ObjectBuilder<TinyLfuCache<K, V>> {
+
+    private long maximum = -1L;
+
+    private ToIntBiFunction<? super K, ? super V> weigher;
+
+    private Builder() {
+    }
+
+    /**
+     * Bounds the number of entries in the cache.
+     *
+     * @param maximumSize the maximum number of entries, must be greater than {@code 0} .
+     * @return the builder itself.
+     * @throws org.raistlic.common.precondition.InvalidParameterException if {@code maximumSize} is
+     *                                                                    less than {@code 1} .
+     */
+    public Builder<K, V> maximumSize(long maximumSize) {
+
+      Param.isTrue(maximumSize > 0L, "maximumSize must be greater than 0");
+
+      this.maximum = maximumSize;
+      this.weigher = (key, value) -> 1;
+      return this;
+    }
+
+    /**
+     * Bounds the total weight of the entries in the cache.
+     *
+     * @param maximumWeight the maximum total weight, must be greater than {@code 0} .
+     * @param weigher       the function that computes the weight of an entry, cannot be
+     *                      {@code null}, or return a negative weight.
+     * @return the builder itself.
+     * @throws org.raistlic.common.precondition.InvalidParameterException if {@code maximumWeight}
+     *                                                                    is less than {@code 1},
+     *                                                                    or {@code weigher} is
+     *                                                                    {@code null} .
+     */
+    public Builder<K, V> maximumWeight(long maximumWeight, ToIntBiFunction<? super K, ? super V> weigher) {
+
+      Param.isTrue(maximumWeight > 0L, "maximumWeight must be greater than 0");
+      Param.notNull(weigher, "weigher cannot be null");
+
+      this.maximum = maximumWeight;
+      this.weigher = weigher;
+      return this;
+    }
+
+    /**
+     * @throws org.raistlic.common.precondition.InvalidContextException if neither the maximum size
+     *                                                                  nor the maximum weight is
+     *                                                                  set.
+     */
+    @Override
+    public TinyLfuCache<K, V> build() {
+
+      Precondition.assertContext(maximum > 0L, "either maximumSize or maximumWeight must be set");
+
+      return new TinyLfuCache<>(maximum, weigher, Math.min(maximum, 1L << 16));
+    }
+  }
+}
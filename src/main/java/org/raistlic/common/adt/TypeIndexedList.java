@@ -0,0 +1,255 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+import org.raistlic.common.precondition.Param;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A thread safe, ordered set of elements that is queried by type, e.g. listeners of different
+ * listener interfaces, intended to replace {@link MultiTypeList} on hot paths.
+ * <p>
+ * The elements are kept in buckets by their concrete class, and the whole state is published
+ * copy-on-write through a {@code volatile} field, so:
+ * <ul>
+ * <li>{@link #getList(Class)} is lock free: the list of a queried type is computed once per state
+ * by merging (in insertion order) only the buckets of the matching concrete classes, and is then
+ * memoized until the next modification;</li>
+ * <li>a modification copies only the bucket of the element's concrete class, and the (small)
+ * map of buckets, under a lock that is shared by the writers only.</li>
+ * </ul>
+ * The returned lists are unmodifiable snapshots, they are not affected by later modifications.
+ *
+ * @param <B> the base type of the elements.
+ */
+public final class TypeIndexedList<B> {
+
+  public static <B> TypeIndexedList<B> newInstance() {
+
+    return new TypeIndexedList<>();
+  }
+
+  private final Object writeLock;
+
+  private volatile State<B> state;
+
+  private TypeIndexedList() {
+
+    this.writeLock = new Object();
+    this.state = new State<>(Collections.emptyMap(), 0L);
+  }
+
+  /**
+   * Adds the {@code element} to the end of the list, if the element is already in the list, it is
+   * moved to the end.
+   *
+   * @param element the element to add, cannot be {@code null} .
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code element} is
+   *                                                                    {@code null} .
+   */
+  public void add(B element) {
+
+    Param.notNull(element, "element cannot be null");
+
+    synchronized (writeLock) {
+      State<B> current = state;
+      Class<?> type = element.getClass();
+      Entry<?>[] bucket = without(current.buckets.get(type), element);
+      Entry<?>[] updated = Arrays.copyOf(bucket, bucket.length + 1);
+      updated[bucket.length] = new Entry<>(current.nextSequence, element);
+
+      Map<Class<?>, Entry<?>[]> buckets = new HashMap<>(current.buckets);
+      buckets.put(type, updated);
+      state = new State<>(buckets, current.nextSequence + 1);
+    }
+  }
+
+  /**
+   * Removes the {@code element} from the list.
+   *
+   * @param element the element to remove, cannot be {@code null} .
+   * @return {@code true} if the element was in the list.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code element} is
+   *                                                                    {@code null} .
+   */
+  public boolean remove(B element) {
+
+    Param.notNull(element, "element cannot be null");
+
+    synchronized (writeLock) {
+      State<B> current = state;
+      Class<?> type = element.getClass();
+      Entry<?>[] bucket = current.buckets.get(type);
+      Entry<?>[] updated = without(bucket, element);
+      if (bucket == null || updated.length == bucket.length) {
+        return false;
+      }
+      Map<Class<?>, Entry<?>[]> buckets = new HashMap<>(current.buckets);
+      if (updated.length == 0) {
+        buckets.remove(type);
+      } else {
+        buckets.put(type, updated);
+      }
+      state = new State<>(buckets, current.nextSequence);
+      return true;
+    }
+  }
+
+  /**
+   * Removes all the elements that are instances of the {@code type} .
+   *
+   * @param type the type of the elements to remove, cannot be {@code null} .
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code type} is
+   *                                                                    {@code null} .
+   */
+  public void clearList(Class<? extends B> type) {
+
+    Param.notNull(type, "type cannot be null");
+
+    synchronized (writeLock) {
+      State<B> current = state;
+      Map<Class<?>, Entry<?>[]> buckets = new HashMap<>(current.buckets);
+      buckets.keySet().removeIf(type::isAssignableFrom);
+      state = new State<>(buckets, current.nextSequence);
+    }
+  }
+
+  /**
+   * The method returns the elements that are instances of the {@code type}, in insertion order.
+   *
+   * @param type the type of the elements to query, cannot be {@code null} .
+   * @param <E>  the type of the elements to query.
+   * @return an unmodifiable snapshot of the matching elements.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code type} is
+   *                                                                    {@code null} .
+   */
+  @SuppressWarnings("unchecked")
+  public <E extends B> List<E> getList(Class<E> type) {
+
+    Param.notNull(type, "type cannot be null");
+
+    return (List<E>) state.view(type);
+  }
+
+  /**
+   * The method returns all the elements, in insertion order.
+   *
+   * @return an unmodifiable snapshot of all the elements.
+   */
+  @SuppressWarnings("unchecked")
+  public List<B> getAll() {
+
+    return (List<B>) state.view(Object.class);
+  }
+
+  private static Entry<?>[] without(Entry<?>[] bucket, Object element) {
+
+    if (bucket == null) {
+      return new Entry<?>[0];
+    }
+    for (int i = 0; i < bucket.length; i++) {
+      if (bucket[i].element.equals(element)) {
+        Entry<?>[] result = new Entry<?>[bucket.length - 1];
+        System.arraycopy(bucket, 0, result, 0, i);
+        System.arraycopy(bucket, i + 1, result, i, bucket.length - i - 1);
+        return result;
+      }
+    }
+    return bucket;
+  }
+
+  /**
+   * An immutable state of the list, with the memoized views of the queried types.
+   */
+  private static final class State<B> {
+
+    private final Map<Class<?>, Entry<?>[]> buckets;
+
+    private final long nextSequence;
+
+    private final ConcurrentHashMap<Class<?>, List<?>> views;
+
+    private State(Map<Class<?>, Entry<?>[]> buckets, long nextSequence) {
+
+      this.buckets = buckets;
+      this.nextSequence = nextSequence;
+      this.views = new ConcurrentHashMap<>();
+    }
+
+    private List<?> view(Class<?> type) {
+
+      List<?> result = views.get(type);
+      if (result == null) {
+        result = views.computeIfAbsent(type, this::merge);
+      }
+      return result;
+    }
+
+    /**
+     * Merges the buckets of the concrete classes that are assignable to the {@code type}, by the
+     * sequence numbers of the entries. Each bucket is already in sequence order, so sorting their
+     * concatenation merges the runs, in {@code O(n log k)} for {@code k} matching buckets.
+     */
+    private List<?> merge(Class<?> type) {
+
+      List<Entry<?>[]> matching = new ArrayList<>();
+      int size = 0;
+      for (Map.Entry<Class<?>, Entry<?>[]> bucket : buckets.entrySet()) {
+        if (type.isAssignableFrom(bucket.getKey())) {
+          matching.add(bucket.getValue());
+          size += bucket.getValue().length;
+        }
+      }
+
+      Entry<?>[] entries = new Entry<?>[size];
+      int offset = 0;
+      for (Entry<?>[] bucket : matching) {
+        System.arraycopy(bucket, 0, entries, offset, bucket.length);
+        offset += bucket.length;
+      }
+      if (matching.size() > 1) {
+        Arrays.sort(entries, (a, b) -> Long.compare(a.sequence, b.sequence));
+      }
+
+      List<Object> result = new ArrayList<>(size);
+      for (Entry<?> entry : entries) {
+        result.add(entry.element);
+      }
+      return Collections.unmodifiableList(result);
+    }
+  }
+
+  private static final class Entry<B> {
+
+    private final long sequence;
+
+    private final B element;
+
+    private Entry(long sequence, B element) {
+
+      this.sequence = sequence;
+      this.element = element;
+    }
+  }
+}
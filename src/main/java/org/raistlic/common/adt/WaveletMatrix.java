@@ -0,0 +1,290 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+import org.raistlic.common.precondition.Param;
+
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * An immutable wavelet matrix over a sequence of non-negative {@code int} symbols, which answers
+ * access, rank, select and range quantile queries in {@code O(log sigma)} rank/select operations
+ * on {@link BitMap} s, where {@code sigma} is the largest symbol plus one.
+ * <p>
+ * The matrix keeps one {@link BitMap} of the sequence size per bit of the symbols (instead of one
+ * per symbol): level {@code l} holds the {@code l}-th highest bit of every symbol, after the
+ * sequence has been stably partitioned by the higher bits, with the {@code 0} s first.
+ * <p>
+ * For a list of enum values, use {@code WaveletMatrix.newInstance(list, Enum::ordinal)} .
+ */
+public final class WaveletMatrix {
+
+  /**
+   * Creates the wavelet matrix of the {@code symbols} .
+   *
+   * @param symbols the symbols, cannot be {@code null}, or contain negative values.
+   * @return the created wavelet matrix.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code symbols} is
+   *                                                                    {@code null} or contains
+   *                                                                    negative values.
+   */
+  public static WaveletMatrix newInstance(int[] symbols) {
+
+    Param.notNull(symbols, "symbols cannot be null");
+
+    return new WaveletMatrix(symbols.clone());
+  }
+
+  /**
+   * Creates the wavelet matrix of the symbols of the {@code elements}, mapped by
+   * {@code toSymbol} .
+   *
+   * @param elements the elements, cannot be {@code null} .
+   * @param toSymbol the function that maps an element to its (non-negative) symbol, cannot be
+   *                 {@code null} .
+   * @param <E>      the element type.
+   * @return the created wavelet matrix.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if any of the parameters is
+   *                                                                    {@code null}, or a symbol
+   *                                                                    is negative.
+   */
+  public static <E> WaveletMatrix newInstance(List<E> elements, ToIntFunction<? super E> toSymbol) {
+
+    Param.notNull(elements, "elements cannot be null");
+    Param.notNull(toSymbol, "toSymbol cannot be null");
+
+    int[] symbols = new int[elements.size()];
+    int i = 0;
+    for (E element : elements) {
+      symbols[i++] = toSymbol.applyAsInt(element);
+    }
+    return new WaveletMatrix(symbols);
+  }
+
+  private final int size;
+
+  private final BitMap[] levels;
+
+  /**
+   * {@code zeros[l]} is the number of {@code 0} s in {@code levels[l]} .
+   */
+  private final int[] zeros;
+
+  private WaveletMatrix(int[] symbols) {
+
+    int max = 0;
+    for (int symbol : symbols) {
+      Param.isTrue(symbol >= 0, "symbols cannot be negative");
+      max = Math.max(max, symbol);
+    }
+
+    this.size = symbols.length;
+    this.levels = new BitMap[Math.max(1, Integer.SIZE - Integer.numberOfLeadingZeros(max))];
+    this.zeros = new int[levels.length];
+
+    int[] current = symbols;
+    int[] next = new int[size];
+    for (int l = 0; l < levels.length; l++) {
+      int shift = levels.length - 1 - l;
+      BitMap.Builder builder = BitMap.builder(size);
+      int zeroCount = 0;
+      for (int i = 0; i < size; i++) {
+        if (((current[i] >>> shift) & 1) == 0) {
+          zeroCount++;
+        } else {
+          builder.set(i);
+        }
+      }
+      for (int i = 0, z = 0, o = zeroCount; i < size; i++) {
+        if (((current[i] >>> shift) & 1) == 0) {
+          next[z++] = current[i];
+        } else {
+          next[o++] = current[i];
+        }
+      }
+      levels[l] = builder.build();
+      zeros[l] = zeroCount;
+      int[] swap = current;
+      current = next;
+      next = swap;
+    }
+  }
+
+  /**
+   * The method returns the length of the symbol sequence.
+   *
+   * @return the length of the sequence.
+   */
+  public int size() {
+
+    return size;
+  }
+
+  /**
+   * The method returns the symbol at {@code index} .
+   *
+   * @param index the index of the symbol, must be within the range {@code [0, size())} .
+   * @return the symbol.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code index} is out of
+   *                                                                    range.
+   */
+  public int access(int index) {
+
+    Param.isTrue(index >= 0, "index cannot be less than 0");
+    Param.isTrue(index < size, "index must be less than size");
+
+    int result = 0;
+    for (int l = 0; l < levels.length; l++) {
+      BitMap level = levels[l];
+      if (level.isOne(index)) {
+        result = (result << 1) | 1;
+        index = zeros[l] + level.rank(index);
+      } else {
+        result <<= 1;
+        index -= level.rank(index);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * The method returns the number of occurrences of {@code symbol} before {@code end}, i.e.
+   * within the range {@code [0, end)} .
+   *
+   * @param symbol the symbol to count.
+   * @param end    the end of the range (exclusive), must be within the range {@code [0, size()]} .
+   * @return the number of occurrences.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code end} is out of
+   *                                                                    range.
+   */
+  public int rank(int symbol, int end) {
+
+    Param.isTrue(end >= 0, "end cannot be less than 0");
+    Param.isTrue(end <= size, "end cannot be greater than size");
+
+    if (!isInAlphabet(symbol)) {
+      return 0;
+    }
+    int start = 0;
+    for (int l = 0; l < levels.length; l++) {
+      BitMap level = levels[l];
+      if (bitAt(symbol, l)) {
+        start = zeros[l] + level.rank(start);
+        end = zeros[l] + level.rank(end);
+      } else {
+        start -= level.rank(start);
+        end -= level.rank(end);
+      }
+    }
+    return end - start;
+  }
+
+  /**
+   * The method returns the index of the {@code k}-th (0 based) occurrence of {@code symbol} .
+   *
+   * @param symbol the symbol to search for.
+   * @param k      specifies which occurrence to search for, cannot be less than {@code 0} .
+   * @return the index of the occurrence, or {@code -1} if there are insufficient occurrences.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code k} is less than
+   *                                                                    {@code 0} .
+   */
+  public int select(int symbol, int k) {
+
+    Param.isTrue(k >= 0, "k cannot be less than 0");
+
+    if (!isInAlphabet(symbol)) {
+      return -1;
+    }
+    int start = 0;
+    int end = size;
+    for (int l = 0; l < levels.length; l++) {
+      BitMap level = levels[l];
+      if (bitAt(symbol, l)) {
+        start = zeros[l] + level.rank(start);
+        end = zeros[l] + level.rank(end);
+      } else {
+        start -= level.rank(start);
+        end -= level.rank(end);
+      }
+    }
+    if (k >= end - start) {
+      return -1;
+    }
+
+    int position = start + k;
+    for (int l = levels.length - 1; l >= 0; l--) {
+      BitMap level = levels[l];
+      if (bitAt(symbol, l)) {
+        position = level.selectOne(position - zeros[l]);
+      } else {
+        position = level.selectZero(position);
+      }
+    }
+    return position;
+  }
+
+  /**
+   * The method returns the {@code k}-th (0 based) smallest symbol within the range
+   * {@code [from, to)} .
+   *
+   * @param from the start of the range (inclusive), cannot be less than {@code 0} .
+   * @param to   the end of the range (exclusive), must be within the range
+   *             {@code (from, size()]} .
+   * @param k    the order of the symbol to find, must be within the range {@code [0, to - from)} .
+   * @return the symbol.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if any of the parameters is
+   *                                                                    out of range.
+   */
+  public int quantile(int from, int to, int k) {
+
+    Param.isTrue(from >= 0, "from cannot be less than 0");
+    Param.isTrue(from < to, "from must be less than to");
+    Param.isTrue(to <= size, "to cannot be greater than size");
+    Param.isTrue(k >= 0, "k cannot be less than 0");
+    Param.isTrue(k < to - from, "k must be less than the length of the range");
+
+    int result = 0;
+    for (int l = 0; l < levels.length; l++) {
+      BitMap level = levels[l];
+      int onesBeforeFrom = level.rank(from);
+      int onesBeforeTo = level.rank(to);
+      int zerosInRange = (to - onesBeforeTo) - (from - onesBeforeFrom);
+      if (k < zerosInRange) {
+        result <<= 1;
+        from -= onesBeforeFrom;
+        to -= onesBeforeTo;
+      } else {
+        result = (result << 1) | 1;
+        k -= zerosInRange;
+        from = zeros[l] + onesBeforeFrom;
+        to = zeros[l] + onesBeforeTo;
+      }
+    }
+    return result;
+  }
+
+  private boolean isInAlphabet(int symbol) {
+
+    return symbol >= 0 && (levels.length >= Integer.SIZE - 1 || (symbol >>> levels.length) == 0);
+  }
+
+  private boolean bitAt(int symbol, int level) {
+
+    return ((symbol >>> (levels.length - 1 - level)) & 1) != 0;
+  }
+}
@@ -18,8 +18,13 @@ package org.raistlic.common.adt;
 
 import org.raistlic.common.precondition.Param;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
-import java.util.*;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntConsumer;
 
 /**
  * This class simply encapsulates an array to be used as a cache, which holds
@@ -31,44 +36,100 @@ import java.util.*;
  * The iterator of this class can be used to iterate it, or remove elements
  * from it, removing elements using the iterator will not effect the subsequent
  * elements' positions.
+ * <p>
+ * The class is thread safe: the slots are kept in an {@link AtomicReferenceArray}, reads are
+ * lock free and allocation free, and writes are single compare-and-set operations. The
+ * references cleared by the garbage collector are collected from a {@link ReferenceQueue}, their
+ * slots are emptied, and their indices are reported to the optional reclaim listener, either
+ * when {@link #reap()} is called, or along with the writes.
  */
 public final class WeakArray<E> implements Iterable<E> {
 
-  private final int size;
+  private final AtomicReferenceArray<Slot<E>> slots;
+
+  private final ReferenceQueue<E> queue;
 
-  private final Map<Integer, WeakReference<E>> data;
+  private final IntConsumer reclaimListener;
 
   public WeakArray(int size) {
 
+    this(size, index -> {
+    });
+  }
+
+  /**
+   * Creates an array of {@code size} empty slots, that reports the indices of the slots whose
+   * elements have been garbage collected to the {@code reclaimListener}, on the thread that
+   * reaps them.
+   *
+   * @param size            the size of the array, cannot be less than {@code 0} .
+   * @param reclaimListener the listener of the reclaimed indices, cannot be {@code null} .
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code size} is less
+   *                                                                    than {@code 0}, or
+   *                                                                    {@code reclaimListener}
+   *                                                                    is {@code null} .
+   */
+  public WeakArray(int size, IntConsumer reclaimListener) {
+
     Param.isTrue(size >= 0, "size cannot be less than 0");
+    Param.notNull(reclaimListener, "reclaimListener cannot be null");
 
-    this.size = size;
-    this.data = new HashMap<>(size * 2);
+    this.slots = new AtomicReferenceArray<>(size);
+    this.queue = new ReferenceQueue<>();
+    this.reclaimListener = reclaimListener;
   }
 
   public int length() {
 
-    return size;
+    return slots.length();
   }
 
   public E set(int index, E element) {
 
-    Param.isTrue(index >= 0, "index cannot be less than 0");
-    Param.isTrue(index < size, "index must be less than array size");
+    checkIndex(index);
 
-    E existing = get(index);
-    data.put(index, new WeakReference<>(element));
-    return existing;
+    Slot<E> existing = slots.getAndSet(index, newSlot(index, element));
+    reap();
+    return existing == null ? null : existing.get();
   }
 
   public E get(int index) {
 
-    Param.isTrue(index >= 0, "index cannot be less than 0");
-    Param.isTrue(index < size, "index must be less than array size");
+    checkIndex(index);
 
-    return Optional.ofNullable(data.get(index))
-      .map(WeakReference::get)
-      .orElse(null);
+    Slot<E> slot = slots.get(index);
+    return slot == null ? null : slot.get();
+  }
+
+  /**
+   * Atomically sets the element at {@code index} to {@code update}, if the current element is
+   * {@code expect} (compared by identity, a garbage collected element counts as {@code null}).
+   *
+   * @param index  the index of the element, must be within the range {@code [0, length())} .
+   * @param expect the expected current element.
+   * @param update the new element.
+   * @return {@code true} if the element has been set.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code index} is out of
+   *                                                                    range.
+   */
+  public boolean compareAndSet(int index, E expect, E update) {
+
+    checkIndex(index);
+
+    Slot<E> updateSlot = null;
+    while (true) {
+      Slot<E> current = slots.get(index);
+      if ((current == null ? null : current.get()) != expect) {
+        return false;
+      }
+      if (updateSlot == null && update != null) {
+        updateSlot = newSlot(index, update);
+      }
+      if (slots.compareAndSet(index, current, updateSlot)) {
+        reap();
+        return true;
+      }
+    }
   }
 
   public E remove(int index) {
@@ -76,6 +137,49 @@ public final class WeakArray<E> implements Iterable<E> {
     return set(index, null);
   }
 
+  /**
+   * Empties the slots whose elements have been garbage collected since the last reaping, and
+   * reports their indices to the reclaim listener.
+   *
+   * @return the number of reclaimed slots.
+   */
+  @SuppressWarnings("unchecked")
+  public int reap() {
+
+    int count = 0;
+    for (Reference<? extends E> reference = queue.poll(); reference != null; reference = queue.poll()) {
+      Slot<E> slot = (Slot<E>) reference;
+      // the slot may already have been replaced, in which case there is nothing to reclaim
+      if (slots.compareAndSet(slot.index, slot, null)) {
+        count++;
+        reclaimListener.accept(slot.index);
+      }
+    }
+    return count;
+  }
+
+  private Slot<E> newSlot(int index, E element) {
+
+    return element == null ? null : new Slot<>(index, element, queue);
+  }
+
+  private void checkIndex(int index) {
+
+    Param.isTrue(index >= 0, "index cannot be less than 0");
+    Param.isTrue(index < slots.length(), "index must be less than array size");
+  }
+
+  private static final class Slot<E> extends WeakReference<E> {
+
+    private final int index;
+
+    private Slot(int index, E element, ReferenceQueue<? super E> queue) {
+
+      super(element, queue);
+      this.index = index;
+    }
+  }
+
   @Override
   public Iterator<E> iterator() {
 
@@ -91,7 +195,7 @@ public final class WeakArray<E> implements Iterable<E> {
     @Override
     public boolean hasNext() {
 
-      return index + 1 < size;
+      return index + 1 < length();
     }
 
     @Override
@@ -116,7 +220,7 @@ public final class WeakArray<E> implements Iterable<E> {
       if (removed) {
         throw new IllegalStateException("current element is already removed");
       }
-      if (index >= size) {
+      if (index >= length()) {
         throw new NoSuchElementException();
       }
 
@@ -16,6 +16,7 @@
 
 package org.raistlic.common.assertion;
 
+import org.raistlic.common.adt.TinyLfuCache;
 import org.raistlic.common.precondition.InvalidParameterException;
 import org.raistlic.common.precondition.Precondition;
 import org.raistlic.common.predicate.Predicates;
@@ -197,7 +198,7 @@ final class StringAssertionDefault extends GenericAssertionAbstract<String, Stri
 
     Precondition.assertParam(pattern != null, "'pattern' should not be null, but it is.");
 
-    return matchesPattern(Pattern.compile(pattern));
+    return matchesPattern(PATTERNS.get(pattern, Pattern::compile));
   }
 
   @Override
@@ -205,9 +206,17 @@ final class StringAssertionDefault extends GenericAssertionAbstract<String, Stri
 
     Precondition.assertParam(pattern != null, "'pattern' should not be null, but it is.");
 
-    return matchesPattern(Pattern.compile(pattern), message);
+    return matchesPattern(PATTERNS.get(pattern, Pattern::compile), message);
   }
 
+  /**
+   * The compiled patterns of {@link #matchesPattern(String)}, the same few patterns are typically
+   * checked over and over.
+   */
+  private static final TinyLfuCache<String, Pattern> PATTERNS = TinyLfuCache.<String, Pattern>builder()
+    .maximumSize(256)
+    .build();
+
   private static final Predicate<? super String> IS_EMPTY = StringPredicates.isEmpty();
 
   private static final Predicate<? super String> IS_NOT_EMPTY = Predicates.not(StringPredicates.isEmpty());
@@ -16,6 +16,7 @@
 
 package org.raistlic.common.config.core;
 
+import org.raistlic.common.adt.PersistentHashMap;
 import org.raistlic.common.codec.Encoder;
 import org.raistlic.common.codec.ValueConversionException;
 import org.raistlic.common.config.exception.ConfigValueConvertException;
@@ -31,14 +32,38 @@ import static org.raistlic.common.precondition.Precondition.param;
  */
 class MutableConfigDefault extends AbstractConfig implements MutableConfig {
 
-  private final Map<String, String> map;
+  /**
+   * Replaced on each modification, so that {@link #get()} can wrap the current version as an
+   * immutable snapshot, without copying. The modifications are synchronized on {@code this}, so
+   * that concurrent setters do not lose updates.
+   */
+  private volatile PersistentHashMap<String, String> map;
 
   private final Set<String> keys;
 
   MutableConfigDefault() {
 
-    map = new HashMap<String, String>();
-    keys = Collections.unmodifiableSet(map.keySet());
+    map = PersistentHashMap.empty();
+    keys = new AbstractSet<String>() {
+
+      @Override
+      public Iterator<String> iterator() {
+
+        return map.asMap().keySet().iterator();
+      }
+
+      @Override
+      public int size() {
+
+        return map.size();
+      }
+
+      @Override
+      public boolean contains(Object o) {
+
+        return o instanceof String && map.containsKey(o);
+      }
+    };
   }
 
   private MutableConfig doImportFrom(ConfigSource configSource) {
@@ -76,7 +101,9 @@ class MutableConfigDefault extends AbstractConfig implements MutableConfig {
 
   private void doSetString(String key, String value) {
 
-    map.put(key, value);
+    synchronized (this) {
+      map = map.put(key, value);
+    }
   }
 
   @Override
@@ -204,7 +231,7 @@ class MutableConfigDefault extends AbstractConfig implements MutableConfig {
   @Override
   public Config get() {
 
-    ConfigSource configSource = ConfigSourceFactory.immutableCopyOf(this);
+    ConfigSource configSource = ConfigSourceFactory.wrap(map.asMap());
     return ConfigFactory.wrap(configSource);
   }
 }
@@ -16,12 +16,9 @@
 
 package org.raistlic.common.event;
 
+import org.raistlic.common.adt.PersistentVector;
 import org.raistlic.common.util.ExceptionHandler;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
-
 /**
  * @author Lei CHEN (2014-11-13)
  * @since 1.0
@@ -30,7 +27,10 @@ class EventChannel {
 
   private final String name;
 
-  private final List<EventListenerAdapter> listenerAdapters;
+  /**
+   * Replaced as a whole on each modification, a dispatch iterates the snapshot it read.
+   */
+  private volatile PersistentVector<EventListenerAdapter> listenerAdapters;
 
   private final ExceptionHandler exceptionHandler;
 
@@ -39,7 +39,7 @@ class EventChannel {
     assert exceptionHandler != null : "'exceptionHandler' is null.";
 
     this.name = name;
-    this.listenerAdapters = new CopyOnWriteArrayList<EventListenerAdapter>();
+    this.listenerAdapters = PersistentVector.empty();
     this.exceptionHandler = exceptionHandler;
   }
 
@@ -69,20 +69,18 @@ class EventChannel {
         );
       }
     }
-    listenerAdapters.add(adapter);
+    synchronized (this) {
+
+      listenerAdapters = listenerAdapters.append(adapter);
+    }
   }
 
   void remove(Object listener) {
 
-    List<EventListenerAdapter> toBeRemoved = new ArrayList<EventListenerAdapter>();
-    for (EventListenerAdapter adapter : listenerAdapters) {
-
-      if (adapter.listener().equals(listener)) {
+    synchronized (this) {
 
-        toBeRemoved.add(adapter);
-      }
+      listenerAdapters = listenerAdapters.removeIf(adapter -> adapter.listener().equals(listener));
     }
-    listenerAdapters.removeAll(toBeRemoved);
   }
 
   void dispatch(Event event) {
@@ -16,12 +16,10 @@
 
 package org.raistlic.common.permutation;
 
+import org.raistlic.common.adt.IntObjectHashMap;
 import org.raistlic.common.precondition.Param;
 
 import java.math.BigInteger;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
 
 /**
  * A factorial calculator.
@@ -40,8 +38,10 @@ public class Factorial {
 
     Param.isTrue(number >= 0, "number cannot be less than 0");
 
-    return Optional.ofNullable(cache.get(number))
-      .orElse(calculateAndCache(number));
+    synchronized (cache) {
+      BigInteger result = cache.get(number);
+      return result == null ? calculateAndCache(number) : result;
+    }
   }
 
   private static BigInteger calculateAndCache(int number) {
@@ -54,7 +54,7 @@ public class Factorial {
     return result;
   }
 
-  private static final Map<Integer, BigInteger> cache = new HashMap<>();
+  private static final IntObjectHashMap<BigInteger> cache = new IntObjectHashMap<>();
 
   /*
    * Functionality served via static method, this class is designed not to be 
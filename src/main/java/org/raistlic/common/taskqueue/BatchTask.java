@@ -0,0 +1,38 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.taskqueue;
+
+import java.util.List;
+
+/**
+ * A handler that processes a batch of payloads in one call, for example to write a batch of
+ * records with a single I/O operation; the payloads are submitted one by one with
+ * {@link TaskQueue#schedule(Object, BatchTask)} .
+ *
+ * @param <T> the payload type.
+ */
+public interface BatchTask<T> {
+
+  /**
+   * Processes the {@code batch} of payloads, in their submission order. The list is only valid
+   * during the call, and must not be modified or kept by the handler.
+   *
+   * @param batch the payloads, never {@code null} or empty.
+   * @throws TaskExecutionException when anything goes wrong during the batch processing.
+   */
+  void run(List<T> batch) throws TaskExecutionException;
+}
@@ -22,6 +22,9 @@ import org.raistlic.common.precondition.Precondition;
 import org.raistlic.common.predicate.Predicates;
 import org.raistlic.common.util.ExceptionHandler;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Predicate;
@@ -37,6 +40,11 @@ final class DefaultTaskQueue implements TaskQueue, TaskQueue.Controller {
 
   private final ExceptionHandler exceptionHandler;
 
+  /**
+   * The maximum number of tasks that the queue thread takes from the queue at a time.
+   */
+  private final int batchSize;
+
   private final AtomicBoolean running;
 
   private final Predicate<? super Thread> isNotTaskQueuePredicate;
@@ -46,13 +54,16 @@ final class DefaultTaskQueue implements TaskQueue, TaskQueue.Controller {
   private volatile LinkedBlockingQueue<Runnable> queue;
 
   DefaultTaskQueue(ThreadFactory threadFactory,
-                   ExceptionHandler exceptionHandler) {
+                   ExceptionHandler exceptionHandler,
+                   int batchSize) {
 
     Precondition.param(threadFactory).isNotNull();
     Precondition.param(exceptionHandler).isNotNull();
+    Precondition.param(batchSize).greaterThanOrEqualTo(1);
 
     this.executorService = Executors.newSingleThreadExecutor(threadFactory);
     this.exceptionHandler = exceptionHandler;
+    this.batchSize = batchSize;
     this.queueRunnable = this.new QueueRunnable();
     this.running = new AtomicBoolean(false);
     this.isNotTaskQueuePredicate = Predicates.not(this.new TaskQueueThreadPredicate());
@@ -122,6 +133,15 @@ final class DefaultTaskQueue implements TaskQueue, TaskQueue.Controller {
     return defaultPromise;
   }
 
+  @Override
+  public <T> void schedule(T payload, BatchTask<T> handler) throws InvalidParameterException, InvalidContextException {
+
+    Precondition.param(handler).isNotNull();
+    Precondition.context(running.get()).isTrue();
+
+    queue.offer(new BatchPayload<T>(payload, handler));
+  }
+
   @Override
   public <R> R scheduleAndWait(Task<R> task)
     throws InvalidParameterException,
@@ -185,24 +205,104 @@ final class DefaultTaskQueue implements TaskQueue, TaskQueue.Controller {
 
   private final class QueueRunnable implements Runnable {
 
+    /**
+     * The tasks taken from the queue at a time, only accessed by the queue thread.
+     */
+    private final List<Runnable> batch = new ArrayList<Runnable>();
+
+    /**
+     * The payloads of a coalesced {@link BatchTask} call, only accessed by the queue thread.
+     */
+    private final List<Object> payloads = new ArrayList<Object>();
+
     @Override
     public void run() {
 
       taskQueueThread = Thread.currentThread();
       while (running.get()) {
-        Runnable runnable;
         try {
-          runnable = queue.take();
+          batch.add(queue.take());
         } catch (InterruptedException ex) {
           break;
         }
-        if (running.get()) {
-          runnable.run();
+        if (batchSize > 1) {
+          queue.drainTo(batch, batchSize - 1);
+        }
+        try {
+          runBatch();
+        } finally {
+          batch.clear();
         }
       }
       running.set(false);
       taskQueueThread = null;
     }
+
+    private void runBatch() {
+
+      int size = batch.size();
+      for (int i = 0; i < size && running.get(); ) {
+        Runnable runnable = batch.get(i);
+        if (runnable instanceof BatchPayload) {
+          i = runPayloads(i, size);
+        } else {
+          runnable.run();
+          i++;
+        }
+      }
+    }
+
+    /**
+     * Hands the consecutive payloads of the same handler, starting at {@code from}, to one
+     * {@link BatchTask#run(List)} call, and returns the index after them.
+     */
+    @SuppressWarnings("unchecked")
+    private int runPayloads(int from, int size) {
+
+      BatchTask<Object> handler = ((BatchPayload<Object>) batch.get(from)).handler;
+      int to = from;
+      for (; to < size; to++) {
+        Runnable runnable = batch.get(to);
+        if (!(runnable instanceof BatchPayload) || ((BatchPayload<?>) runnable).handler != handler) {
+          break;
+        }
+        payloads.add(((BatchPayload<?>) runnable).payload);
+      }
+      try {
+        runBatchTask(handler, payloads);
+      } finally {
+        payloads.clear();
+      }
+      return to;
+    }
+  }
+
+  private <T> void runBatchTask(BatchTask<T> handler, List<T> batch) {
+
+    try {
+      handler.run(Collections.unmodifiableList(batch));
+    } catch (Exception ex) {
+      exceptionHandler.exceptionOccur(Thread.currentThread(), ex);
+    }
+  }
+
+  private final class BatchPayload<T> implements Runnable {
+
+    private final T payload;
+
+    private final BatchTask<T> handler;
+
+    private BatchPayload(T payload, BatchTask<T> handler) {
+
+      this.payload = payload;
+      this.handler = handler;
+    }
+
+    @Override
+    public void run() {
+
+      runBatchTask(handler, Collections.singletonList(payload));
+    }
   }
 
   private final class ExceptionFreeTaskWrapper implements Runnable {
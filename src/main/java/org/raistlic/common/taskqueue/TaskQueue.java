@@ -51,6 +51,21 @@ public interface TaskQueue {
    */
   <R> Promise<R> schedule(Task<R> task) throws InvalidParameterException, InvalidContextException;
 
+  /**
+   * The method submits a {@code payload} into the task queue, to be processed by the
+   * {@code handler} . When the queue drains several tasks at a time (see
+   * {@link TaskQueueBuilder#withBatchSize(int)}), the consecutive payloads of the same
+   * {@code handler} instance in a drained batch are coalesced into one
+   * {@link BatchTask#run(java.util.List)} call; otherwise each payload is processed alone.
+   *
+   * @param payload the payload to be processed.
+   * @param handler the handler that processes the payload, cannot be {@code null}.
+   * @param <T>     the payload type.
+   * @throws InvalidParameterException when {@code handler} is {@code null}.
+   * @throws InvalidContextException   if the task queue is not running.
+   */
+  <T> void schedule(T payload, BatchTask<T> handler) throws InvalidParameterException, InvalidContextException;
+
   /**
    * The method submits the {@code task} into the task queue, waits until it's executed,
    * and returns the returned execution result.
@@ -32,4 +32,17 @@ public interface TaskQueueBuilder extends Supplier<TaskQueue.Controller> {
   TaskQueueBuilder withThreadName(String name);
 
   TaskQueueBuilder withExceptionHandler(ExceptionHandler exceptionHandler);
+
+  /**
+   * Sets the maximum number of tasks that the queue thread takes from the queue at a time, the
+   * default is {@code 1} . A larger batch size amortizes the queue synchronization over the
+   * drained tasks under load, and lets consecutive payloads of a {@link BatchTask} be processed in
+   * one call, see {@link TaskQueue#schedule(Object, BatchTask)} .
+   *
+   * @param batchSize the maximum batch size, cannot be less than {@code 1} .
+   * @return the builder itself.
+   * @throws org.raistlic.common.precondition.InvalidParameterException if {@code batchSize} is
+   *                                                                    less than {@code 1} .
+   */
+  TaskQueueBuilder withBatchSize(int batchSize);
 }
@@ -41,6 +41,8 @@ public final class TaskQueues {
 
     private ExceptionHandler exceptionHandler = DefaultTaskQueueExceptionHandler.INSTANCE;
 
+    private int batchSize = 1;
+
     @Override
     public TaskQueueBuilder withThreadAsDaemon(boolean daemon) {
 
@@ -69,13 +71,22 @@ public final class TaskQueues {
       return this;
     }
 
+    @Override
+    public TaskQueueBuilder withBatchSize(int batchSize) {
+
+      Precondition.param(batchSize).greaterThanOrEqualTo(1);
+
+      this.batchSize = batchSize;
+      return this;
+    }
+
     @Override
     public TaskQueue.Controller get() {
 
       TaskQueueThreadFactory taskQueueThreadFactory = new TaskQueueThreadFactory(
         this.daemon, this.priority, this.name, this.exceptionHandler
       );
-      return new DefaultTaskQueue(taskQueueThreadFactory, exceptionHandler);
+      return new DefaultTaskQueue(taskQueueThreadFactory, exceptionHandler, batchSize);
     }
   }
 
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.raistlic.common.postcondition.Postcondition.assertThat;
+
+public class AppendableBitMapTest {
+
+  @Test
+  public void testSnapshotsMatchBitMapOfSamePrefix() {
+
+    Random random = new Random(20150307L);
+    AppendableBitMap appendable = new AppendableBitMap(10);
+    List<Boolean> bits = new ArrayList<>();
+    List<BitSequence> snapshots = new ArrayList<>();
+
+    for (int size : new int[]{0, 1, 63, 512, 513, 2048, 5000, 40000}) {
+      while (bits.size() < size) {
+        boolean bit = random.nextInt(4) == 0;
+        bits.add(bit);
+        appendable.append(bit);
+      }
+      assertThat(appendable.size()).isEqualTo(size);
+      snapshots.add(appendable.snapshot());
+    }
+
+    // earlier snapshots must not be affected by the later appends
+    for (BitSequence snapshot : snapshots) {
+      assertSameAs(snapshot, BitMap.newInstance(bits.subList(0, snapshot.size()), b -> b));
+    }
+  }
+
+  @Test
+  public void testSelectWithOnesAndZerosOfExactSampleMultiples() {
+
+    AppendableBitMap appendable = new AppendableBitMap();
+    BitMap.Builder builder = BitMap.builder(65536);
+    for (int i = 0; i < 65536; i++) {
+      boolean bit = (i / 3) % 2 == 0 && i < 49152;
+      appendable.append(bit);
+      if (bit) {
+        builder.set(i);
+      }
+    }
+    BitMap expected = builder.build();
+    assertThat(expected.cardinality()).isEqualTo(24576);
+    assertSameAs(appendable.snapshot(), expected);
+  }
+
+  private static void assertSameAs(BitSequence actual, BitMap expected) {
+
+    int size = expected.size();
+    assertThat(actual.size()).isEqualTo(size);
+    for (int i = 0; i < size; i++) {
+      assertThat(actual.isOne(i)).isEqualTo(expected.isOne(i));
+      assertThat(actual.rankOne(i)).isEqualTo(expected.rankOne(i));
+    }
+    for (int i = 0; i <= expected.cardinality(); i++) {
+      assertThat(actual.selectOne(i)).isEqualTo(expected.selectOne(i));
+    }
+    for (int i = 0; i <= size - expected.cardinality(); i++) {
+      assertThat(actual.selectZero(i)).isEqualTo(expected.selectZero(i));
+    }
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+import org.junit.Test;
+import org.raistlic.common.precondition.InvalidParameterException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.raistlic.common.postcondition.Postcondition.assertThat;
+
+public class BitMapIndexTest {
+
+  private final List<Integer> elements = IntStream.range(0, 5000).boxed().collect(Collectors.toList());
+
+  private final BitMapIndex<Integer> index = BitMapIndex.builder(elements)
+      .add("even", i -> i % 2 == 0)
+      .add("triple", i -> i % 3 == 0)
+      .add("small", i -> i < 1000)
+      .build();
+
+  @Test
+  public void testQueries() {
+
+    assertThat(new ArrayList<>(index.names())).isEqualTo(Arrays.asList("even", "triple", "small"));
+    assertThat(index.query("even").and("triple").andNot("small").list())
+        .isEqualTo(filter(i -> i % 6 == 0 && i >= 1000));
+    assertThat(index.query("even").or("small").list())
+        .isEqualTo(filter(i -> i % 2 == 0 || i < 1000));
+    assertThat(index.query("triple").not().and(index.query("small")).list())
+        .isEqualTo(filter(i -> i % 3 != 0 && i < 1000));
+    assertThat(index.all().count()).isEqualTo(elements.size());
+    assertThat(index.query("small").count()).isEqualTo(1000);
+  }
+
+  @Test(expected = InvalidParameterException.class)
+  public void testUnknownName() {
+
+    index.query("odd");
+  }
+
+  @Test(expected = InvalidParameterException.class)
+  public void testDuplicatedName() {
+
+    BitMapIndex.builder(elements).add("even", i -> true).add("even", i -> false);
+  }
+
+  @Test
+  public void testSnapshotIgnoresLaterChanges() {
+
+    List<Integer> list = new ArrayList<>(Arrays.asList(1, 2, 3, 4, 5, 6));
+    BitMapIndex<Integer> snapshot = BitMapIndex.builder(list).add("even", i -> i % 2 == 0).build();
+    list.add(8);
+    list.set(1, 7);
+
+    assertThat(snapshot.query("even").list()).isEqualTo(Arrays.asList(2, 4, 6));
+    assertThat(snapshot.all().and("even").count()).isEqualTo(3);
+  }
+
+  @Test(expected = InvalidParameterException.class)
+  public void testQueryOfAnotherIndex() {
+
+    BitMapIndex<Integer> other = BitMapIndex.builder(elements).add("even", i -> i % 2 == 0).build();
+    index.query("even").and(other.query("even"));
+  }
+
+  private List<Integer> filter(IntPredicate predicate) {
+
+    return IntStream.range(0, elements.size()).filter(predicate).boxed().collect(Collectors.toList());
+  }
+}
@@ -19,6 +19,13 @@ package org.raistlic.common.adt;
 import org.junit.Test;
 import org.raistlic.common.precondition.InvalidParameterException;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
 import static org.raistlic.common.postcondition.Postcondition.assertThat;
 
 /**
@@ -316,6 +323,169 @@ public class BitMapTest {
     assertThat(bitMap.isOne(bitMap.size())).isFalse();
   }
 
+  @Test
+  public void testRankAndSelectAgainstNaiveCounting() {
+
+    Random random = new Random(20150303L);
+    for (int size : new int[]{0, 1, 63, 64, 65, 511, 512, 513, 2047, 2048, 2049, 100000}) {
+      for (double density : new double[]{0.0, 0.001, 0.5, 0.999, 1.0}) {
+
+        boolean[] bits = new boolean[size];
+        BitMap.Builder builder = BitMap.builder(size);
+        for (int i = 0; i < size; i++) {
+          bits[i] = random.nextDouble() < density;
+          if (bits[i]) {
+            builder.set(i);
+          }
+        }
+        BitMap bitMap = builder.build();
+
+        int ones = 0;
+        int zeros = 0;
+        for (int i = 0; i < size; i++) {
+          assertThat(bitMap.isOne(i)).isEqualTo(bits[i]);
+          if (bits[i]) {
+            assertThat(bitMap.selectOne(ones)).isEqualTo(i);
+            ones++;
+          } else {
+            assertThat(bitMap.selectZero(zeros)).isEqualTo(i);
+            zeros++;
+          }
+          assertThat(bitMap.rankOne(i)).isEqualTo(ones);
+          assertThat(bitMap.rankZero(i)).isEqualTo(zeros);
+        }
+        assertThat(bitMap.selectOne(ones)).isEqualTo(-1);
+        assertThat(bitMap.selectZero(zeros)).isEqualTo(-1);
+      }
+    }
+  }
+
+  @Test
+  public void testEqualsAndHashCode() {
+
+    String pattern = "01000 10101 11010 10110 01000 00101";
+
+    assertThat(buildBitMap(pattern)).isEqualTo(buildBitMap(pattern));
+    assertThat(buildBitMap(pattern).hashCode()).isEqualTo(buildBitMap(pattern).hashCode());
+    assertThat(buildBitMap(pattern)).isNotEqualTo(buildBitMap(pattern + "0"));
+    assertThat(buildBitMap(pattern)).isNotEqualTo(buildBitMap(pattern.replaceFirst("1", "0")));
+  }
+
+  @Test
+  public void testBulkOperations() {
+
+    BitMap a = buildBitMap("01000 10101 11010 10110 01000 00101");
+    BitMap b = buildBitMap("11000 00111 01010 00000 11111 10100");
+
+    assertThat(a.and(b)).isEqualTo(buildBitMap("01000 00101 01010 00000 01000 00100"));
+    assertThat(a.or(b)).isEqualTo(buildBitMap("11000 10111 11010 10110 11111 10101"));
+    assertThat(a.xor(b)).isEqualTo(buildBitMap("10000 10010 10000 10110 10111 10001"));
+    assertThat(a.andNot(b)).isEqualTo(buildBitMap("00000 10000 10000 10110 00000 00001"));
+    assertThat(a.not()).isEqualTo(buildBitMap("10111 01010 00101 01001 10111 11010"));
+    assertThat(a.not().rankOne(29)).isEqualTo(17);
+    assertThat(a.not().selectOne(16)).isEqualTo(28);
+    assertThat(a.not().selectOne(17)).isEqualTo(-1);
+  }
+
+  @Test
+  public void testCardinalityAndIntersectionCount() {
+
+    BitMap a = buildBitMap("01000 10101 11010 10110 01000 00101");
+    BitMap b = buildBitMap("11000 00111 01010 00000 11111 10100");
+
+    assertThat(a.cardinality()).isEqualTo(13);
+    assertThat(b.cardinality()).isEqualTo(14);
+    assertThat(a.intersectionCount(b)).isEqualTo(7);
+    assertThat(a.and(b).cardinality()).isEqualTo(7);
+    assertThat(BitMap.builder(0).build().cardinality()).isEqualTo(0);
+  }
+
+  @Test(expected = InvalidParameterException.class)
+  public void testBulkOperationWithDifferentSize() {
+
+    buildBitMap("0101").and(buildBitMap("01010"));
+  }
+
+  @Test
+  public void testParallelNewInstanceIsIdenticalToSequential() {
+
+    Random random = new Random(20150304L);
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      for (int size : new int[]{0, 1, 64, 4095, 4096, 4097, 300001}) {
+        List<Integer> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+          list.add(random.nextInt(100));
+        }
+        BitMap expected = BitMap.newInstance(list, e -> e < 30);
+
+        assertThat(BitMap.newInstance(list, e -> e < 30, pool)).isEqualTo(expected);
+        assertThat(BitMap.newInstance(new LinkedList<>(list), e -> e < 30, pool)).isEqualTo(expected);
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  public void testNextOneAndPreviousOne() {
+
+    BitMap bitMap = buildBitMap("01000 10101 11010 10110 01000 00101");
+
+    assertThat(bitMap.nextOne(0)).isEqualTo(1);
+    assertThat(bitMap.nextOne(1)).isEqualTo(1);
+    assertThat(bitMap.nextOne(2)).isEqualTo(5);
+    assertThat(bitMap.nextOne(22)).isEqualTo(27);
+    assertThat(bitMap.nextOne(29)).isEqualTo(29);
+    assertThat(bitMap.nextOne(30)).isEqualTo(-1);
+
+    assertThat(bitMap.previousOne(-1)).isEqualTo(-1);
+    assertThat(bitMap.previousOne(0)).isEqualTo(-1);
+    assertThat(bitMap.previousOne(4)).isEqualTo(1);
+    assertThat(bitMap.previousOne(26)).isEqualTo(21);
+    assertThat(bitMap.previousOne(29)).isEqualTo(29);
+  }
+
+  @Test
+  public void testCountOnes() {
+
+    BitMap bitMap = buildBitMap("01000 10101 11010 10110 01000 00101");
+
+    assertThat(bitMap.countOnes(0, 0)).isEqualTo(0);
+    assertThat(bitMap.countOnes(0, 30)).isEqualTo(13);
+    assertThat(bitMap.countOnes(5, 10)).isEqualTo(3);
+    assertThat(bitMap.countOnes(22, 27)).isEqualTo(0);
+  }
+
+  @Test
+  public void testForEachOneAndOnesStream() {
+
+    Random random = new Random(20150306L);
+    for (int size : new int[]{0, 1, 64, 65, 100000}) {
+      BitMap.Builder builder = BitMap.builder(size);
+      for (int i = 0; i < size; i++) {
+        if (random.nextInt(5) == 0) {
+          builder.set(i);
+        }
+      }
+      BitMap bitMap = builder.build();
+      int[] expected = new int[bitMap.cardinality()];
+      for (int i = 0; i < expected.length; i++) {
+        expected[i] = bitMap.selectOne(i);
+      }
+
+      List<Integer> visited = new ArrayList<>();
+      bitMap.forEachOne(visited::add);
+      assertThat(visited.size()).isEqualTo(expected.length);
+      for (int i = 0; i < expected.length; i++) {
+        assertThat(visited.get(i)).isEqualTo(expected[i]);
+      }
+      assertThat(Arrays.equals(bitMap.onesStream().toArray(), expected)).isTrue();
+      assertThat(Arrays.equals(bitMap.onesStream().parallel().toArray(), expected)).isTrue();
+      assertThat(bitMap.onesSpliterator().estimateSize()).isEqualTo((long) expected.length);
+    }
+  }
+
   private static BitMap buildBitMap(String pattern) {
 
     pattern = pattern.replaceAll(" ", "");
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.raistlic.common.adt;
+
+import org.junit.Test;
+import org.raistlic.common.precondition.InvalidParameterException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.raistlic.common.postcondition.Postcondition.assertThat;
+
+public class BloomFilterTest {
+
+  @Test
+  public void testNoFalseNegativesAndFalsePositiveRate() {
+
+    BloomFilter<String> filter = BloomFilter.<String>builder(10000).falsePositiveRate(0.01).build();
+    for (int i = 0; i < 10000; i++) {
+      filter.add("element" + i);
+    }
+
+    for (int i = 0; i < 10000; i++) {
+      assertThat(filter.mightContain("element" + i)).isTrue();
+    }
+    int falsePositives = 0;
+    for (int i = 0; i < 100000; i++) {
+      if (filter.mightContain("other" + i)) {
+        falsePositives++;
+      }
+    }
+    assertThat(falsePositives).lessThan(2000);
+    assertThat(filter.expectedFalsePositiveRate()).lessThan(0.02);
+  }
+
+  @Test
+  public void testAddReportsChange() {
+
+    BloomFilter<Integer> filter = BloomFilter.<Integer>builder(100).build();
+
+    assertThat(filter.add(42)).isTrue();
+    assertThat(filter.add(42)).isFalse();
+  }
+
+  @Test
+  public void testConcurrentAdd() throws Exception {
+
+    BloomFilter<Integer> filter = BloomFilter.<Integer>builder(80000).concurrent().build();
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      int offset = t * 10000;
+      threads.add(new Thread(() -> {
+        for (int i = offset; i < offset + 10000; i++) {
+          filter.add(i);
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    for (int i = 0; i < 80000; i++) {
+      assertThat(filter.mightContain(i)).isTrue();
+    }
+  }
+
+  @Test
+  public void testMerge() {
+
+    BloomFilter<String> first = BloomFilter.<String>builder(1000).build();
+    BloomFilter<String> second = BloomFilter.<String>builder(1000).concurrent().build();
+    first.add("a");
+    second.add("b");
+    first.merge(second);
+
+    assertThat(first.mightContain("a")).isTrue();
+    assertThat(first.mightContain("b")).isTrue();
+  }
+
+  @Test(expected = InvalidParameterException.class)
+  public void testMergeIncompatible() {
+
+    BloomFilter.<String>builder(1000).build().merge(BloomFilter.<String>builder(2000).build());
+  }
+
+  @Test
+  public void testWriteAndRead() throws IOException {
+
+    BloomFilter<Integer> filter = BloomFilter.<Integer>builder(50000).build();
+    for (int i = 0; i < 50000; i += 2) {
+      filter.add(i);
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    filter.writeTo(Channels.newChannel(out));
+
+    BloomFilter<Integer> read = BloomFilter.readFrom(
+        Channels.newChannel(new ByteArrayInputStream(out.toByteArray())), BloomFilter::defaultHash, true);
+
+    assertThat(read.bitSize()).isEqualTo(filter.bitSize());
+    assertThat(read.hashCount()).isEqualTo(filter.hashCount());
+    for (int i = 0; i < 50000; i++) {
+      assertThat(read.mightContain(i)).isEqualTo(filter.mightContain(i));
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testReadInvalid() throws IOException {
+
+    BloomFilter.readFrom(Channels.newChannel(new ByteArrayInputStream(new byte[32])), BloomFilter::defaultHash, false);
+  }
+}
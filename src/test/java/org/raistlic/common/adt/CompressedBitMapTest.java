@@ -0,0 +1,109 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+import org.junit.Test;
+import org.raistlic.common.precondition.InvalidParameterException;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntPredicate;
+
+import static org.raistlic.common.postcondition.Postcondition.assertThat;
+
+public class CompressedBitMapTest {
+
+  @Test
+  public void testSparseBitsMatchBitMap() {
+
+    Random random = new Random(1L);
+    assertSameAsBitMap(200000, i -> random.nextInt(1000) == 0);
+  }
+
+  @Test
+  public void testDenseBitsMatchBitMap() {
+
+    Random random = new Random(2L);
+    assertSameAsBitMap(200000, i -> random.nextBoolean());
+  }
+
+  @Test
+  public void testRunsMatchBitMap() {
+
+    assertSameAsBitMap(300000, i -> (i / 5000) % 2 == 0 || i == 65535 || i == 65536);
+  }
+
+  @Test
+  public void testAllOnesAndAllZeros() {
+
+    assertSameAsBitMap(140000, i -> true);
+    assertSameAsBitMap(140000, i -> false);
+    assertSameAsBitMap(0, i -> true);
+  }
+
+  @Test
+  public void testNewInstance() {
+
+    CompressedBitMap bitMap = CompressedBitMap.newInstance(Arrays.asList(1, 2, 3, 4, 5, 6), i -> i % 3 == 0);
+
+    assertThat(bitMap.size()).isEqualTo(6);
+    assertThat(bitMap.cardinality()).isEqualTo(2);
+    assertThat(bitMap.selectOne(0)).isEqualTo(2);
+    assertThat(bitMap.selectOne(1)).isEqualTo(5);
+    assertThat(bitMap.selectOne(2)).isEqualTo(-1);
+  }
+
+  @Test(expected = InvalidParameterException.class)
+  public void testSetInDescendingOrder() {
+
+    CompressedBitMap.builder(10).set(5).set(4);
+  }
+
+  @Test(expected = InvalidParameterException.class)
+  public void testRankOneWithIndexEqualToSize() {
+
+    CompressedBitMap.builder(10).set(5).build().rankOne(10);
+  }
+
+  private static void assertSameAsBitMap(int size, IntPredicate predicate) {
+
+    BitMap.Builder expectedBuilder = BitMap.builder(size);
+    CompressedBitMap.Builder actualBuilder = CompressedBitMap.builder(size);
+    for (int i = 0; i < size; i++) {
+      if (predicate.test(i)) {
+        expectedBuilder.set(i);
+        actualBuilder.set(i);
+      }
+    }
+    BitMap expected = expectedBuilder.build();
+    CompressedBitMap actual = actualBuilder.build();
+
+    assertThat(actual.size()).isEqualTo(expected.size());
+    int ones = size == 0 ? 0 : expected.rankOne(size - 1);
+    assertThat(actual.cardinality()).isEqualTo(ones);
+    for (int i = 0; i < size; i++) {
+      assertThat(actual.isOne(i)).isEqualTo(expected.isOne(i));
+      assertThat(actual.rankOne(i)).isEqualTo(expected.rankOne(i));
+    }
+    for (int i = 0; i <= ones; i++) {
+      assertThat(actual.selectOne(i)).isEqualTo(expected.selectOne(i));
+    }
+    for (int i = 0, zeros = size - ones; i <= zeros; i += 1 + zeros / 1000) {
+      assertThat(actual.selectZero(i)).isEqualTo(expected.selectZero(i));
+    }
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+import org.junit.Test;
+import org.raistlic.common.precondition.InvalidParameterException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.raistlic.common.postcondition.Postcondition.assertThat;
+
+public class ConcurrentBitSetTest {
+
+  @Test
+  public void testSetClearAndFreeze() {
+
+    ConcurrentBitSet bitSet = new ConcurrentBitSet(200);
+
+    assertThat(bitSet.testAndSet(3)).isFalse();
+    assertThat(bitSet.testAndSet(3)).isTrue();
+    bitSet.set(64);
+    bitSet.set(199);
+    bitSet.clear(64);
+    assertThat(bitSet.testAndClear(64)).isFalse();
+    assertThat(bitSet.isOne(199)).isTrue();
+
+    BitMap bitMap = bitSet.freeze();
+    bitSet.set(100);
+
+    assertThat(bitMap.size()).isEqualTo(200);
+    assertThat(bitMap.cardinality()).isEqualTo(2);
+    assertThat(bitMap.selectOne(1)).isEqualTo(199);
+    assertThat(bitMap.isOne(100)).isFalse();
+  }
+
+  @Test
+  public void testConcurrentTestAndSet() throws Exception {
+
+    int size = 10000;
+    ConcurrentBitSet bitSet = new ConcurrentBitSet(size);
+    AtomicInteger firstSets = new AtomicInteger();
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread(() -> {
+        for (int i = 0; i < size; i++) {
+          if (!bitSet.testAndSet(i)) {
+            firstSets.incrementAndGet();
+          }
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertThat(firstSets.get()).isEqualTo(size);
+    assertThat(bitSet.freeze().cardinality()).isEqualTo(size);
+  }
+
+  @Test(expected = InvalidParameterException.class)
+  public void testIndexOutOfRange() {
+
+    new ConcurrentBitSet(10).set(10);
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.raistlic.common.adt;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.raistlic.common.postcondition.Postcondition.assertThat;
+
+public class CountingBloomFilterTest {
+
+  @Test
+  public void testAddAndRemove() {
+
+    CountingBloomFilter<String> filter = CountingBloomFilter.<String>builder(1000).build();
+    for (int i = 0; i < 1000; i++) {
+      filter.add("element" + i);
+    }
+    for (int i = 0; i < 1000; i += 2) {
+      assertThat(filter.remove("element" + i)).isTrue();
+    }
+
+    for (int i = 1; i < 1000; i += 2) {
+      assertThat(filter.mightContain("element" + i)).isTrue();
+    }
+    int stale = 0;
+    for (int i = 0; i < 1000; i += 2) {
+      if (filter.mightContain("element" + i)) {
+        stale++;
+      }
+    }
+    assertThat(stale).lessThan(20);
+    assertThat(filter.remove("never added")).isFalse();
+  }
+
+  @Test
+  public void testApproximateCount() {
+
+    CountingBloomFilter<Integer> filter = CountingBloomFilter.<Integer>builder(100).build();
+    filter.add(7);
+    filter.add(7);
+    filter.add(7);
+
+    assertThat(filter.approximateCount(7)).isEqualTo(3);
+    filter.remove(7);
+    assertThat(filter.approximateCount(7)).isEqualTo(2);
+    for (int i = 0; i < 100; i++) {
+      filter.add(7);
+    }
+    assertThat(filter.approximateCount(7)).isEqualTo(15);
+  }
+
+  @Test
+  public void testConcurrentAddAndRemove() throws Exception {
+
+    CountingBloomFilter<Integer> filter = CountingBloomFilter.<Integer>builder(40000).concurrent().build();
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      int offset = t * 5000;
+      threads.add(new Thread(() -> {
+        for (int i = offset; i < offset + 5000; i++) {
+          filter.add(i);
+          filter.add(-i - 1);
+          filter.remove(-i - 1);
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    for (int i = 0; i < 40000; i++) {
+      assertThat(filter.mightContain(i)).isTrue();
+    }
+  }
+
+  @Test
+  public void testMergeAndWriteAndRead() throws IOException {
+
+    CountingBloomFilter<String> first = CountingBloomFilter.<String>builder(1000).build();
+    CountingBloomFilter<String> second = CountingBloomFilter.<String>builder(1000).build();
+    first.add("a");
+    second.add("a");
+    second.add("b");
+    first.merge(second);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    first.writeTo(Channels.newChannel(out));
+    CountingBloomFilter<String> read = CountingBloomFilter.readFrom(
+        Channels.newChannel(new ByteArrayInputStream(out.toByteArray())), BloomFilter::defaultHash, false);
+
+    assertThat(read.approximateCount("a")).isEqualTo(2);
+    assertThat(read.approximateCount("b")).isEqualTo(1);
+    assertThat(read.counterCount()).isEqualTo(first.counterCount());
+  }
+}
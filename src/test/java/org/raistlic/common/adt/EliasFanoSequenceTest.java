@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+import org.junit.Test;
+import org.raistlic.common.precondition.InvalidParameterException;
+
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+
+import static org.raistlic.common.postcondition.Postcondition.assertThat;
+
+public class EliasFanoSequenceTest {
+
+  @Test
+  public void testGetAndIterator() {
+
+    Random random = new Random(20150308L);
+    for (long bound : new long[]{1L, 10L, 1000L, 1L << 40}) {
+      long[] values = randomSortedValues(random, 5000, bound);
+      EliasFanoSequence sequence = EliasFanoSequence.newInstance(values);
+
+      assertThat(sequence.size()).isEqualTo(values.length);
+      PrimitiveIterator.OfLong iterator = sequence.iterator();
+      for (int i = 0; i < values.length; i++) {
+        assertThat(sequence.get(i)).isEqualTo(values[i]);
+        assertThat(iterator.nextLong()).isEqualTo(values[i]);
+      }
+      assertThat(iterator.hasNext()).isFalse();
+    }
+  }
+
+  @Test
+  public void testNextGreaterOrEqual() {
+
+    Random random = new Random(20150309L);
+    long[] values = randomSortedValues(random, 3000, 100000L);
+    EliasFanoSequence sequence = EliasFanoSequence.newInstance(values);
+
+    for (long x = -1L; x <= values[values.length - 1] + 1; x += 7) {
+      int expected = 0;
+      while (expected < values.length && values[expected] < x) {
+        expected++;
+      }
+      assertThat(sequence.nextGreaterOrEqual(x)).isEqualTo(expected == values.length ? -1 : expected);
+    }
+  }
+
+  @Test
+  public void testIntValuesAndEmptySequence() {
+
+    EliasFanoSequence sequence = EliasFanoSequence.newInstance(new int[]{3, 3, 8, 100, 100, 2000000});
+
+    assertThat(sequence.get(0)).isEqualTo(3L);
+    assertThat(sequence.get(5)).isEqualTo(2000000L);
+    assertThat(sequence.nextGreaterOrEqual(4L)).isEqualTo(2);
+    assertThat(sequence.nextGreaterOrEqual(100L)).isEqualTo(3);
+
+    EliasFanoSequence empty = EliasFanoSequence.newInstance(new long[0]);
+    assertThat(empty.size()).isEqualTo(0);
+    assertThat(empty.nextGreaterOrEqual(0L)).isEqualTo(-1);
+    assertThat(empty.iterator().hasNext()).isFalse();
+  }
+
+  @Test
+  public void testSizeInBits() {
+
+    long[] values = new long[100000];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = i * 1000L;
+    }
+    EliasFanoSequence sequence = EliasFanoSequence.newInstance(values);
+
+    // about 2 + log2(1000) bits per value, against 64 bits per value in a long[]
+    assertThat(sequence.sizeInBits() / values.length).lessThanOrEqualTo(13L);
+  }
+
+  @Test(expected = InvalidParameterException.class)
+  public void testUnsortedValues() {
+
+    EliasFanoSequence.newInstance(new long[]{1L, 3L, 2L});
+  }
+
+  @Test(expected = InvalidParameterException.class)
+  public void testNegativeValues() {
+
+    EliasFanoSequence.newInstance(new int[]{-1, 3});
+  }
+
+  private static long[] randomSortedValues(Random random, int count, long bound) {
+
+    long[] values = new long[count];
+    for (int i = 0; i < count; i++) {
+      values[i] = (random.nextLong() & Long.MAX_VALUE) % bound;
+    }
+    Arrays.sort(values);
+    return values;
+  }
+}
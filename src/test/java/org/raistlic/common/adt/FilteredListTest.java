@@ -0,0 +1,76 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+import org.junit.Test;
+import org.raistlic.common.precondition.InvalidParameterException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.raistlic.common.postcondition.Postcondition.assertThat;
+
+@SuppressWarnings("deprecation")
+public class FilteredListTest {
+
+  @Test
+  public void testListSemantics() {
+
+    List<Integer> elements = IntStream.range(0, 10000).boxed().collect(Collectors.toList());
+    List<Integer> expected = elements.stream().filter(i -> i % 7 == 3).collect(Collectors.toList());
+    FilteredList<Integer> filtered = FilteredList.of(elements, i -> i % 7 == 3);
+
+    assertThat(filtered instanceof RandomAccess).isTrue();
+    assertThat(filtered.size()).isEqualTo(expected.size());
+    assertThat(filtered).isEqualTo(expected);
+    assertThat(new ArrayList<>(filtered)).isEqualTo(expected);
+    assertThat(filtered.get(5)).isEqualTo(expected.get(5));
+    assertThat(filtered.indexOf(expected.get(9))).isEqualTo(9);
+  }
+
+  @Test
+  public void testArrayAndEmpty() {
+
+    FilteredList<String> filtered = FilteredList.of(new String[]{"a", "bb", "c", "dd"}, s -> s.length() == 2);
+
+    assertThat(filtered).isEqualTo(Arrays.asList("bb", "dd"));
+    assertThat(FilteredList.of(new String[0], s -> true).isEmpty()).isTrue();
+    assertThat(FilteredList.of(Collections.<String>emptyList(), s -> true).iterator().hasNext()).isFalse();
+  }
+
+  @Test
+  public void testParallelStream() {
+
+    List<Integer> elements = IntStream.range(0, 100000).boxed().collect(Collectors.toList());
+    FilteredList<Integer> filtered = FilteredList.of(elements, i -> i % 3 != 0 && i < 60000);
+
+    List<Integer> expected = elements.stream().filter(i -> i % 3 != 0 && i < 60000).collect(Collectors.toList());
+    assertThat(filtered.parallelStream().collect(Collectors.toList())).isEqualTo(expected);
+    assertThat(filtered.spliterator().trySplit().estimateSize()).isEqualTo((long) expected.size() / 2);
+  }
+
+  @Test(expected = InvalidParameterException.class)
+  public void testGetOutOfRange() {
+
+    FilteredList.of(new String[]{"a"}, s -> true).get(1);
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.raistlic.common.adt;
+
+import org.junit.Test;
+
+import static org.raistlic.common.postcondition.Postcondition.assertThat;
+
+public class FrequencySketchTest {
+
+  @Test
+  public void testFrequency() {
+
+    FrequencySketch sketch = new FrequencySketch(1024);
+    for (int i = 0; i < 5; i++) {
+      sketch.increment("hot");
+    }
+    sketch.increment("warm");
+
+    assertThat(sketch.frequency("hot")).isEqualTo(5);
+    assertThat(sketch.frequency("warm")).isEqualTo(1);
+    assertThat(sketch.frequency("cold")).isEqualTo(0);
+  }
+
+  @Test
+  public void testFrequencyIsCapped() {
+
+    FrequencySketch sketch = new FrequencySketch(1024);
+    for (int i = 0; i < 100; i++) {
+      sketch.increment(42);
+    }
+
+    assertThat(sketch.frequency(42)).isEqualTo(15);
+  }
+
+  @Test
+  public void testCountsAreHalvedAfterSample() {
+
+    FrequencySketch sketch = new FrequencySketch(64);
+    for (int i = 0; i < 8; i++) {
+      sketch.increment("hot");
+    }
+    // 10 * 64 increments in total trigger the reset
+    for (int i = 0; i < 640; i++) {
+      sketch.increment(i);
+    }
+
+    assertThat(sketch.frequency("hot")).lessThanOrEqualTo(4);
+  }
+}
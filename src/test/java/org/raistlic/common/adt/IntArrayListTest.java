@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.raistlic.common.adt;
+
+import org.junit.Test;
+import org.raistlic.common.precondition.InvalidParameterException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.raistlic.common.postcondition.Postcondition.assertThat;
+
+public class IntArrayListTest {
+
+  @Test
+  public void testSameResultsAsArrayList() {
+
+    Random random = new Random(20150316L);
+    IntArrayList list = new IntArrayList(0);
+    List<Integer> expected = new ArrayList<>();
+    for (int round = 0; round < 20000; round++) {
+      int operation = random.nextInt(4);
+      int value = random.nextInt(1000);
+      if (operation == 0 || expected.isEmpty()) {
+        list.add(value);
+        expected.add(value);
+      } else if (operation == 1) {
+        int index = random.nextInt(expected.size() + 1);
+        list.add(index, value);
+        expected.add(index, value);
+      } else if (operation == 2) {
+        int index = random.nextInt(expected.size());
+        assertThat(list.removeAt(index)).isEqualTo(expected.remove(index));
+      } else {
+        int index = random.nextInt(expected.size());
+        assertThat(list.set(index, value)).isEqualTo(expected.set(index, value));
+      }
+    }
+
+    assertThat(list.size()).isEqualTo(expected.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertThat(list.get(i)).isEqualTo(expected.get(i));
+    }
+    assertThat(list.indexOf(expected.get(7))).isEqualTo(expected.indexOf(expected.get(7)));
+    assertThat(list.stream().sum()).isEqualTo(expected.stream().mapToInt(Integer::intValue).sum());
+  }
+
+  @Test
+  public void testAddAllSortAndEquals() {
+
+    IntArrayList list = new IntArrayList();
+    list.addAll(3, 1, 2);
+    list.sort();
+
+    IntArrayList other = new IntArrayList();
+    other.addAll(1, 2, 3);
+
+    assertThat(list).isEqualTo(other);
+    assertThat(list.hashCode()).isEqualTo(other.hashCode());
+    assertThat(list.toString()).isEqualTo("[1, 2, 3]");
+  }
+
+  @Test(expected = InvalidParameterException.class)
+  public void testGetOutOfRange() {
+
+    new IntArrayList().get(0);
+  }
+}
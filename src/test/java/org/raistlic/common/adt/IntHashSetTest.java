@@ -0,0 +1,68 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.raistlic.common.adt;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.raistlic.common.postcondition.Postcondition.assertThat;
+
+public class IntHashSetTest {
+
+  @Test
+  public void testSameResultsAsHashSet() {
+
+    Random random = new Random(20150317L);
+    IntHashSet set = new IntHashSet();
+    Set<Integer> expected = new HashSet<>();
+    for (int round = 0; round < 100000; round++) {
+      int value = random.nextInt(5000) - 100;
+      if (random.nextInt(3) == 0) {
+        assertThat(set.remove(value)).isEqualTo(expected.remove(value));
+      } else {
+        assertThat(set.add(value)).isEqualTo(expected.add(value));
+      }
+    }
+
+    assertThat(set.size()).isEqualTo(expected.size());
+    for (int value = -200; value < 5000; value++) {
+      assertThat(set.contains(value)).isEqualTo(expected.contains(value));
+    }
+    int[] values = set.toArray();
+    Arrays.sort(values);
+    int[] expectedValues = expected.stream().mapToInt(Integer::intValue).sorted().toArray();
+    assertThat(Arrays.equals(values, expectedValues)).isTrue();
+  }
+
+  @Test
+  public void testZeroAndClear() {
+
+    IntHashSet set = new IntHashSet(4);
+
+    assertThat(set.add(0)).isTrue();
+    assertThat(set.add(0)).isFalse();
+    assertThat(set.contains(0)).isTrue();
+    assertThat(set.size()).isEqualTo(1);
+
+    set.clear();
+    assertThat(set.isEmpty()).isTrue();
+    assertThat(set.contains(0)).isFalse();
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.raistlic.common.postcondition.Postcondition.assertThat;
+
+public class LiveFilteredListTest {
+
+  @Test
+  public void testRandomModifications() {
+
+    Random random = new Random(20150315L);
+    Predicate<Integer> predicate = i -> i % 3 == 0;
+    List<Integer> source = new ArrayList<>();
+    for (int i = 0; i < 20000; i++) {
+      source.add(random.nextInt(100));
+    }
+    LiveFilteredList<Integer> view = LiveFilteredList.of(source, predicate);
+
+    for (int round = 0; round < 30000; round++) {
+      int operation = random.nextInt(3);
+      if (operation == 0 || source.isEmpty()) {
+        int index = random.nextInt(source.size() + 1);
+        source.add(index, random.nextInt(100));
+        view.elementAdded(index);
+      } else if (operation == 1) {
+        int index = random.nextInt(source.size());
+        source.remove(index);
+        view.elementRemoved(index);
+      } else {
+        int index = random.nextInt(source.size());
+        source.set(index, random.nextInt(100));
+        view.elementSet(index);
+      }
+      if (round % 1000 == 0) {
+        assertThat(view).isEqualTo(source.stream().filter(predicate).collect(Collectors.toList()));
+      }
+    }
+    List<Integer> expected = source.stream().filter(predicate).collect(Collectors.toList());
+    assertThat(view.size()).isEqualTo(expected.size());
+    for (int i = 0; i < expected.size(); i += 7) {
+      assertThat(view.get(i)).isEqualTo(expected.get(i));
+      assertThat(predicate.test(source.get(view.sourceIndex(i)))).isTrue();
+    }
+    assertThat(new ArrayList<>(view)).isEqualTo(expected);
+  }
+
+  @Test
+  public void testGrowFromEmptyAndShrinkToEmpty() {
+
+    List<String> source = new ArrayList<>();
+    LiveFilteredList<String> view = LiveFilteredList.of(source, s -> s.startsWith("a"));
+
+    for (int i = 0; i < 10000; i++) {
+      source.add((i % 2 == 0 ? "a" : "b") + i);
+      view.elementAdded(i);
+    }
+    assertThat(view.size()).isEqualTo(5000);
+    assertThat(view.get(4999)).isEqualTo("a9998");
+
+    while (!source.isEmpty()) {
+      source.remove(0);
+      view.elementRemoved(0);
+    }
+    assertThat(view.isEmpty()).isTrue();
+  }
+
+  @Test(expected = ConcurrentModificationException.class)
+  public void testIteratorFailsFast() {
+
+    List<String> source = new ArrayList<>();
+    source.add("a");
+    source.add("a");
+    LiveFilteredList<String> view = LiveFilteredList.of(source, s -> true);
+
+    Iterator<String> iterator = view.iterator();
+    iterator.next();
+    source.add("a");
+    view.elementAdded(2);
+    iterator.next();
+  }
+}
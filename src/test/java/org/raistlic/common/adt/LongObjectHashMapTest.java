@@ -0,0 +1,72 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.raistlic.common.adt;
+
+import org.junit.Test;
+import org.raistlic.common.precondition.InvalidParameterException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.raistlic.common.postcondition.Postcondition.assertThat;
+
+public class LongObjectHashMapTest {
+
+  @Test
+  public void testSameResultsAsHashMap() {
+
+    Random random = new Random(20150318L);
+    LongObjectHashMap<String> map = new LongObjectHashMap<>();
+    Map<Long, String> expected = new HashMap<>();
+    for (int round = 0; round < 100000; round++) {
+      long key = random.nextInt(5000) - 100;
+      if (random.nextInt(3) == 0) {
+        assertThat(map.remove(key)).isEqualTo(expected.remove(key));
+      } else {
+        String value = "v" + round;
+        assertThat(map.put(key, value)).isEqualTo(expected.put(key, value));
+      }
+    }
+
+    assertThat(map.size()).isEqualTo(expected.size());
+    for (long key = -200; key < 5000; key++) {
+      assertThat(map.get(key)).isEqualTo(expected.get(key));
+      assertThat(map.containsKey(key)).isEqualTo(expected.containsKey(key));
+    }
+    Map<Long, String> entries = new HashMap<>();
+    map.forEach(entries::put);
+    assertThat(entries).isEqualTo(expected);
+  }
+
+  @Test
+  public void testComputeIfAbsent() {
+
+    LongObjectHashMap<String> map = new LongObjectHashMap<>(2);
+
+    assertThat(map.computeIfAbsent(7, key -> "seven")).isEqualTo("seven");
+    assertThat(map.computeIfAbsent(7, key -> "other")).isEqualTo("seven");
+    map.clear();
+    assertThat(map.isEmpty()).isTrue();
+    assertThat(map.get(7)).isNull();
+  }
+
+  @Test(expected = InvalidParameterException.class)
+  public void testNullValue() {
+
+    new LongObjectHashMap<String>().put(1, null);
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+import org.junit.Test;
+import org.raistlic.common.precondition.InvalidParameterException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import static org.raistlic.common.postcondition.Postcondition.assertThat;
+
+public class LoudsTrieTest {
+
+  @Test
+  public void testLookupAndIds() {
+
+    TreeSet<String> keys = randomKeys(new Random(20150313L), 3000);
+    keys.add("");
+    List<String> input = new ArrayList<>(keys);
+    input.addAll(input.subList(0, 100));
+    Collections.shuffle(input, new Random(1L));
+    LoudsTrie trie = LoudsTrie.newInstance(input);
+
+    assertThat(trie.size()).isEqualTo(keys.size());
+    boolean[] seen = new boolean[keys.size()];
+    for (String key : keys) {
+      int id = trie.idOf(key);
+      assertThat(id >= 0 && id < keys.size()).isTrue();
+      assertThat(seen[id]).isFalse();
+      seen[id] = true;
+      assertThat(trie.keyOf(id)).isEqualTo(key);
+      assertThat(trie.contains(key + "#")).isFalse();
+    }
+    assertThat(trie.idOf("no.such.key")).isEqualTo(-1);
+  }
+
+  @Test
+  public void testKeysWithPrefix() {
+
+    TreeSet<String> keys = randomKeys(new Random(20150314L), 2000);
+    LoudsTrie trie = LoudsTrie.newInstance(keys);
+
+    for (String prefix : Arrays.asList("", "a", "b.c", "c.a.b", "zzz")) {
+      List<String> expected = keys.stream()
+          .filter(key -> key.startsWith(prefix))
+          .collect(Collectors.toList());
+      assertThat(trie.keysWithPrefix(prefix)).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void testEmpty() {
+
+    LoudsTrie trie = LoudsTrie.newInstance(Collections.emptyList());
+
+    assertThat(trie.size()).isEqualTo(0);
+    assertThat(trie.contains("")).isFalse();
+    assertThat(trie.keysWithPrefix("").isEmpty()).isTrue();
+  }
+
+  @Test(expected = InvalidParameterException.class)
+  public void testNullKey() {
+
+    LoudsTrie.newInstance(Arrays.asList("a", null));
+  }
+
+  private static TreeSet<String> randomKeys(Random random, int count) {
+
+    TreeSet<String> keys = new TreeSet<>();
+    while (keys.size() < count) {
+      StringBuilder builder = new StringBuilder();
+      int parts = 1 + random.nextInt(4);
+      for (int i = 0; i < parts; i++) {
+        if (i > 0) {
+          builder.append('.');
+        }
+        builder.append((char) ('a' + random.nextInt(3)));
+        for (int length = random.nextInt(3); length > 0; length--) {
+          builder.append((char) ('a' + random.nextInt(26)));
+        }
+      }
+      keys.add(builder.toString());
+    }
+    return keys;
+  }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import static org.raistlic.common.postcondition.Postcondition.assertThat;
+
+public class MappedBitMapTest {
+
+  private Path file;
+
+  @Before
+  public void setUp() throws IOException {
+
+    file = Files.createTempFile("bitmap", ".bin");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+
+    Files.deleteIfExists(file);
+  }
+
+  @Test
+  public void testMappedBitMapMatchesWrittenBitMap() throws IOException {
+
+    Random random = new Random(20150305L);
+    for (int size : new int[]{0, 1, 511, 2048, 100001}) {
+      BitMap.Builder builder = BitMap.builder(size);
+      for (int i = 0; i < size; i++) {
+        if (random.nextInt(3) == 0) {
+          builder.set(i);
+        }
+      }
+      BitMap expected = builder.build();
+      MappedBitMap actual = writeAndMap(expected);
+
+      assertThat(actual.size()).isEqualTo(expected.size());
+      assertThat(actual.cardinality()).isEqualTo(expected.cardinality());
+      for (int i = 0; i < size; i++) {
+        assertThat(actual.isOne(i)).isEqualTo(expected.isOne(i));
+        assertThat(actual.rankOne(i)).isEqualTo(expected.rankOne(i));
+        assertThat(actual.rankZero(i)).isEqualTo(expected.rankZero(i));
+      }
+      for (int i = 0; i <= expected.cardinality(); i++) {
+        assertThat(actual.selectOne(i)).isEqualTo(expected.selectOne(i));
+      }
+      for (int i = 0; i <= size - expected.cardinality(); i++) {
+        assertThat(actual.selectZero(i)).isEqualTo(expected.selectZero(i));
+      }
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testMapFileWithWrongMagicNumber() throws IOException {
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.allocate(64));
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      MappedBitMap.map(channel);
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testMapTruncatedFile() throws IOException {
+
+    writeAndMap(BitMap.builder(1000).set(3).build());
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 4);
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      MappedBitMap.map(channel);
+    }
+  }
+
+  private MappedBitMap writeAndMap(BitMap bitMap) throws IOException {
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      MappedBitMap.write(bitMap, channel);
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      return MappedBitMap.map(channel);
+    }
+  }
+}
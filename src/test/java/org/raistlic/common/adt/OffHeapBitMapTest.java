@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+import org.junit.Test;
+import org.raistlic.common.precondition.InvalidContextException;
+
+import java.util.Random;
+
+import static org.raistlic.common.postcondition.Postcondition.assertThat;
+
+public class OffHeapBitMapTest {
+
+  @Test
+  public void testSameResultsAsBitMap() {
+
+    Random random = new Random(20150312L);
+    for (double density : new double[]{0.0, 0.001, 0.5, 0.999, 1.0}) {
+      int size = 3 * (1 << 16) + 77;
+      BitMap.Builder expectedBuilder = BitMap.builder(size);
+      OffHeapBitMap.Builder builder = OffHeapBitMap.builder(size, 10);
+      for (int i = 0; i < size; i++) {
+        if (random.nextDouble() < density) {
+          expectedBuilder.set(i);
+          builder.set(i);
+        }
+      }
+      BitMap expected = expectedBuilder.build();
+      OffHeapBitMap bitMap = builder.build();
+
+      assertThat(bitMap.size()).isEqualTo((long) size);
+      assertThat(bitMap.cardinality()).isEqualTo((long) expected.cardinality());
+      for (int i = 0; i < size; i += 1 + random.nextInt(50)) {
+        assertThat(bitMap.isOne(i)).isEqualTo(expected.isOne(i));
+        assertThat(bitMap.rankOne(i)).isEqualTo((long) expected.rankOne(i));
+        assertThat(bitMap.rankZero(i)).isEqualTo((long) expected.rankZero(i));
+        assertThat(bitMap.selectOne(i)).isEqualTo((long) expected.selectOne(i));
+        assertThat(bitMap.selectZero(i)).isEqualTo((long) expected.selectZero(i));
+      }
+      assertThat(bitMap.selectOne(bitMap.cardinality())).isEqualTo(-1L);
+      assertThat(bitMap.selectZero(size - bitMap.cardinality())).isEqualTo(-1L);
+    }
+  }
+
+  @Test
+  public void testUnsetAndEmpty() {
+
+    OffHeapBitMap bitMap = OffHeapBitMap.builder(130L).set(3L).set(129L).unset(3L).build();
+
+    assertThat(bitMap.cardinality()).isEqualTo(1L);
+    assertThat(bitMap.selectOne(0L)).isEqualTo(129L);
+    assertThat(bitMap.rankOne(128L)).isEqualTo(0L);
+    assertThat(OffHeapBitMap.builder(0L).build().selectZero(0L)).isEqualTo(-1L);
+  }
+
+  @Test(expected = InvalidContextException.class)
+  public void testBuildTwice() {
+
+    OffHeapBitMap.Builder builder = OffHeapBitMap.builder(10L);
+    builder.build();
+    builder.build();
+  }
+}
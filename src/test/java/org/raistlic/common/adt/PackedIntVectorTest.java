@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.raistlic.common.adt;
+
+import org.junit.Test;
+import org.raistlic.common.precondition.InvalidParameterException;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.raistlic.common.postcondition.Postcondition.assertThat;
+
+public class PackedIntVectorTest {
+
+  @Test
+  public void testSameValuesAsIntArrayForAllWidths() {
+
+    Random random = new Random(20150318L);
+    for (int width = 1; width <= 32; width++) {
+      int size = 1000 + random.nextInt(100);
+      PackedIntVector vector = PackedIntVector.newInstance(size, width);
+      int[] expected = new int[size];
+      for (int round = 0; round < 3000; round++) {
+        int index = random.nextInt(size);
+        int value = (int) (random.nextLong() & Bits.lowMask(width));
+        vector.set(index, value);
+        expected[index] = value;
+      }
+
+      assertThat(vector.width()).isEqualTo(width);
+      for (int i = 0; i < size; i++) {
+        assertThat(vector.get(i)).isEqualTo(expected[i]);
+      }
+      assertThat(Arrays.equals(vector.toArray(), expected)).isTrue();
+
+      int from = random.nextInt(size);
+      int length = random.nextInt(size - from + 1);
+      int[] buffer = new int[length + 3];
+      vector.unpack(from, buffer, 3, length);
+      assertThat(Arrays.equals(Arrays.copyOfRange(buffer, 3, length + 3), Arrays.copyOfRange(expected, from, from + length))).isTrue();
+    }
+  }
+
+  @Test
+  public void testOf() {
+
+    PackedIntVector vector = PackedIntVector.of(5, 0, 7, 3);
+
+    assertThat(vector.width()).isEqualTo(3);
+    assertThat(vector.size()).isEqualTo(4);
+    assertThat(Arrays.equals(vector.toArray(), new int[]{5, 0, 7, 3})).isTrue();
+    assertThat(vector.packedBytes()).isEqualTo(8L);
+  }
+
+  @Test
+  public void testWidthFor() {
+
+    assertThat(PackedIntVector.widthFor(0)).isEqualTo(1);
+    assertThat(PackedIntVector.widthFor(1)).isEqualTo(1);
+    assertThat(PackedIntVector.widthFor(255)).isEqualTo(8);
+    assertThat(PackedIntVector.widthFor(256)).isEqualTo(9);
+    assertThat(PackedIntVector.widthFor(Integer.MAX_VALUE)).isEqualTo(31);
+  }
+
+  @Test(expected = InvalidParameterException.class)
+  public void testValueTooWide() {
+
+    PackedIntVector.newInstance(10, 4).set(0, 16);
+  }
+
+  @Test(expected = InvalidParameterException.class)
+  public void testNegativeValue() {
+
+    PackedIntVector.of(1, -1);
+  }
+}
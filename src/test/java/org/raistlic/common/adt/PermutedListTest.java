@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.raistlic.common.adt;
+
+import org.junit.Test;
+import org.raistlic.common.precondition.InvalidParameterException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.raistlic.common.postcondition.Postcondition.assertThat;
+
+public class PermutedListTest {
+
+  @Test
+  public void testSortedIsStable() {
+
+    Random random = new Random(20150318L);
+    List<int[]> elements = new ArrayList<>();
+    for (int i = 0; i < 100000; i++) {
+      elements.add(new int[]{random.nextInt(1000), i});
+    }
+    Comparator<int[]> byKey = Comparator.comparingInt(e -> e[0]);
+
+    PermutedList<int[]> sorted = PermutedList.sorted(elements, byKey);
+
+    List<int[]> expected = new ArrayList<>(elements);
+    expected.sort(byKey);
+    assertThat(sorted.size()).isEqualTo(expected.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertThat(sorted.get(i) == expected.get(i)).isTrue();
+      assertThat(sorted.sourceIndex(i)).isEqualTo(expected.get(i)[1]);
+    }
+  }
+
+  @Test
+  public void testSortedAndFiltered() {
+
+    List<Integer> elements = new ArrayList<>();
+    Random random = new Random(1L);
+    for (int i = 0; i < 20000; i++) {
+      elements.add(random.nextInt());
+    }
+
+    PermutedList<Integer> sorted = PermutedList.sorted(elements, e -> e % 3 == 0, Comparator.reverseOrder());
+
+    List<Integer> expected = elements.stream()
+        .filter(e -> e % 3 == 0)
+        .sorted(Comparator.reverseOrder())
+        .collect(Collectors.toList());
+    assertThat(sorted).isEqualTo(expected);
+  }
+
+  @Test
+  public void testSortedWithBits() {
+
+    List<String> elements = Arrays.asList("d", "a", "c", "b", "e");
+    BitMap bits = BitMap.builder(5).set(0).set(2).set(3).build();
+
+    assertThat(PermutedList.sorted(elements, bits, Comparator.naturalOrder())).isEqualTo(Arrays.asList("b", "c", "d"));
+  }
+
+  @Test
+  public void testOf() {
+
+    List<String> elements = Arrays.asList("a", "b", "c");
+    PermutedList<String> view = PermutedList.of(elements, new int[]{2, 0, 2});
+
+    assertThat(view).isEqualTo(Arrays.asList("c", "a", "c"));
+    assertThat(PermutedList.sorted(new ArrayList<String>(), Comparator.naturalOrder()).isEmpty()).isTrue();
+  }
+
+  @Test(expected = InvalidParameterException.class)
+  public void testOfIndexOutOfRange() {
+
+    PermutedList.of(Arrays.asList("a", "b"), new int[]{2});
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testGetOutOfRange() {
+
+    PermutedList.of(Arrays.asList("a", "b"), new int[]{1}).get(1);
+  }
+}
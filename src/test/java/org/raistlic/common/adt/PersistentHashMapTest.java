@@ -0,0 +1,160 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.raistlic.common.adt;
+
+import org.junit.Test;
+import org.raistlic.common.precondition.InvalidParameterException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.raistlic.common.postcondition.Postcondition.assertThat;
+
+public class PersistentHashMapTest {
+
+  @Test
+  public void testSameResultsAsHashMap() {
+
+    Random random = new Random(20150318L);
+    PersistentHashMap<Integer, String> map = PersistentHashMap.empty();
+    Map<Integer, String> expected = new HashMap<>();
+    for (int round = 0; round < 50000; round++) {
+      int key = random.nextInt(5000) - 100;
+      if (random.nextInt(3) == 0) {
+        map = map.remove(key);
+        expected.remove(key);
+      } else {
+        String value = "v" + round;
+        map = map.put(key, value);
+        expected.put(key, value);
+      }
+      assertThat(map.size()).isEqualTo(expected.size());
+    }
+
+    for (int key = -200; key < 5000; key++) {
+      assertThat(map.get(key)).isEqualTo(expected.get(key));
+      assertThat(map.containsKey(key)).isEqualTo(expected.containsKey(key));
+    }
+    assertThat(map.asMap()).isEqualTo(expected);
+    Map<Integer, String> entries = new HashMap<>();
+    map.forEach(entries::put);
+    assertThat(entries).isEqualTo(expected);
+  }
+
+  @Test
+  public void testOldVersionsUnchanged() {
+
+    List<PersistentHashMap<String, Integer>> versions = new ArrayList<>();
+    PersistentHashMap<String, Integer> map = PersistentHashMap.empty();
+    for (int i = 0; i < 1000; i++) {
+      versions.add(map);
+      map = map.put("key" + i, i);
+    }
+    for (int i = 0; i < 1000; i++) {
+      map = map.remove("key" + i);
+    }
+
+    assertThat(map.isEmpty()).isTrue();
+    for (int i = 0; i < versions.size(); i++) {
+      PersistentHashMap<String, Integer> version = versions.get(i);
+      assertThat(version.size()).isEqualTo(i);
+      assertThat(version.containsKey("key" + i)).isFalse();
+      if (i > 0) {
+        assertThat(version.get("key" + (i - 1))).isEqualTo(i - 1);
+      }
+    }
+  }
+
+  @Test
+  public void testHashCollisions() {
+
+    PersistentHashMap<Colliding, Integer> map = PersistentHashMap.empty();
+    Map<Colliding, Integer> expected = new HashMap<>();
+    for (int i = 0; i < 200; i++) {
+      Colliding key = new Colliding(i, i % 7);
+      map = map.put(key, i);
+      expected.put(key, i);
+    }
+    assertThat(map.asMap()).isEqualTo(expected);
+
+    for (int i = 0; i < 200; i += 3) {
+      Colliding key = new Colliding(i, i % 7);
+      map = map.remove(key);
+      expected.remove(key);
+    }
+    assertThat(map.size()).isEqualTo(expected.size());
+    assertThat(map.asMap()).isEqualTo(expected);
+    assertThat(map.get(new Colliding(3, 3))).isNull();
+    assertThat(map.get(new Colliding(4, 4))).isEqualTo(4);
+  }
+
+  @Test
+  public void testNullValue() {
+
+    PersistentHashMap<String, String> map = PersistentHashMap.<String, String>empty().put("a", null);
+
+    assertThat(map.containsKey("a")).isTrue();
+    assertThat(map.get("a")).isNull();
+    assertThat(map.put("a", null) == map).isTrue();
+    assertThat(map.remove("b") == map).isTrue();
+  }
+
+  @Test
+  public void testCopyOf() {
+
+    Map<String, Integer> source = new HashMap<>();
+    source.put("one", 1);
+    source.put("two", 2);
+    PersistentHashMap<String, Integer> map = PersistentHashMap.copyOf(source);
+
+    assertThat(map.asMap()).isEqualTo(source);
+    assertThat(map).isEqualTo(PersistentHashMap.<String, Integer>empty().put("two", 2).put("one", 1));
+  }
+
+  @Test(expected = InvalidParameterException.class)
+  public void testNullKey() {
+
+    PersistentHashMap.empty().put(null, "value");
+  }
+
+  private static final class Colliding {
+
+    private final int id;
+
+    private final int hash;
+
+    private Colliding(int id, int hash) {
+
+      this.id = id;
+      this.hash = hash;
+    }
+
+    @Override
+    public int hashCode() {
+
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+      return o instanceof Colliding && ((Colliding) o).id == id;
+    }
+  }
+}
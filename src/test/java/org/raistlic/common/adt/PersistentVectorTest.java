@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.raistlic.common.adt;
+
+import org.junit.Test;
+import org.raistlic.common.precondition.InvalidParameterException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.raistlic.common.postcondition.Postcondition.assertThat;
+
+public class PersistentVectorTest {
+
+  @Test
+  public void testSameResultsAsArrayList() {
+
+    Random random = new Random(20150318L);
+    PersistentVector<Integer> vector = PersistentVector.empty();
+    List<Integer> expected = new ArrayList<>();
+    for (int round = 0; round < 100000; round++) {
+      int operation = random.nextInt(10);
+      if (operation < 6 || expected.isEmpty()) {
+        vector = vector.append(round);
+        expected.add(round);
+      } else if (operation < 8) {
+        int index = random.nextInt(expected.size());
+        vector = vector.set(index, -round);
+        expected.set(index, -round);
+      } else {
+        vector = vector.removeLast();
+        expected.remove(expected.size() - 1);
+      }
+      assertThat(vector.size()).isEqualTo(expected.size());
+    }
+
+    for (int i = 0; i < expected.size(); i++) {
+      assertThat(vector.get(i)).isEqualTo(expected.get(i));
+    }
+    assertThat(vector.asList()).isEqualTo(expected);
+  }
+
+  @Test
+  public void testOldVersionsUnchanged() {
+
+    List<PersistentVector<Integer>> versions = new ArrayList<>();
+    PersistentVector<Integer> vector = PersistentVector.empty();
+    for (int i = 0; i < 40000; i++) {
+      versions.add(vector);
+      vector = vector.append(i);
+    }
+    PersistentVector<Integer> updated = vector.set(12345, -1);
+    while (!vector.isEmpty()) {
+      vector = vector.removeLast();
+    }
+
+    assertThat(updated.get(12345)).isEqualTo(-1);
+    for (int i = 0; i < versions.size(); i += 997) {
+      PersistentVector<Integer> version = versions.get(i);
+      assertThat(version.size()).isEqualTo(i);
+      for (int j = 0; j < i; j++) {
+        assertThat(version.get(j)).isEqualTo(j);
+      }
+    }
+  }
+
+  @Test
+  public void testRemoveIf() {
+
+    PersistentVector<Integer> vector = PersistentVector.copyOf(Arrays.asList(1, 2, 3, 4, 5, 6));
+
+    assertThat(vector.removeIf(e -> e % 2 == 0).asList()).isEqualTo(Arrays.asList(1, 3, 5));
+    assertThat(vector.removeIf(e -> e > 10) == vector).isTrue();
+  }
+
+  @Test
+  public void testEquals() {
+
+    PersistentVector<String> vector = PersistentVector.copyOf(Arrays.asList("a", "b"));
+
+    assertThat(vector).isEqualTo(PersistentVector.<String>empty().append("a").append("b"));
+    assertThat(vector.toString()).isEqualTo("[a, b]");
+  }
+
+  @Test(expected = InvalidParameterException.class)
+  public void testGetOutOfRange() {
+
+    PersistentVector.empty().append("a").get(1);
+  }
+
+  @Test(expected = InvalidParameterException.class)
+  public void testRemoveLastEmpty() {
+
+    PersistentVector.empty().removeLast();
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.raistlic.common.postcondition.Postcondition.assertThat;
+
+public class ReferenceCacheTest {
+
+  @Test
+  public void testLoadAndStats() {
+
+    ReferenceCache<String, Integer> cache = ReferenceCache.<String, Integer>builder().build();
+    AtomicInteger loads = new AtomicInteger();
+
+    Integer first = cache.get("abc", key -> {
+      loads.incrementAndGet();
+      return key.length();
+    });
+    Integer second = cache.get("abc", key -> {
+      loads.incrementAndGet();
+      return -1;
+    });
+
+    assertThat(first).isEqualTo(3);
+    assertThat(second).isEqualTo(3);
+    assertThat(loads.get()).isEqualTo(1);
+    assertThat(cache.get("xyz")).isNull();
+
+    CacheStats stats = cache.stats();
+    assertThat(stats.hitCount()).isEqualTo(1L);
+    assertThat(stats.missCount()).isEqualTo(2L);
+    assertThat(stats.hitRate()).isEqualTo(1.0 / 3);
+  }
+
+  @Test
+  public void testMaximumSizeEvictsOldestFirst() {
+
+    ReferenceCache<Integer, String> cache = ReferenceCache.<Integer, String>builder()
+        .maximumSize(3)
+        .build();
+    List<String> values = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      String value = "v" + i;
+      values.add(value);
+      cache.put(i, value);
+    }
+
+    assertThat(cache.size()).isEqualTo(3);
+    assertThat(cache.get(0)).isNull();
+    assertThat(cache.get(1)).isNull();
+    assertThat(cache.get(4)).isEqualTo("v4");
+    assertThat(cache.stats().evictionCount()).isEqualTo(2L);
+
+    for (int i = 0; i < 100; i++) {
+      cache.put(4, "v4");
+    }
+    assertThat(cache.size()).isEqualTo(3);
+    assertThat(cache.get(2)).isEqualTo("v2");
+  }
+
+  @Test
+  public void testCompactionKeepsInsertionOrder() {
+
+    ReferenceCache<String, String> cache = ReferenceCache.<String, String>builder()
+        .maximumSize(2)
+        .build();
+    cache.put("A", "A-val");
+    // the stale references of the replaced values exceed 2 * maximumSize + 16, and are compacted
+    // while the last value of B is the newest entry
+    for (int i = 0; i < 20; i++) {
+      cache.put("B", "B-val");
+    }
+    cache.put("C", "C-val");
+
+    assertThat(cache.get("A")).isNull();
+    assertThat(cache.get("B")).isEqualTo("B-val");
+    assertThat(cache.get("C")).isEqualTo("C-val");
+
+    cache.put("D", "D-val");
+    assertThat(cache.get("B")).isNull();
+    assertThat(cache.get("C")).isEqualTo("C-val");
+    assertThat(cache.get("D")).isEqualTo("D-val");
+  }
+
+  @Test
+  public void testWeakValuesAreReclaimed() throws Exception {
+
+    ReferenceCache<Integer, Object> cache = ReferenceCache.<Integer, Object>builder()
+        .valueStrength(ReferenceCache.ValueStrength.WEAK)
+        .build();
+    cache.put(1, new Object());
+
+    for (int attempt = 0; attempt < 50 && cache.size() > 0; attempt++) {
+      System.gc();
+      Thread.sleep(10L);
+      cache.cleanUp();
+    }
+
+    assertThat(cache.size()).isEqualTo(0);
+    assertThat(cache.stats().evictionCount()).isEqualTo(1L);
+  }
+}
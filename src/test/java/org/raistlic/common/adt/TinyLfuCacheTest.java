@@ -0,0 +1,188 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.raistlic.common.adt;
+
+import org.junit.Test;
+import org.raistlic.common.precondition.InvalidContextException;
+import org.raistlic.common.precondition.InvalidParameterException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.raistlic.common.postcondition.Postcondition.assertThat;
+
+public class TinyLfuCacheTest {
+
+  @Test
+  public void testLoadAndStats() {
+
+    TinyLfuCache<String, Integer> cache = TinyLfuCache.<String, Integer>builder().maximumSize(10).build();
+    AtomicInteger loads = new AtomicInteger();
+
+    Integer first = cache.get("abc", key -> {
+      loads.incrementAndGet();
+      return key.length();
+    });
+    Integer second = cache.get("abc", key -> {
+      loads.incrementAndGet();
+      return -1;
+    });
+
+    assertThat(first).isEqualTo(3);
+    assertThat(second).isEqualTo(3);
+    assertThat(loads.get()).isEqualTo(1);
+    assertThat(cache.get("xyz")).isNull();
+
+    CacheStats stats = cache.stats();
+    assertThat(stats.hitCount()).isEqualTo(1L);
+    assertThat(stats.missCount()).isEqualTo(2L);
+  }
+
+  @Test
+  public void testMaximumSize() {
+
+    TinyLfuCache<Integer, String> cache = TinyLfuCache.<Integer, String>builder().maximumSize(100).build();
+    for (int i = 0; i < 1000; i++) {
+      cache.put(i, "v" + i);
+    }
+    cache.cleanUp();
+
+    assertThat(cache.size()).isEqualTo(100);
+    assertThat(cache.stats().evictionCount()).isEqualTo(900L);
+  }
+
+  @Test
+  public void testFrequentEntriesSurviveScan() {
+
+    TinyLfuCache<Integer, String> cache = TinyLfuCache.<Integer, String>builder().maximumSize(100).build();
+    for (int round = 0; round < 20; round++) {
+      for (int key = 0; key < 50; key++) {
+        cache.get(key, k -> "hot" + k);
+      }
+    }
+    for (int key = 1000; key < 11000; key++) {
+      cache.get(key, k -> "scan" + k);
+    }
+    cache.cleanUp();
+
+    int hotKept = 0;
+    for (int key = 0; key < 50; key++) {
+      if (cache.get(key) != null) {
+        hotKept++;
+      }
+    }
+    assertThat(hotKept).greaterThan(45);
+    assertThat(cache.size()).lessThanOrEqualTo(100);
+  }
+
+  @Test
+  public void testFrequencyHistoryKeptAtPowerOfTwoBound() {
+
+    TinyLfuCache<Integer, String> cache = TinyLfuCache.<Integer, String>builder().maximumSize(256).build();
+    cache.put(-1, "hot");
+    for (int i = 0; i < 5; i++) {
+      cache.get(-1);
+      cache.cleanUp();
+    }
+    for (int key = 0; key < 300; key++) {
+      cache.put(key, "cold" + key);
+      cache.cleanUp();
+    }
+
+    assertThat(cache.get(-1)).isEqualTo("hot");
+    assertThat(cache.size()).isEqualTo(256);
+  }
+
+  @Test
+  public void testMaximumWeight() {
+
+    TinyLfuCache<Integer, String> cache = TinyLfuCache.<Integer, String>builder()
+        .maximumWeight(100, (key, value) -> value.length())
+        .build();
+    for (int i = 0; i < 100; i++) {
+      cache.put(i, "0123456789");
+    }
+    cache.put(0, "");
+    cache.cleanUp();
+
+    assertThat(cache.size()).lessThanOrEqualTo(11);
+    assertThat(cache.size()).greaterThanOrEqualTo(10);
+  }
+
+  @Test
+  public void testInvalidate() {
+
+    TinyLfuCache<String, String> cache = TinyLfuCache.<String, String>builder().maximumSize(10).build();
+    cache.put("a", "1");
+    cache.put("a", "2");
+    cache.invalidate("a");
+    cache.cleanUp();
+
+    assertThat(cache.get("a")).isNull();
+    assertThat(cache.size()).isEqualTo(0);
+    assertThat(cache.stats().evictionCount()).isEqualTo(0L);
+  }
+
+  @Test
+  public void testConcurrentAccess() throws Exception {
+
+    TinyLfuCache<Integer, Integer> cache = TinyLfuCache.<Integer, Integer>builder().maximumSize(200).build();
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      long seed = t;
+      threads.add(new Thread(() -> {
+        Random random = new Random(seed);
+        for (int i = 0; i < 50000; i++) {
+          int key = random.nextInt(1000);
+          if (random.nextInt(10) == 0) {
+            cache.invalidate(key);
+          } else {
+            Integer value = cache.get(key, k -> k * 2);
+            if (value != key * 2) {
+              throw new IllegalStateException("wrong value " + value + " of key " + key);
+            }
+          }
+        }
+      }));
+    }
+    List<Throwable> failures = new ArrayList<>();
+    for (Thread thread : threads) {
+      thread.setUncaughtExceptionHandler((th, ex) -> failures.add(ex));
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    cache.cleanUp();
+
+    assertThat(failures.isEmpty()).isTrue();
+    assertThat(cache.size()).lessThanOrEqualTo(200);
+  }
+
+  @Test(expected = InvalidContextException.class)
+  public void testBuildWithoutBound() {
+
+    TinyLfuCache.builder().build();
+  }
+
+  @Test(expected = InvalidParameterException.class)
+  public void testNegativeWeight() {
+
+    TinyLfuCache.<String, String>builder().maximumWeight(10, (key, value) -> -1).build().put("a", "b");
+  }
+}
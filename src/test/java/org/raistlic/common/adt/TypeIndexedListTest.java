@@ -0,0 +1,73 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.raistlic.common.postcondition.Postcondition.assertThat;
+
+public class TypeIndexedListTest {
+
+  @Test
+  public void testGetListByType() {
+
+    TypeIndexedList<Object> list = TypeIndexedList.newInstance();
+    list.add("a");
+    list.add(1);
+    list.add(new StringBuilder("b"));
+    list.add(2L);
+    list.add("c");
+
+    assertThat(list.getList(String.class)).isEqualTo(Arrays.asList("a", "c"));
+    assertThat(list.getList(Number.class)).isEqualTo(Arrays.<Number>asList(1, 2L));
+    assertThat(list.getList(CharSequence.class).size()).isEqualTo(3);
+    assertThat(list.getList(Double.class).isEmpty()).isTrue();
+    assertThat(list.getAll().size()).isEqualTo(5);
+  }
+
+  @Test
+  public void testModificationsAndSnapshots() {
+
+    TypeIndexedList<Object> list = TypeIndexedList.newInstance();
+    list.add("a");
+    list.add(1);
+    list.add("b");
+    List<String> before = list.getList(String.class);
+
+    list.add("a");
+    assertThat(list.getList(String.class)).isEqualTo(Arrays.asList("b", "a"));
+    assertThat(list.getAll()).isEqualTo(Arrays.<Object>asList(1, "b", "a"));
+    assertThat(before).isEqualTo(Arrays.asList("a", "b"));
+
+    assertThat(list.remove("b")).isTrue();
+    assertThat(list.remove("b")).isFalse();
+    list.clearList(Number.class);
+    assertThat(list.getAll()).isEqualTo(Collections.<Object>singletonList("a"));
+    assertThat(list.getList(String.class) == list.getList(String.class)).isTrue();
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testSnapshotIsUnmodifiable() {
+
+    TypeIndexedList<Object> list = TypeIndexedList.newInstance();
+    list.getList(String.class).add("a");
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+import org.junit.Test;
+import org.raistlic.common.precondition.InvalidParameterException;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.raistlic.common.postcondition.Postcondition.assertThat;
+
+public class WaveletMatrixTest {
+
+  @Test
+  public void testAccessRankAndSelect() {
+
+    Random random = new Random(20150310L);
+    for (int sigma : new int[]{1, 2, 5, 64, 1000}) {
+      int[] symbols = new int[3000];
+      for (int i = 0; i < symbols.length; i++) {
+        symbols[i] = random.nextInt(sigma);
+      }
+      WaveletMatrix matrix = WaveletMatrix.newInstance(symbols);
+
+      assertThat(matrix.size()).isEqualTo(symbols.length);
+      int[] counts = new int[sigma];
+      for (int i = 0; i < symbols.length; i++) {
+        assertThat(matrix.access(i)).isEqualTo(symbols[i]);
+        int symbol = symbols[i];
+        assertThat(matrix.rank(symbol, i)).isEqualTo(counts[symbol]);
+        assertThat(matrix.select(symbol, counts[symbol])).isEqualTo(i);
+        counts[symbol]++;
+      }
+      for (int symbol = 0; symbol < sigma; symbol++) {
+        assertThat(matrix.rank(symbol, symbols.length)).isEqualTo(counts[symbol]);
+        assertThat(matrix.select(symbol, counts[symbol])).isEqualTo(-1);
+      }
+      assertThat(matrix.rank(sigma * 4, symbols.length)).isEqualTo(0);
+      assertThat(matrix.select(-1, 0)).isEqualTo(-1);
+    }
+  }
+
+  @Test
+  public void testQuantile() {
+
+    Random random = new Random(20150311L);
+    int[] symbols = new int[500];
+    for (int i = 0; i < symbols.length; i++) {
+      symbols[i] = random.nextInt(50);
+    }
+    WaveletMatrix matrix = WaveletMatrix.newInstance(symbols);
+
+    for (int from = 0; from < symbols.length; from += 37) {
+      for (int to = from + 1; to <= symbols.length; to += 41) {
+        int[] sorted = Arrays.copyOfRange(symbols, from, to);
+        Arrays.sort(sorted);
+        for (int k = 0; k < sorted.length; k++) {
+          assertThat(matrix.quantile(from, to, k)).isEqualTo(sorted[k]);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testEnumSymbols() {
+
+    WaveletMatrix matrix = WaveletMatrix.newInstance(
+        Arrays.asList(TimeUnit.SECONDS, TimeUnit.DAYS, TimeUnit.SECONDS, TimeUnit.HOURS),
+        Enum::ordinal);
+
+    assertThat(matrix.access(1)).isEqualTo(TimeUnit.DAYS.ordinal());
+    assertThat(matrix.rank(TimeUnit.SECONDS.ordinal(), 3)).isEqualTo(2);
+    assertThat(matrix.select(TimeUnit.SECONDS.ordinal(), 1)).isEqualTo(2);
+  }
+
+  @Test(expected = InvalidParameterException.class)
+  public void testNegativeSymbol() {
+
+    WaveletMatrix.newInstance(new int[]{1, -1});
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.adt;
+
+import org.junit.Test;
+import org.raistlic.common.precondition.InvalidParameterException;
+
+import java.lang.ref.Reference;
+import java.lang.reflect.Field;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static org.raistlic.common.postcondition.Postcondition.assertThat;
+
+public class WeakArrayTest {
+
+  @Test
+  public void testSetGetAndCompareAndSet() {
+
+    WeakArray<String> array = new WeakArray<>(4);
+    String a = "a";
+    String b = "b";
+
+    assertThat(array.set(1, a)).isNull();
+    assertThat(array.get(1)).isEqualTo(a);
+    assertThat(array.compareAndSet(1, b, b)).isFalse();
+    assertThat(array.compareAndSet(1, a, b)).isTrue();
+    assertThat(array.compareAndSet(2, null, a)).isTrue();
+    assertThat(array.remove(1)).isEqualTo(b);
+    assertThat(array.get(1)).isNull();
+    assertThat(array.length()).isEqualTo(4);
+  }
+
+  @Test
+  public void testIteratorRemove() {
+
+    WeakArray<String> array = new WeakArray<>(3);
+    String a = "a";
+    array.set(0, a);
+
+    Iterator<String> iterator = array.iterator();
+    assertThat(iterator.next()).isEqualTo(a);
+    iterator.remove();
+
+    assertThat(array.get(0)).isNull();
+  }
+
+  @Test
+  public void testReapReportsReclaimedIndices() throws Exception {
+
+    ConcurrentLinkedQueue<Integer> reclaimed = new ConcurrentLinkedQueue<>();
+    WeakArray<Object> array = new WeakArray<>(8, reclaimed::add);
+    Object kept = new Object();
+    array.set(2, kept);
+    array.set(5, new Object());
+
+    assertThat(collect(array, 5)).isTrue();
+    assertThat(array.reap()).isEqualTo(1);
+
+    assertThat(reclaimed.size()).isEqualTo(1);
+    assertThat(reclaimed.peek()).isEqualTo(5);
+    assertThat(array.get(5)).isNull();
+    assertThat(array.get(2)).isEqualTo(kept);
+  }
+
+  @Test
+  public void testReapSkipsReplacedSlots() throws Exception {
+
+    ConcurrentLinkedQueue<Integer> reclaimed = new ConcurrentLinkedQueue<>();
+    WeakArray<Object> array = new WeakArray<>(8, reclaimed::add);
+    array.set(3, new Object());
+    collect(array, 3);
+    Object replacement = new Object();
+    // the write reaps the queued reference after replacing its slot, so there is nothing to reclaim
+    array.set(3, replacement);
+
+    assertThat(array.reap()).isEqualTo(0);
+    assertThat(reclaimed.isEmpty()).isTrue();
+    assertThat(array.get(3)).isEqualTo(replacement);
+  }
+
+  @Test(expected = InvalidParameterException.class)
+  public void testIndexOutOfRange() {
+
+    new WeakArray<String>(2).get(2);
+  }
+
+  /**
+   * Clears and enqueues the weak reference of the slot at {@code index}, as the garbage collector
+   * would, so that the reaping is tested without depending on a collection.
+   */
+  private static boolean collect(WeakArray<?> array, int index) throws Exception {
+
+    Field field = WeakArray.class.getDeclaredField("slots");
+    field.setAccessible(true);
+    Reference<?> slot = (Reference<?>) ((AtomicReferenceArray<?>) field.get(array)).get(index);
+    slot.clear();
+    return slot.enqueue();
+  }
+}
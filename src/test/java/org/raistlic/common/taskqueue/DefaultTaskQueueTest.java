@@ -0,0 +1,191 @@
+/*
+ * Copyright 2015 Lei CHEN (raistlic@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.raistlic.common.taskqueue;
+
+import org.junit.After;
+import org.junit.Test;
+import org.raistlic.common.precondition.InvalidParameterException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.raistlic.common.postcondition.Postcondition.assertThat;
+
+public class DefaultTaskQueueTest {
+
+  private TaskQueue.Controller controller;
+
+  @After
+  public void stopQueue() throws Exception {
+
+    if (controller != null) {
+      controller.stop(1, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test(expected = InvalidParameterException.class)
+  public void withBatchSizeLessThanOne() {
+
+    TaskQueues.builder().withBatchSize(0);
+  }
+
+  @Test
+  public void consecutivePayloadsAreCoalescedIntoOneCall() throws Exception {
+
+    TaskQueue queue = start(16);
+    RecordingBatchTask handler = new RecordingBatchTask();
+
+    CountDownLatch release = blockQueue(queue);
+    for (int i = 0; i < 10; i++) {
+      queue.schedule(i, handler);
+    }
+    release.countDown();
+    flush(queue);
+
+    assertThat(handler.calls.equals(Collections.singletonList(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9)))).isTrue();
+  }
+
+  @Test
+  public void batchSizeLimitsTheCoalescedCalls() throws Exception {
+
+    TaskQueue queue = start(4);
+    RecordingBatchTask handler = new RecordingBatchTask();
+
+    CountDownLatch release = blockQueue(queue);
+    for (int i = 0; i < 10; i++) {
+      queue.schedule(i, handler);
+    }
+    release.countDown();
+    flush(queue);
+
+    assertThat(handler.calls.equals(Arrays.asList(
+      Arrays.asList(0, 1, 2, 3),
+      Arrays.asList(4, 5, 6, 7),
+      Arrays.asList(8, 9)))).isTrue();
+  }
+
+  @Test
+  public void payloadsAreNotCoalescedWithoutBatchMode() throws Exception {
+
+    TaskQueue queue = start(1);
+    RecordingBatchTask handler = new RecordingBatchTask();
+
+    CountDownLatch release = blockQueue(queue);
+    for (int i = 0; i < 3; i++) {
+      queue.schedule(i, handler);
+    }
+    release.countDown();
+    flush(queue);
+
+    assertThat(handler.calls.equals(Arrays.asList(
+      Collections.singletonList(0),
+      Collections.singletonList(1),
+      Collections.singletonList(2)))).isTrue();
+  }
+
+  @Test
+  public void submissionOrderIsKeptAcrossHandlersAndTasks() throws Exception {
+
+    TaskQueue queue = start(16);
+    List<String> events = new ArrayList<String>();
+    BatchTask<String> first = batch -> events.add("first" + batch);
+    BatchTask<String> second = batch -> events.add("second" + batch);
+
+    CountDownLatch release = blockQueue(queue);
+    queue.schedule("a", first);
+    queue.schedule("b", first);
+    queue.schedule(() -> events.add("task"));
+    queue.schedule("c", first);
+    queue.schedule("d", second);
+    queue.schedule("e", second);
+    queue.schedule("f", first);
+    release.countDown();
+    flush(queue);
+
+    assertThat(events.equals(Arrays.asList(
+      "first[a, b]", "task", "first[c]", "second[d, e]", "first[f]"))).isTrue();
+  }
+
+  @Test
+  public void batchTaskExceptionIsHandledAndQueueKeepsRunning() throws Exception {
+
+    List<Throwable> exceptions = Collections.synchronizedList(new ArrayList<Throwable>());
+    controller = TaskQueues.builder()
+      .withBatchSize(16)
+      .withExceptionHandler((thread, ex) -> exceptions.add(ex))
+      .get();
+    controller.start();
+    TaskQueue queue = controller.get();
+    RecordingBatchTask handler = new RecordingBatchTask();
+
+    queue.schedule("fail", batch -> {
+      throw new TaskExecutionException(new IllegalStateException());
+    });
+    queue.schedule(1, handler);
+    flush(queue);
+
+    assertThat(exceptions.size()).isEqualTo(1);
+    assertThat(handler.calls.equals(Collections.singletonList(Collections.singletonList(1)))).isTrue();
+  }
+
+  private TaskQueue start(int batchSize) {
+
+    controller = TaskQueues.builder().withBatchSize(batchSize).get();
+    controller.start();
+    return controller.get();
+  }
+
+  /**
+   * Occupies the queue thread until the returned latch is released, so that the tasks scheduled in
+   * the mean time are drained together.
+   */
+  private static CountDownLatch blockQueue(TaskQueue queue) throws InterruptedException {
+
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    queue.schedule(() -> {
+      started.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    started.await();
+    return release;
+  }
+
+  private static void flush(TaskQueue queue) throws InterruptedException {
+
+    queue.scheduleAndWait(() -> null);
+  }
+
+  private static final class RecordingBatchTask implements BatchTask<Object> {
+
+    private final List<List<Object>> calls = new ArrayList<List<Object>>();
+
+    @Override
+    public void run(List<Object> batch) {
+
+      calls.add(new ArrayList<Object>(batch));
+    }
+  }
+}